@@ -0,0 +1,16 @@
+package com.deye.web.async;
+
+import com.deye.web.async.message.OutgoingMessage;
+
+import java.util.List;
+
+public interface MessageBroker {
+
+    /**
+     * publishes messages and waits until the broker confirms all of them
+     *
+     * @param messages - messages in the order they should be published
+     * @throws RuntimeException when any message isn't confirmed, some of the messages may be delivered anyway
+     */
+    void publishAll(List<OutgoingMessage> messages);
+}
@@ -1,21 +1,35 @@
 package com.deye.web.async;
 
+import com.deye.web.async.message.OutgoingMessage;
 import lombok.RequiredArgsConstructor;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
+/**
+ * Publishes messages on one channel and waits for publisher confirms of the whole batch once,
+ * requires simple publisher confirm type
+ */
 @Component
 @RequiredArgsConstructor
-public class RabbitMqProducer {
+public class RabbitMqProducer implements MessageBroker {
+    private static final long CONFIRM_TIMEOUT_MILLIS = 5000;
     private final RabbitTemplate rabbitTemplate;
 
-    public void send(String exchange, String routingKey, Object data) {
-        rabbitTemplate.convertAndSend(exchange, routingKey, data, message -> {
-            MessageProperties properties = message.getMessageProperties();
-            properties.setContentType("application/json");
-            return message;
+    @Override
+    public void publishAll(List<OutgoingMessage> messages) {
+        rabbitTemplate.invoke(operations -> {
+            for (OutgoingMessage message : messages) {
+                operations.convertAndSend(message.getExchange(), message.getRoutingKey(), message.getBody(), amqpMessage -> {
+                    MessageProperties properties = amqpMessage.getMessageProperties();
+                    properties.setContentType("application/json");
+                    return amqpMessage;
+                });
+            }
+            operations.waitForConfirmsOrDie(CONFIRM_TIMEOUT_MILLIS);
+            return null;
         });
     }
 }
-
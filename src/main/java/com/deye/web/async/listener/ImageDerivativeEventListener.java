@@ -0,0 +1,18 @@
+package com.deye.web.async.listener;
+
+import com.deye.web.async.listener.events.UploadedFileEvent;
+import com.deye.web.service.impl.ImageDerivativeService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class ImageDerivativeEventListener {
+    private final ImageDerivativeService imageDerivativeService;
+
+    @EventListener
+    public void onFileUploaded(UploadedFileEvent event) {
+        imageDerivativeService.submit(event.getFileName(), event.getContentType());
+    }
+}
@@ -0,0 +1,18 @@
+package com.deye.web.async.listener.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Derivatives of the image were generated or deleted, so views showing it link other objects now
+ */
+@Getter
+@AllArgsConstructor
+public class ChangedImageDerivativesEvent {
+    private String fileName;
+    private List<UUID> productsIds;
+    private List<UUID> categoriesIds;
+}
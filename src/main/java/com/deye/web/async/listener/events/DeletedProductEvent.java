@@ -10,5 +10,6 @@ import java.util.UUID;
 @AllArgsConstructor
 public class DeletedProductEvent {
     private UUID productId;
+    private UUID categoryId;
     private Set<String> imageNames;
 }
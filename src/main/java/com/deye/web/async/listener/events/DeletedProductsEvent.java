@@ -0,0 +1,16 @@
+package com.deye.web.async.listener.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class DeletedProductsEvent {
+    private Set<UUID> productsIds;
+    private Set<UUID> categoriesIds;
+    private List<String> imagesNames;
+}
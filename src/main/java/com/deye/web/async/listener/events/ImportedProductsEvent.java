@@ -0,0 +1,14 @@
+package com.deye.web.async.listener.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Set;
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class ImportedProductsEvent {
+    private Set<UUID> productsIds;
+    private Set<UUID> categoriesIds;
+}
@@ -0,0 +1,12 @@
+package com.deye.web.async.listener.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@AllArgsConstructor
+public class SavedAttributeEvent {
+    private UUID attributeId;
+}
@@ -0,0 +1,11 @@
+package com.deye.web.async.listener.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class UploadedFileEvent {
+    private String fileName;
+    private String contentType;
+}
@@ -0,0 +1,117 @@
+package com.deye.web.async.listener.transactions;
+
+import com.deye.web.async.listener.events.DeletedAttributeEvent;
+import com.deye.web.async.listener.events.DeletedCategoryEvent;
+import com.deye.web.async.listener.events.DeletedProductEvent;
+import com.deye.web.async.listener.events.DeletedProductsEvent;
+import com.deye.web.async.listener.events.ChangedImageDerivativesEvent;
+import com.deye.web.async.listener.events.ImportedProductsEvent;
+import com.deye.web.async.listener.events.SavedAttributeEvent;
+import com.deye.web.async.listener.events.SavedCategoryEvent;
+import com.deye.web.async.listener.events.SavedProductEvent;
+import com.deye.web.cache.CategoryStatistics;
+import com.deye.web.cache.CategoryStatisticsCache;
+import com.deye.web.cache.ProductCountCache;
+import com.deye.web.cache.ProductFacetsCache;
+import com.deye.web.cache.ProductJsonCache;
+import com.deye.web.entity.ProductEntity;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+
+/**
+ * Drops cached catalog reads once the transaction that changed products is committed
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogCacheEventListener {
+    private final ProductCountCache productCountCache;
+    private final ProductFacetsCache productFacetsCache;
+    private final CategoryStatisticsCache categoryStatisticsCache;
+    private final ProductJsonCache productJsonCache;
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onProductSaved(SavedProductEvent event) {
+        log.info("Product with id: {} saved, invalidating products caches", event.getProduct().getId());
+        productCountCache.invalidateAll();
+        productFacetsCache.invalidateAll();
+        ProductEntity product = event.getProduct();
+        UUID categoryId = product.getCategory().getId();
+        productJsonCache.evict(product.getId());
+        if (Hibernate.isInitialized(product.getAttributesValuesForProduct())) {
+            categoryStatisticsCache.widen(categoryId, CategoryStatistics.of(product));
+        } else {
+            categoryStatisticsCache.invalidate(categoryId);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onProductsImported(ImportedProductsEvent event) {
+        log.info("{} products imported, invalidating products caches", event.getProductsIds().size());
+        productCountCache.invalidateAll();
+        productFacetsCache.invalidateAll();
+        event.getCategoriesIds().forEach(categoryStatisticsCache::invalidate);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onProductDeleted(DeletedProductEvent event) {
+        log.info("Product with id: {} deleted, invalidating products caches", event.getProductId());
+        productCountCache.invalidateAll();
+        productFacetsCache.invalidateAll();
+        categoryStatisticsCache.invalidate(event.getCategoryId());
+        productJsonCache.evict(event.getProductId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onProductsDeleted(DeletedProductsEvent event) {
+        log.info("{} products deleted, invalidating products caches", event.getProductsIds().size());
+        productCountCache.invalidateAll();
+        productFacetsCache.invalidateAll();
+        event.getCategoriesIds().forEach(categoryStatisticsCache::invalidate);
+        event.getProductsIds().forEach(productJsonCache::evict);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCategorySaved(SavedCategoryEvent event) {
+        log.info("Category with id: {} saved, invalidating products facets and views", event.getCategory().getId());
+        productFacetsCache.invalidateAll();
+        productJsonCache.evictCategory(event.getCategory().getId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCategoryDeleted(DeletedCategoryEvent event) {
+        log.info("Category with id: {} deleted, invalidating products caches", event.getCategoryId());
+        productCountCache.invalidateAll();
+        productFacetsCache.invalidateAll();
+        categoryStatisticsCache.invalidate(event.getCategoryId());
+        productJsonCache.evictCategory(event.getCategoryId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onImageDerivativesChanged(ChangedImageDerivativesEvent event) {
+        log.info("Derivatives of image: {} changed, invalidating views showing it", event.getFileName());
+        event.getProductsIds().forEach(productJsonCache::evict);
+        event.getCategoriesIds().forEach(productJsonCache::evictCategory);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAttributeSaved(SavedAttributeEvent event) {
+        log.info("Attribute with id: {} saved, invalidating products facets and views", event.getAttributeId());
+        productFacetsCache.invalidateAll();
+        productJsonCache.evictAll();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAttributeDeleted(DeletedAttributeEvent event) {
+        log.info("Attribute with id: {} deleted, invalidating products caches", event.getAttributeId());
+        productCountCache.invalidateAll();
+        productFacetsCache.invalidateAll();
+        productJsonCache.evictAll();
+    }
+}
@@ -0,0 +1,71 @@
+package com.deye.web.async.listener.transactions;
+
+import com.deye.web.async.listener.events.DeletedAttributeEvent;
+import com.deye.web.async.listener.events.DeletedCategoryEvent;
+import com.deye.web.async.listener.events.DeletedProductEvent;
+import com.deye.web.async.listener.events.DeletedProductsEvent;
+import com.deye.web.async.listener.events.ImportedProductsEvent;
+import com.deye.web.async.listener.events.SavedCategoryEvent;
+import com.deye.web.async.listener.events.SavedProductEvent;
+import com.deye.web.service.impl.CatalogIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+/**
+ * Builds the catalog index on startup and applies committed product, category and attribute changes to it
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogIndexEventListener {
+    private final CatalogIndexService catalogIndexService;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        applicationTaskExecutor.execute(catalogIndexService::build);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onProductSaved(SavedProductEvent event) {
+        catalogIndexService.onProductSaved(event.getProduct().getId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onProductsImported(ImportedProductsEvent event) {
+        catalogIndexService.onProductsSaved(event.getProductsIds());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onProductDeleted(DeletedProductEvent event) {
+        catalogIndexService.onProductsDeleted(List.of(event.getProductId()));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onProductsDeleted(DeletedProductsEvent event) {
+        catalogIndexService.onProductsDeleted(event.getProductsIds());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCategoryDeleted(DeletedCategoryEvent event) {
+        catalogIndexService.onProductsDeleted(event.getRemovedProductsIds());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCategorySaved(SavedCategoryEvent event) {
+        catalogIndexService.onCategorySaved(event.getCategory().getId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAttributeDeleted(DeletedAttributeEvent event) {
+        catalogIndexService.onAttributeDeleted(event.getAttributeId());
+    }
+}
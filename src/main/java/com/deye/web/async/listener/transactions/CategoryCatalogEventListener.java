@@ -0,0 +1,74 @@
+package com.deye.web.async.listener.transactions;
+
+import com.deye.web.async.listener.events.DeletedAttributeEvent;
+import com.deye.web.async.listener.events.DeletedCategoryEvent;
+import com.deye.web.async.listener.events.ChangedImageDerivativesEvent;
+import com.deye.web.async.listener.events.SavedAttributeEvent;
+import com.deye.web.async.listener.events.SavedCategoryEvent;
+import com.deye.web.service.impl.CategoryCatalogService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Marks categories catalog snapshot outdated and rebuilds it in the background once changes of categories or attributes are committed
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CategoryCatalogEventListener {
+    private final CategoryCatalogService categoryCatalogService;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCategorySaved(SavedCategoryEvent event) {
+        onChangeCommitted();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCategoryDeleted(DeletedCategoryEvent event) {
+        onChangeCommitted();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onImageDerivativesChanged(ChangedImageDerivativesEvent event) {
+        if (!event.getCategoriesIds().isEmpty()) {
+            onChangeCommitted();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAttributeSaved(SavedAttributeEvent event) {
+        onChangeCommitted();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onAttributeDeleted(DeletedAttributeEvent event) {
+        onChangeCommitted();
+    }
+
+    private void onChangeCommitted() {
+        categoryCatalogService.onChangeCommitted();
+        rebuild();
+    }
+
+    private void rebuild() {
+        applicationTaskExecutor.execute(() -> {
+            try {
+                categoryCatalogService.rebuild();
+            } catch (Exception e) {
+                log.error("Categories catalog snapshot rebuilding failed", e);
+            }
+        });
+    }
+}
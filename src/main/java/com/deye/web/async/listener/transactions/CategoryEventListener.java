@@ -5,7 +5,7 @@ import com.deye.web.async.listener.events.SavedCategoryEvent;
 import com.deye.web.async.service.PublisherService;
 import com.deye.web.entity.CategoryEntity;
 import com.deye.web.exception.TransactionConsistencyException;
-import com.deye.web.service.FileService;
+import com.deye.web.service.impl.FileOutboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -21,7 +21,7 @@ import java.util.UUID;
 @RequiredArgsConstructor
 @Slf4j
 public class CategoryEventListener {
-    private final FileService fileService;
+    private final FileOutboxService fileOutboxService;
     private final PublisherService publisherService;
 
     @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
@@ -29,15 +29,15 @@ public class CategoryEventListener {
         try {
             CategoryEntity category = savedCategoryEvent.getCategory();
             UUID categoryId = category.getId();
-            log.info("Category with id: {} successfully saved to DB. Trying to upload image to the storage", categoryId);
+            log.info("Category with id: {} successfully saved to DB. Recording upload of its image", categoryId);
             MultipartFile image = savedCategoryEvent.getImage();
             if (image != null) {
                 uploadNewCategoryImage(image, categoryId);
             }
             String previousImageName = savedCategoryEvent.getPreviousImageName();
             if (StringUtils.isNotBlank(previousImageName)) {
-                log.info("Previous image name is {}. Deleting this from file storage", previousImageName);
-                deleteCategoryImage(previousImageName);
+                log.info("Previous image name is {}. Recording its deletion", previousImageName);
+                fileOutboxService.enqueueDeletes(List.of(previousImageName));
             }
         } catch (Exception e) {
             log.error("Transaction consistency exception, rollback it");
@@ -46,11 +46,11 @@ public class CategoryEventListener {
     }
 
     private void uploadNewCategoryImage(MultipartFile image, UUID categoryId) {
-        log.info("Saving category image to the file storage, categoryId: {}, fileName: {}", categoryId, image.getOriginalFilename());
+        log.info("Recording upload of category image to the file outbox, categoryId: {}, fileName: {}", categoryId, image.getOriginalFilename());
         try {
-            fileService.upload(image);
+            fileOutboxService.enqueueUploads(List.of(image));
         } catch (Exception e) {
-            log.error("Category image uploading failed. id: {}", categoryId);
+            log.error("Category image staging failed. id: {}", categoryId);
             throw e;
         }
     }
@@ -59,25 +59,12 @@ public class CategoryEventListener {
     public void onCategoryDeleted(DeletedCategoryEvent deletedCategoryEvent) {
         try {
             UUID categoryId = deletedCategoryEvent.getCategoryId();
-            log.info("Category with id: {} successfully deleted from DB. Trying to delete its image from storage", categoryId);
-            List<String> filesNamesToRemove = deletedCategoryEvent.getFilesNamesToRemove();
-            for (String fileName : filesNamesToRemove) {
-                deleteCategoryImage(fileName);
-            }
+            log.info("Category with id: {} successfully deleted from DB. Recording deletion of its image", categoryId);
+            fileOutboxService.enqueueDeletes(deletedCategoryEvent.getFilesNamesToRemove());
             publisherService.onProductsDeleted(deletedCategoryEvent.getRemovedProductsIds());
         } catch (Exception e) {
             log.error("Transaction consistency exception, rollback it");
             throw new TransactionConsistencyException(e);
         }
     }
-
-    private void deleteCategoryImage(String fileName) {
-        try {
-            fileService.delete(fileName);
-            log.info("Category image with name: {} successfully deleted from file storage", fileName);
-        } catch (Exception e) {
-            log.error("Category image with name: {} deletion failed.", fileName);
-            throw e;
-        }
-    }
 }
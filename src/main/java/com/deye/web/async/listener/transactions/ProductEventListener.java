@@ -1,11 +1,12 @@
 package com.deye.web.async.listener.transactions;
 
 import com.deye.web.async.listener.events.DeletedProductEvent;
+import com.deye.web.async.listener.events.DeletedProductsEvent;
 import com.deye.web.async.listener.events.SavedProductEvent;
 import com.deye.web.async.service.PublisherService;
 import com.deye.web.entity.ProductEntity;
 import com.deye.web.exception.TransactionConsistencyException;
-import com.deye.web.service.FileService;
+import com.deye.web.service.impl.FileOutboxService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -13,6 +14,7 @@ import org.springframework.transaction.event.TransactionPhase;
 import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Arrays;
 import java.util.Set;
 import java.util.UUID;
 
@@ -20,7 +22,7 @@ import java.util.UUID;
 @RequiredArgsConstructor
 @Slf4j
 public class ProductEventListener {
-    private final FileService fileService;
+    private final FileOutboxService fileOutboxService;
     private final PublisherService publisherService;
 
     @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
@@ -32,15 +34,11 @@ public class ProductEventListener {
             log.info("Product with id: {} successfully saved to db", productId);
             if (imagesToAdd != null) {
                 log.info("Adding images to db, productId: {}", productId);
-                for (MultipartFile image : imagesToAdd) {
-                    uploadNewProductImage(image, productId);
-                }
+                uploadNewProductImages(imagesToAdd, productId);
             }
             if (event.getImagesToRemove() != null) {
-                for (String imageToRemove : event.getImagesToRemove()) {
-                    log.info("Removing image from the storage as it was marked as to delete: {}", imageToRemove);
-                    deleteProductImage(imageToRemove);
-                }
+                log.info("Recording deletion of images as they were marked as to delete: {}", event.getImagesToRemove());
+                fileOutboxService.enqueueDeletes(event.getImagesToRemove());
             }
         } catch (Exception e) {
             log.error("Transaction consistency exception, rollback it");
@@ -48,12 +46,12 @@ public class ProductEventListener {
         }
     }
 
-    private void uploadNewProductImage(MultipartFile image, UUID productId) {
-        log.info("Saving product image to the file storage, productId: {}, fileName: {}", productId, image.getOriginalFilename());
+    private void uploadNewProductImages(MultipartFile[] images, UUID productId) {
+        log.info("Recording upload of {} product images to the file outbox, productId: {}", images.length, productId);
         try {
-            fileService.upload(image);
+            fileOutboxService.enqueueUploads(Arrays.asList(images));
         } catch (Exception e) {
-            log.error("Product image uploading failed. id: {}", productId);
+            log.error("Product images staging failed. id: {}", productId);
             throw e;
         }
     }
@@ -62,10 +60,8 @@ public class ProductEventListener {
     public void onProductDeleted(DeletedProductEvent event) {
         try {
             UUID productId = event.getProductId();
-            log.info("Product with ids: {} successfully deleted from DB. Trying to delete its images from storage", productId);
-            for (String imageName : event.getImageNames()) {
-                deleteProductImage(imageName);
-            }
+            log.info("Product with ids: {} successfully deleted from DB. Recording deletion of its images", productId);
+            fileOutboxService.enqueueDeletes(event.getImageNames());
             publisherService.onProductsDeleted(Set.of(productId));
         } catch (Exception e) {
             log.error("Transaction consistency exception, rollback it");
@@ -73,13 +69,15 @@ public class ProductEventListener {
         }
     }
 
-    private void deleteProductImage(String fileName) {
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onProductsDeleted(DeletedProductsEvent event) {
         try {
-            fileService.delete(fileName);
-            log.info("Product image with name: {} successfully deleted from file storage", fileName);
+            log.info("{} products successfully deleted from DB. Recording deletion of {} images", event.getProductsIds().size(), event.getImagesNames().size());
+            fileOutboxService.enqueueDeletes(event.getImagesNames());
+            publisherService.onProductsDeleted(event.getProductsIds());
         } catch (Exception e) {
-            log.error("Product image with name: {} deletion failed.", fileName);
-            throw e;
+            log.error("Transaction consistency exception, rollback it");
+            throw new TransactionConsistencyException(e);
         }
     }
 }
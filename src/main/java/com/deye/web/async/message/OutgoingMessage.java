@@ -0,0 +1,12 @@
+package com.deye.web.async.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class OutgoingMessage {
+    private String exchange;
+    private String routingKey;
+    private String body;
+}
@@ -0,0 +1,129 @@
+package com.deye.web.async.service.impl;
+
+import com.deye.web.async.MessageBroker;
+import com.deye.web.async.message.OutgoingMessage;
+import com.deye.web.async.util.RabbitMqUtil;
+import com.deye.web.async.util.mapper.RabbitMqMessageMapper;
+import com.deye.web.entity.MessageOutboxEntity;
+import com.deye.web.outbox.OutboxRelay;
+import com.deye.web.repository.MessageOutboxRepository;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.*;
+
+/**
+ * Publishes messages of the outbox after commit. Due messages are claimed by batches, PRODUCTS_DELETED messages
+ * recorded since the previous run are coalesced into one message per {@value MAX_COALESCED_PRODUCTS} products,
+ * and the whole batch is published on one channel with a single wait for publisher confirms.
+ * When confirms fail, the batch is retried as described in OutboxRelay. A message whose payload can't be read
+ * is retried alone, the rest of the batch is published without it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MessageOutboxRelay extends OutboxRelay<MessageOutboxEntity> {
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_COALESCED_PRODUCTS = 1000;
+    private final MessageOutboxRepository messageOutboxRepository;
+    private final MessageBroker messageBroker;
+    private final RabbitMqMessageMapper rabbitMqMessageMapper;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Delay between runs is the window in which PRODUCTS_DELETED messages are coalesced
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${rabbitmq.outbox.relay-delay:200}")
+    public void relay() {
+        super.relay();
+    }
+
+    @Override
+    protected Map<Long, String> apply(List<MessageOutboxEntity> messages) {
+        Map<Long, String> errors = new HashMap<>();
+        List<OutgoingMessage> outgoingMessages = coalesce(messages, errors);
+        if (outgoingMessages.isEmpty()) {
+            return errors;
+        }
+        try {
+            messageBroker.publishAll(outgoingMessages);
+        } catch (Exception e) {
+            log.error("Batch of {} messages isn't confirmed by the broker", outgoingMessages.size(), e);
+            messages.stream()
+                    .filter(message -> !errors.containsKey(message.getId()))
+                    .forEach(message -> errors.put(message.getId(), e.getMessage()));
+            return errors;
+        }
+        countSuperseded(Math.max(messages.size() - errors.size() - outgoingMessages.size(), 0));
+        log.info("Published {} messages for {} outbox records", outgoingMessages.size(), messages.size() - errors.size());
+        return errors;
+    }
+
+    /**
+     * PRODUCTS_DELETED messages of the same destination are merged into messages with distinct products ids,
+     * other messages are published as they are. Messages whose payload can't be read are reported to the errors
+     */
+    private List<OutgoingMessage> coalesce(List<MessageOutboxEntity> messages, Map<Long, String> errors) {
+        Map<Destination, Set<UUID>> deletedProductsIds = new LinkedHashMap<>();
+        List<OutgoingMessage> outgoingMessages = new ArrayList<>();
+        for (MessageOutboxEntity message : messages) {
+            if (RabbitMqUtil.PRODUCTS_DELETED_EVENT.equals(message.getEventType())) {
+                Set<UUID> productsIds;
+                try {
+                    productsIds = Objects.requireNonNull(rabbitMqMessageMapper.fromProductsIdsPayload(message.getPayload()), "Payload is empty");
+                } catch (Exception e) {
+                    log.error("Payload of message with id: {} can't be read", message.getId(), e);
+                    errors.put(message.getId(), e.getMessage());
+                    continue;
+                }
+                deletedProductsIds.computeIfAbsent(new Destination(message.getExchange(), message.getRoutingKey()), destination -> new LinkedHashSet<>())
+                        .addAll(productsIds);
+            } else {
+                outgoingMessages.add(new OutgoingMessage(message.getExchange(), message.getRoutingKey(), message.getPayload()));
+            }
+        }
+        deletedProductsIds.forEach((destination, productsIds) -> {
+            List<UUID> ids = new ArrayList<>(productsIds);
+            for (int from = 0; from < ids.size(); from += MAX_COALESCED_PRODUCTS) {
+                Set<UUID> chunk = new LinkedHashSet<>(ids.subList(from, Math.min(from + MAX_COALESCED_PRODUCTS, ids.size())));
+                outgoingMessages.add(new OutgoingMessage(destination.getExchange(), destination.getRoutingKey(),
+                        rabbitMqMessageMapper.toDeletedProductMessage(chunk)));
+            }
+        });
+        return outgoingMessages;
+    }
+
+    @Override
+    protected MessageOutboxRepository getRepository() {
+        return messageOutboxRepository;
+    }
+
+    @Override
+    protected PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    @Override
+    protected String getName() {
+        return "messages";
+    }
+
+    @Override
+    protected int getBatchSize() {
+        return BATCH_SIZE;
+    }
+
+    @Getter
+    @EqualsAndHashCode
+    @RequiredArgsConstructor
+    private static class Destination {
+        private final String exchange;
+        private final String routingKey;
+    }
+}
@@ -1,32 +1,43 @@
 package com.deye.web.async.service.impl;
 
-import com.deye.web.async.RabbitMqProducer;
 import com.deye.web.async.service.PublisherService;
 import com.deye.web.async.util.RabbitMqUtil;
 import com.deye.web.async.util.mapper.RabbitMqMessageMapper;
+import com.deye.web.entity.MessageOutboxEntity;
+import com.deye.web.repository.MessageOutboxRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Set;
 import java.util.UUID;
 
+/**
+ * Records messages to the outbox in the current transaction, they are published by MessageOutboxRelay after commit
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class RabbitMqPublisherService implements PublisherService {
-    private final RabbitMqProducer rabbitMqProducer;
+    private final MessageOutboxRepository messageOutboxRepository;
     private final RabbitMqMessageMapper rabbitMqMessageMapper;
 
     @Override
+    @Transactional(propagation = Propagation.MANDATORY)
     public void onProductsDeleted(Set<UUID> productsIds) {
-        String message = rabbitMqMessageMapper.toDeletedProductMessage(productsIds);
-        try {
-            rabbitMqProducer.send(RabbitMqUtil.EXCHANGE_NAME, RabbitMqUtil.PRODUCT_CONSUMER_ROUTING_KEY, message);
-            log.info("Message on product deleted successfully sent to RabbitMQ, message:{}", message);
-        } catch (Exception e) {
-            log.error("Unable to send message: {} to RabbitMQ", message, e);
-            throw e;
+        if (productsIds.isEmpty()) {
+            return;
         }
+        MessageOutboxEntity message = new MessageOutboxEntity();
+        message.setExchange(RabbitMqUtil.EXCHANGE_NAME);
+        message.setRoutingKey(RabbitMqUtil.PRODUCT_CONSUMER_ROUTING_KEY);
+        message.setEventType(RabbitMqUtil.PRODUCTS_DELETED_EVENT);
+        message.setPayload(rabbitMqMessageMapper.toProductsIdsPayload(productsIds));
+        message.setNextAttemptAt(LocalDateTime.now());
+        messageOutboxRepository.save(message);
+        log.info("Message on {} deleted products is recorded to the outbox", productsIds.size());
     }
 }
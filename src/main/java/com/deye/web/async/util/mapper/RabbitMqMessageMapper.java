@@ -3,9 +3,11 @@ package com.deye.web.async.util.mapper;
 import com.deye.web.async.message.DeletedProductsMessage;
 import com.deye.web.async.util.RabbitMqUtil;
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.lang.reflect.Type;
 import java.time.LocalDateTime;
 import java.util.Set;
 import java.util.UUID;
@@ -13,6 +15,8 @@ import java.util.UUID;
 @Component
 @RequiredArgsConstructor
 public class RabbitMqMessageMapper {
+    private static final Type PRODUCTS_IDS_TYPE = new TypeToken<Set<UUID>>() {
+    }.getType();
     private final Gson gson;
 
     public String toDeletedProductMessage(Set<UUID> productsIds) {
@@ -25,4 +29,12 @@ public class RabbitMqMessageMapper {
         deletedProductsMessage.setData(deletedProductsPayload);
         return gson.toJson(deletedProductsMessage);
     }
+
+    public String toProductsIdsPayload(Set<UUID> productsIds) {
+        return gson.toJson(productsIds);
+    }
+
+    public Set<UUID> fromProductsIdsPayload(String payload) {
+        return gson.fromJson(payload, PRODUCTS_IDS_TYPE);
+    }
 }
@@ -0,0 +1,18 @@
+package com.deye.web.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class CacheStats {
+    private final String name;
+    private final long size;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final Long bytes;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+}
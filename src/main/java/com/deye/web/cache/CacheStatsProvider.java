@@ -0,0 +1,6 @@
+package com.deye.web.cache;
+
+public interface CacheStatsProvider {
+
+    CacheStats getStats();
+}
@@ -0,0 +1,14 @@
+package com.deye.web.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Serialized view together with the ETag of the entity version it was serialized from
+ */
+@Getter
+@AllArgsConstructor
+public class CachedJson {
+    private final byte[] json;
+    private final String eTag;
+}
@@ -0,0 +1,33 @@
+package com.deye.web.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Immutable serialized state of all categories, replaced as a whole when categories or attributes change
+ */
+@AllArgsConstructor
+public class CategoryCatalogSnapshot {
+    @Getter
+    private final long version;
+    /**
+     * Amount of committed category and attribute changes the snapshot includes
+     */
+    @Getter
+    private final long committedChanges;
+    @Getter
+    private final CachedJson categoriesJson;
+    /**
+     * Window of the snapshot image links, null when they don't expire
+     */
+    @Getter
+    private final Long viewEpoch;
+    private final Map<UUID, CachedJson> categoriesJsonById;
+
+    public CachedJson getCategoryJson(UUID categoryId) {
+        return categoriesJsonById.get(categoryId);
+    }
+}
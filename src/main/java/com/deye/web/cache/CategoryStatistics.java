@@ -0,0 +1,65 @@
+package com.deye.web.cache;
+
+import com.deye.web.entity.AttributeProductValuesEntity;
+import com.deye.web.entity.ProductEntity;
+import lombok.Value;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bounds of product prices and of numeric attributes values within a category
+ */
+@Value
+public class CategoryStatistics {
+    Bounds price;
+    Map<UUID, Bounds> attributes;
+
+    /**
+     * Statistics of a single product: price and its number or range attributes values
+     */
+    public static CategoryStatistics of(ProductEntity product) {
+        Map<UUID, Bounds> attributes = new HashMap<>();
+        for (AttributeProductValuesEntity attributeValue : product.getAttributesValuesForProduct()) {
+            Bounds bounds = Bounds.of(attributeValue.getValue());
+            if (bounds != null) {
+                attributes.put(attributeValue.getAttribute().getId(), bounds);
+            }
+        }
+        Bounds price = product.getPrice() == null ? null : new Bounds(product.getPrice(), product.getPrice());
+        return new CategoryStatistics(price, attributes);
+    }
+
+    public CategoryStatistics widen(CategoryStatistics other) {
+        Map<UUID, Bounds> widenedAttributes = new HashMap<>(attributes);
+        other.getAttributes().forEach((attributeId, bounds) -> widenedAttributes.merge(attributeId, bounds, Bounds::widen));
+        return new CategoryStatistics(Bounds.widen(price, other.getPrice()), widenedAttributes);
+    }
+
+    @Value
+    public static class Bounds {
+        double min;
+        double max;
+
+        /**
+         * Bounds of a number or of a {"min", "max"} range attribute value, null for other values
+         */
+        public static Bounds of(Object value) {
+            if (value instanceof Number number) {
+                return new Bounds(number.doubleValue(), number.doubleValue());
+            }
+            if (value instanceof Map<?, ?> range && range.get("min") instanceof Number min && range.get("max") instanceof Number max) {
+                return new Bounds(min.doubleValue(), max.doubleValue());
+            }
+            return null;
+        }
+
+        public static Bounds widen(Bounds first, Bounds second) {
+            if (first == null || second == null) {
+                return first == null ? second : first;
+            }
+            return new Bounds(Math.min(first.getMin(), second.getMin()), Math.max(first.getMax(), second.getMax()));
+        }
+    }
+}
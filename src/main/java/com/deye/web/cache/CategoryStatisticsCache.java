@@ -0,0 +1,49 @@
+package com.deye.web.cache;
+
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Statistics per category kept up to date incrementally: saved products widen the bounds,
+ * deleted ones drop the statistics of their category so they are recalculated on the next read.
+ * Every change starts a new version of the category, statistics calculated from an older version are not stored.
+ */
+@Component
+public class CategoryStatisticsCache {
+    private final Map<UUID, CategoryStatistics> statistics = new HashMap<>();
+    private final Map<UUID, Long> versions = new HashMap<>();
+
+    public synchronized CategoryStatistics get(UUID categoryId) {
+        return statistics.get(categoryId);
+    }
+
+    public synchronized long getVersion(UUID categoryId) {
+        return versions.getOrDefault(categoryId, 0L);
+    }
+
+    /**
+     * @param version - version observed before the statistics were calculated
+     */
+    public synchronized void put(UUID categoryId, CategoryStatistics categoryStatistics, long version) {
+        if (getVersion(categoryId) == version) {
+            statistics.put(categoryId, categoryStatistics);
+        }
+    }
+
+    public synchronized void widen(UUID categoryId, CategoryStatistics productStatistics) {
+        versions.merge(categoryId, 1L, Long::sum);
+        statistics.computeIfPresent(categoryId, (id, categoryStatistics) -> categoryStatistics.widen(productStatistics));
+    }
+
+    public synchronized void invalidate(UUID categoryId) {
+        versions.merge(categoryId, 1L, Long::sum);
+        statistics.remove(categoryId);
+    }
+
+    public synchronized int size() {
+        return statistics.size();
+    }
+}
@@ -0,0 +1,68 @@
+package com.deye.web.cache;
+
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Presigned image URLs by file name, each one stored with the time window it was signed in, see ImageMapper.
+ * URL of a previous window is a miss and is replaced, least recently used URLs are evicted first
+ */
+@Component
+public class ImageUrlCache implements CacheStatsProvider {
+    private static final String NAME = "image-urls";
+    private static final int MAX_SIZE = 100_000;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            boolean evict = size() > MAX_SIZE;
+            if (evict) {
+                evictions++;
+            }
+            return evict;
+        }
+    };
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param window - current window of the file
+     * @return URL signed in the window, null if there is none
+     */
+    public synchronized String get(String fileName, long window) {
+        Entry entry = entries.get(fileName);
+        if (entry == null || entry.window != window) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.url;
+    }
+
+    public synchronized void put(String fileName, long window, String url) {
+        Entry entry = entries.get(fileName);
+        if (entry == null || entry.window < window) {
+            entries.put(fileName, new Entry(window, url));
+        }
+    }
+
+    @Override
+    public synchronized CacheStats getStats() {
+        return CacheStats.builder()
+                .name(NAME)
+                .size(entries.size())
+                .hits(hits)
+                .misses(misses)
+                .evictions(evictions)
+                .build();
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final long window;
+        private final String url;
+    }
+}
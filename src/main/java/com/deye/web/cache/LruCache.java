@@ -0,0 +1,76 @@
+package com.deye.web.cache;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache. Every invalidation starts a new generation,
+ * values computed in the previous generation are not stored, so a slow reader can't put back a stale value.
+ */
+public class LruCache<K, V> implements CacheStatsProvider {
+    @Getter
+    private final String name;
+    private final int maxSize;
+    private final LinkedHashMap<K, V> entries;
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public LruCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                boolean evict = size() > LruCache.this.maxSize;
+                if (evict) {
+                    evictions++;
+                }
+                return evict;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @param generation - generation observed before the value was computed
+     */
+    public synchronized void put(K key, V value, long generation) {
+        if (this.generation == generation) {
+            entries.put(key, value);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        evictions += entries.size();
+        entries.clear();
+        generation++;
+    }
+
+    @Override
+    public synchronized CacheStats getStats() {
+        return CacheStats.builder()
+                .name(name)
+                .size(entries.size())
+                .hits(hits)
+                .misses(misses)
+                .evictions(evictions)
+                .build();
+    }
+}
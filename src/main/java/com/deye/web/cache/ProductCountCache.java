@@ -0,0 +1,15 @@
+package com.deye.web.cache;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Exact amount of products per normalized filter, invalidated when products are saved or deleted
+ */
+@Component
+public class ProductCountCache extends LruCache<ProductFilterCacheKey, Long> {
+    private static final int MAX_SIZE = 10_000;
+
+    public ProductCountCache() {
+        super("products-count", MAX_SIZE);
+    }
+}
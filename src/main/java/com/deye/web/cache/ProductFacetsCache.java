@@ -0,0 +1,18 @@
+package com.deye.web.cache;
+
+import com.deye.web.controller.view.AttributeFacetView;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Attribute values counts per normalized filter, invalidated when products or categories change
+ */
+@Component
+public class ProductFacetsCache extends LruCache<ProductFilterCacheKey, List<AttributeFacetView>> {
+    private static final int MAX_SIZE = 1_000;
+
+    public ProductFacetsCache() {
+        super("products-facets", MAX_SIZE);
+    }
+}
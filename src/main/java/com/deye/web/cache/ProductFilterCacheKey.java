@@ -0,0 +1,63 @@
+package com.deye.web.cache;
+
+import com.deye.web.controller.dto.AttributeFilterDto;
+import com.deye.web.controller.dto.ProductFilterDto;
+import com.deye.web.controller.dto.RangeDto;
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Normalized form of {@link ProductFilterDto}: filters selecting the same products produce equal keys
+ */
+@Value
+public class ProductFilterCacheKey {
+    String name;
+    List<UUID> categoriesIds;
+    Double minPrice;
+    Double maxPrice;
+    List<AttributeFilterKey> attributes;
+
+    public static ProductFilterCacheKey of(ProductFilterDto productFilterDto) {
+        if (productFilterDto == null) {
+            return new ProductFilterCacheKey(null, List.of(), null, null, List.of());
+        }
+        String name = StringUtils.isNotBlank(productFilterDto.getName()) ? productFilterDto.getName().toLowerCase() : null;
+        List<UUID> categoriesIds = productFilterDto.getCategoriesIds() == null ? List.of() : productFilterDto.getCategoriesIds().stream()
+                .distinct()
+                .sorted()
+                .toList();
+        RangeDto priceRange = productFilterDto.getPriceRange();
+        Double minPrice = priceRange == null ? null : priceRange.getMin().doubleValue();
+        Double maxPrice = priceRange == null ? null : priceRange.getMax().doubleValue();
+        List<AttributeFilterKey> attributes = productFilterDto.getAttributes() == null ? List.of() : productFilterDto.getAttributes().stream()
+                .map(AttributeFilterKey::of)
+                .distinct()
+                .sorted(Comparator.comparing(AttributeFilterKey::getId))
+                .toList();
+        return new ProductFilterCacheKey(name, categoriesIds, minPrice, maxPrice, attributes);
+    }
+
+    @Value
+    public static class AttributeFilterKey {
+        UUID id;
+        List<String> values;
+        Boolean checked;
+        Double min;
+        Double max;
+
+        public static AttributeFilterKey of(AttributeFilterDto attributeFilterDto) {
+            List<String> values = attributeFilterDto.getValues() == null ? List.of() : attributeFilterDto.getValues().stream()
+                    .distinct()
+                    .sorted()
+                    .toList();
+            RangeDto range = attributeFilterDto.getRange();
+            Double min = range == null ? null : range.getMin().doubleValue();
+            Double max = range == null ? null : range.getMax().doubleValue();
+            return new AttributeFilterKey(attributeFilterDto.getId(), values, attributeFilterDto.getChecked(), min, max);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.deye.web.cache;
+
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Serialized product views with their ETags, bounded by their total size in bytes, least recently used ones are evicted first.
+ * Entries are evicted one by one when products change and all together when their category changes.
+ * Every eviction starts a new version, views serialized before it are not stored, so a slow reader can't put back a stale view.
+ * Views with expiring image links are evicted when they reach their max age.
+ */
+@Component
+public class ProductJsonCache implements CacheStatsProvider {
+    private static final String NAME = "products-json";
+    private static final long MAX_BYTES = 32L * 1024 * 1024;
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<UUID, Set<UUID>> productsIdsByCategory = new HashMap<>();
+    private long bytes;
+    private long version;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public synchronized CachedJson get(UUID productId) {
+        Entry entry = getUnexpired(productId);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.json;
+    }
+
+    /**
+     * ETag of the cached view, not counted as a cache hit or miss
+     */
+    public synchronized String getETag(UUID productId) {
+        Entry entry = getUnexpired(productId);
+        return entry == null ? null : entry.json.getETag();
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @param version - version observed before the view was loaded
+     * @param maxAge  - how long the view stays valid, nullable when it doesn't expire
+     */
+    public synchronized void put(UUID productId, UUID categoryId, CachedJson json, long version, Duration maxAge) {
+        if (this.version != version || json.getJson().length > MAX_BYTES) {
+            return;
+        }
+        remove(productId);
+        entries.put(productId, new Entry(categoryId, json, maxAge == null ? null : System.nanoTime() + maxAge.toNanos()));
+        productsIdsByCategory.computeIfAbsent(categoryId, id -> new HashSet<>()).add(productId);
+        bytes += json.getJson().length;
+        Iterator<Map.Entry<UUID, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > MAX_BYTES && eldest.hasNext()) {
+            Map.Entry<UUID, Entry> evicted = eldest.next();
+            eldest.remove();
+            unlink(evicted.getKey(), evicted.getValue());
+            evictions++;
+        }
+    }
+
+    public synchronized void evict(UUID productId) {
+        version++;
+        if (remove(productId)) {
+            evictions++;
+        }
+    }
+
+    public synchronized void evictCategory(UUID categoryId) {
+        version++;
+        Set<UUID> productsIds = productsIdsByCategory.get(categoryId);
+        if (productsIds != null) {
+            for (UUID productId : new ArrayList<>(productsIds)) {
+                remove(productId);
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized void evictAll() {
+        version++;
+        evictions += entries.size();
+        entries.clear();
+        productsIdsByCategory.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public synchronized CacheStats getStats() {
+        return CacheStats.builder()
+                .name(NAME)
+                .size(entries.size())
+                .bytes(bytes)
+                .hits(hits)
+                .misses(misses)
+                .evictions(evictions)
+                .build();
+    }
+
+    private Entry getUnexpired(UUID productId) {
+        Entry entry = entries.get(productId);
+        if (entry != null && entry.expiresAtNanos != null && System.nanoTime() - entry.expiresAtNanos > 0) {
+            remove(productId);
+            evictions++;
+            return null;
+        }
+        return entry;
+    }
+
+    private boolean remove(UUID productId) {
+        Entry entry = entries.remove(productId);
+        if (entry == null) {
+            return false;
+        }
+        unlink(productId, entry);
+        return true;
+    }
+
+    private void unlink(UUID productId, Entry entry) {
+        bytes -= entry.json.getJson().length;
+        Set<UUID> productsIds = productsIdsByCategory.get(entry.categoryId);
+        productsIds.remove(productId);
+        if (productsIds.isEmpty()) {
+            productsIdsByCategory.remove(entry.categoryId);
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Entry {
+        private final UUID categoryId;
+        private final CachedJson json;
+        private final Long expiresAtNanos;
+    }
+}
@@ -1,10 +1,12 @@
 package com.deye.web.configuration;
 
 import com.deye.web.service.impl.ConfigService;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 @Configuration
 @RequiredArgsConstructor
@@ -18,4 +20,18 @@ public class MinioConfiguration {
                 .endpoint(configService.getMinioUrl())
                 .build();
     }
+
+    @Bean
+    @Primary
+    public MinioAsyncClient minioAsyncClient() {
+        return MinioAsyncClient.builder()
+                .credentials(configService.getMinioSecretKey(), configService.getMinioAccessKey())
+                .endpoint(configService.getMinioUrl())
+                .build();
+    }
+
+    @Bean
+    public MultipartMinioClient multipartMinioClient(MinioAsyncClient minioAsyncClient) {
+        return new MultipartMinioClient(minioAsyncClient);
+    }
 }
@@ -0,0 +1,70 @@
+package com.deye.web.configuration;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.ListPartsResponse;
+import io.minio.MinioAsyncClient;
+import io.minio.messages.Part;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Exposes S3 multipart upload API of the MinIO client, which is used by putObject internally and isn't public.
+ * Calls are blocking, errors of the requests are rethrown as they are
+ */
+public class MultipartMinioClient extends MinioAsyncClient {
+    private static final int MAX_LISTED_PARTS = 1000;
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    public String createMultipartUpload(String bucketName, String objectName, String contentType) throws Exception {
+        Multimap<String, String> headers = HashMultimap.create();
+        headers.put("Content-Type", contentType);
+        return await(createMultipartUploadAsync(bucketName, null, objectName, headers, null)).result().uploadId();
+    }
+
+    /**
+     * @param data   - buffer with the part, it isn't kept after the call and can be reused
+     * @param length - amount of part bytes at the beginning of the buffer
+     * @return ETag of the uploaded part
+     */
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber, byte[] data, int length) throws Exception {
+        return await(uploadPartAsync(bucketName, null, objectName, data, length, uploadId, partNumber, null, null)).etag();
+    }
+
+    public List<Part> listParts(String bucketName, String objectName, String uploadId) throws Exception {
+        List<Part> parts = new ArrayList<>();
+        Integer partNumberMarker = null;
+        ListPartsResponse response;
+        do {
+            response = await(listPartsAsync(bucketName, null, objectName, MAX_LISTED_PARTS, partNumberMarker, uploadId, null, null));
+            parts.addAll(response.result().partList());
+            partNumberMarker = response.result().nextPartNumberMarker();
+        } while (response.result().isTruncated());
+        return parts;
+    }
+
+    public void completeMultipartUpload(String bucketName, String objectName, String uploadId, List<Part> parts) throws Exception {
+        await(completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts.toArray(new Part[0]), null, null));
+    }
+
+    public void abortMultipartUpload(String bucketName, String objectName, String uploadId) throws Exception {
+        await(abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null));
+    }
+
+    private <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.deye.web.configuration.adapter.sql;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.query.sqm.function.SqmFunctionRegistry;
+import org.hibernate.type.BasicTypeRegistry;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Functions over jsonb attribute values available in criteria queries.
+ * Rendered SQL must stay the same as expressions of the attribute_product_value indexes (V1_11 migration),
+ * otherwise Postgres won't use them. The same goes for the code point order of product names (V1_20 migration).
+ */
+public class JsonbFunctionContributor implements FunctionContributor {
+    public static final String JSONB_CONTAINS = "jsonb_contains";
+    public static final String JSONB_NUMBER = "jsonb_number";
+    public static final String JSONB_RANGE_MIN = "jsonb_range_min";
+    public static final String JSONB_RANGE_MAX = "jsonb_range_max";
+    public static final String CODE_POINT_ORDER = "code_point_order";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicTypeRegistry basicTypeRegistry = functionContributions.getTypeConfiguration().getBasicTypeRegistry();
+        SqmFunctionRegistry functionRegistry = functionContributions.getFunctionRegistry();
+        functionRegistry.registerPattern(JSONB_CONTAINS, "(?1 @> cast(?2 as jsonb))",
+                basicTypeRegistry.resolve(StandardBasicTypes.BOOLEAN));
+        functionRegistry.registerPattern(JSONB_NUMBER, "(case when jsonb_typeof(?1) = 'number' then cast(cast(?1 as text) as numeric) end)",
+                basicTypeRegistry.resolve(StandardBasicTypes.BIG_DECIMAL));
+        functionRegistry.registerPattern(JSONB_RANGE_MIN, "(case when jsonb_typeof(?1) = 'object' then cast(?1 ->> 'min' as numeric) end)",
+                basicTypeRegistry.resolve(StandardBasicTypes.BIG_DECIMAL));
+        functionRegistry.registerPattern(JSONB_RANGE_MAX, "(case when jsonb_typeof(?1) = 'object' then cast(?1 ->> 'max' as numeric) end)",
+                basicTypeRegistry.resolve(StandardBasicTypes.BIG_DECIMAL));
+        functionRegistry.registerPattern(CODE_POINT_ORDER, "(?1 collate ucs_basic)",
+                basicTypeRegistry.resolve(StandardBasicTypes.STRING));
+    }
+}
@@ -1,16 +1,18 @@
 package com.deye.web.controller;
 
+import com.deye.web.cache.CachedJson;
 import com.deye.web.controller.dto.CreateCategoryDto;
 import com.deye.web.controller.dto.UpdateCategoryDto;
-import com.deye.web.controller.view.CategoryView;
+import com.deye.web.controller.view.PresignedUploadView;
 import com.deye.web.service.impl.CategoryService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Set;
 import java.util.UUID;
 
 @RestController
@@ -20,13 +22,23 @@ public class CategoryController {
     private final CategoryService categoryService;
 
     @GetMapping
-    public ResponseEntity<Set<CategoryView>> getCategories() {
-        return new ResponseEntity<>(categoryService.getAll(), HttpStatus.OK);
+    public ResponseEntity<byte[]> getCategories() {
+        CachedJson categories = categoryService.getAllJson();
+        return ResponseEntity.ok()
+                .eTag(categories.getETag())
+                .cacheControl(categoryService.getViewCacheControl())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(categories.getJson());
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<CategoryView> getCategory(@PathVariable UUID id) {
-        return new ResponseEntity<>(categoryService.getById(id), HttpStatus.OK);
+    public ResponseEntity<byte[]> getCategory(@PathVariable UUID id) {
+        CachedJson category = categoryService.getJsonById(id);
+        return ResponseEntity.ok()
+                .eTag(category.getETag())
+                .cacheControl(categoryService.getViewCacheControl())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(category.getJson());
     }
 
     @PostMapping
@@ -35,8 +47,24 @@ public class CategoryController {
     }
 
     @PatchMapping("/{id}")
-    public void updateCategory(@PathVariable UUID id, @ModelAttribute @Valid UpdateCategoryDto category) {
-        categoryService.update(id, category);
+    public void updateCategory(@PathVariable UUID id,
+                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                               @ModelAttribute @Valid UpdateCategoryDto category) {
+        categoryService.update(id, category, ifMatch);
+    }
+
+    @PostMapping("/{id}/image/presigned-uploads")
+    public ResponseEntity<PresignedUploadView> issueImageUpload(@PathVariable UUID id,
+                                                                @RequestParam String fileName,
+                                                                @RequestParam String contentType,
+                                                                @RequestParam long size,
+                                                                @RequestParam String hash) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(categoryService.issueImageUpload(id, fileName, contentType, size, hash));
+    }
+
+    @PutMapping("/{id}/image/presigned-uploads/{fileName}")
+    public void confirmImageUpload(@PathVariable UUID id, @PathVariable String fileName) {
+        categoryService.confirmImageUpload(id, fileName);
     }
 
     @DeleteMapping("/{id}")
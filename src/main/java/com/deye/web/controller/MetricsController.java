@@ -0,0 +1,29 @@
+package com.deye.web.controller;
+
+import com.deye.web.cache.CacheStats;
+import com.deye.web.outbox.OutboxStats;
+import com.deye.web.service.impl.MetricsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/metrics")
+@RequiredArgsConstructor
+public class MetricsController {
+    private final MetricsService metricsService;
+
+    @GetMapping("/caches")
+    public ResponseEntity<List<CacheStats>> getCachesStats() {
+        return ResponseEntity.ok(metricsService.getCachesStats());
+    }
+
+    @GetMapping("/outboxes")
+    public ResponseEntity<List<OutboxStats>> getOutboxesStats() {
+        return ResponseEntity.ok(metricsService.getOutboxesStats());
+    }
+}
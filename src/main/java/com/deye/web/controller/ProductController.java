@@ -1,18 +1,38 @@
 package com.deye.web.controller;
 
+import com.deye.web.cache.CachedJson;
 import com.deye.web.controller.dto.CreateProductDto;
 import com.deye.web.controller.dto.ProductFilterDto;
 import com.deye.web.controller.dto.UpdateProductDto;
-import com.deye.web.controller.view.ProductView;
+import com.deye.web.controller.view.AttributeFacetView;
+import com.deye.web.controller.view.CategoryHistogramsView;
+import com.deye.web.controller.view.DeletedProductsView;
+import com.deye.web.controller.view.ImageUploadView;
+import com.deye.web.controller.view.PresignedUploadView;
+import com.deye.web.controller.view.ProductImportView;
+import com.deye.web.controller.view.ProductCursorPageView;
+import com.deye.web.enumerated.ProductCountModeEnum;
+import com.deye.web.enumerated.ProductFileFormatEnum;
+import com.deye.web.enumerated.ProductSortEnum;
 import com.deye.web.service.impl.ProductService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
@@ -22,16 +42,114 @@ public class ProductController {
     private final ProductService productService;
 
     @GetMapping
-    public ResponseEntity<Page<ProductView>> getAll(@RequestParam int page,
-                                                    @RequestParam int size,
-                                                    @ModelAttribute @Valid ProductFilterDto productFilterDto) {
-        Pageable pageable = PageRequest.of(page, size);
-        return ResponseEntity.ok(productService.getAll(productFilterDto, pageable));
+    public ResponseEntity<Slice<?>> getAll(@RequestParam int page,
+                                           @RequestParam int size,
+                                           @RequestParam(required = false) String q,
+                                           @RequestParam(defaultValue = "NAME") ProductSortEnum sort,
+                                           @RequestParam(defaultValue = "ASC") Sort.Direction direction,
+                                           @RequestParam(defaultValue = "EXACT") ProductCountModeEnum count,
+                                           @ModelAttribute @Valid ProductFilterDto productFilterDto) {
+        if (q != null) {
+            return ResponseEntity.ok(productService.search(q, productFilterDto, PageRequest.of(page, size)));
+        }
+        Pageable pageable = PageRequest.of(page, size, sort.toSort(direction));
+        return ResponseEntity.ok(productService.getAll(productFilterDto, pageable, count));
+    }
+
+    @GetMapping("/cursor")
+    public ResponseEntity<ProductCursorPageView> getAllAfter(@RequestParam(required = false) String after,
+                                                             @RequestParam int size,
+                                                             @RequestParam(defaultValue = "NAME") ProductSortEnum sort,
+                                                             @RequestParam(defaultValue = "ASC") Sort.Direction direction,
+                                                             @ModelAttribute @Valid ProductFilterDto productFilterDto) {
+        return ResponseEntity.ok(productService.getAllAfter(productFilterDto, sort, direction, after, size));
+    }
+
+    @GetMapping("/facets")
+    public ResponseEntity<List<AttributeFacetView>> getFacets(@ModelAttribute @Valid ProductFilterDto productFilterDto) {
+        return ResponseEntity.ok(productService.getFacets(productFilterDto));
+    }
+
+    @GetMapping("/histograms")
+    public ResponseEntity<CategoryHistogramsView> getHistograms(@RequestParam UUID categoryId,
+                                                                @RequestParam(defaultValue = "10") int buckets,
+                                                                @ModelAttribute @Valid ProductFilterDto productFilterDto) {
+        return ResponseEntity.ok(productService.getHistograms(categoryId, productFilterDto, buckets));
+    }
+
+    @GetMapping("/export")
+    public void export(@RequestParam(defaultValue = "NDJSON") ProductFileFormatEnum format,
+                       @ModelAttribute @Valid ProductFilterDto productFilterDto,
+                       HttpServletResponse response) throws IOException {
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products." + format.getExtension() + "\"");
+        productService.export(productFilterDto, format, response.getOutputStream());
+    }
+
+    @PostMapping("/import")
+    public ResponseEntity<ProductImportView> startImport(@RequestParam(defaultValue = "NDJSON") ProductFileFormatEnum format,
+                                                         HttpServletRequest request) throws IOException {
+        return ResponseEntity.accepted().body(productService.startImport(request.getInputStream(), format));
+    }
+
+    @GetMapping("/import/{id}")
+    public ResponseEntity<ProductImportView> getImport(@PathVariable UUID id) {
+        return ResponseEntity.ok(productService.getImport(id));
+    }
+
+    @PostMapping("/{id}/images/uploads")
+    public ResponseEntity<ImageUploadView> startImageUpload(@PathVariable UUID id,
+                                                            @RequestParam String fileName,
+                                                            @RequestParam String contentType,
+                                                            @RequestParam long size) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(productService.startImageUpload(id, fileName, contentType, size));
+    }
+
+    @GetMapping("/{id}/images/uploads/{uploadId}")
+    public ResponseEntity<ImageUploadView> getImageUpload(@PathVariable UUID id, @PathVariable UUID uploadId) {
+        return ResponseEntity.ok(productService.getImageUpload(id, uploadId));
+    }
+
+    @PutMapping("/{id}/images/uploads/{uploadId}")
+    public ResponseEntity<ImageUploadView> appendImageUpload(@PathVariable UUID id,
+                                                             @PathVariable UUID uploadId,
+                                                             @RequestParam(defaultValue = "0") long offset,
+                                                             HttpServletRequest request) throws IOException {
+        return ResponseEntity.ok(productService.appendImageUpload(id, uploadId, offset, request.getInputStream()));
+    }
+
+    @DeleteMapping("/{id}/images/uploads/{uploadId}")
+    public void abortImageUpload(@PathVariable UUID id, @PathVariable UUID uploadId) {
+        productService.abortImageUpload(id, uploadId);
+    }
+
+    @PostMapping("/{id}/images/presigned-uploads")
+    public ResponseEntity<PresignedUploadView> issueImageUpload(@PathVariable UUID id,
+                                                                @RequestParam String fileName,
+                                                                @RequestParam String contentType,
+                                                                @RequestParam long size,
+                                                                @RequestParam String hash) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(productService.issueImageUpload(id, fileName, contentType, size, hash));
+    }
+
+    @PutMapping("/{id}/images/presigned-uploads/{fileName}")
+    public void confirmImageUpload(@PathVariable UUID id, @PathVariable String fileName) {
+        productService.confirmImageUpload(id, fileName);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ProductView> getById(@PathVariable UUID id) {
-        return ResponseEntity.ok(productService.getById(id));
+    public ResponseEntity<byte[]> getById(@PathVariable UUID id, WebRequest webRequest) {
+        String eTag = productService.getETagById(id);
+        if (webRequest.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(productService.getViewCacheControl()).build();
+        }
+        CachedJson product = productService.getJsonById(id);
+        return ResponseEntity.ok()
+                .eTag(product.getETag())
+                .cacheControl(productService.getViewCacheControl())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(product.getJson());
     }
 
     @DeleteMapping("/{id}")
@@ -39,13 +157,21 @@ public class ProductController {
         productService.deleteById(id);
     }
 
+    @DeleteMapping
+    public ResponseEntity<DeletedProductsView> deleteAll(@RequestParam(required = false) List<UUID> ids,
+                                                         @ModelAttribute @Valid ProductFilterDto productFilterDto) {
+        return ResponseEntity.ok(productService.deleteAll(ids, productFilterDto));
+    }
+
     @PostMapping
     public void save(@ModelAttribute @Valid CreateProductDto createProductDto) {
         productService.save(createProductDto);
     }
 
     @PatchMapping("/{id}")
-    public void update(@PathVariable UUID id, @ModelAttribute @Valid UpdateProductDto updateProductDto) {
-        productService.update(id, updateProductDto);
+    public void update(@PathVariable UUID id,
+                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                       @ModelAttribute @Valid UpdateProductDto updateProductDto) {
+        productService.update(id, updateProductDto, ifMatch);
     }
 }
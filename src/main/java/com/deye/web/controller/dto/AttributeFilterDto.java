@@ -0,0 +1,26 @@
+package com.deye.web.controller.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Filter by value of the filterable category attribute. Which field is used depends on attribute type:
+ * values - STRING_SELECT and NUMBER_SELECT, checked - CHECKBOX, range - NUMBER and RANGE
+ */
+@Getter
+@Setter
+public class AttributeFilterDto {
+
+    @NotNull(message = "Attribute id can't be null")
+    private UUID id;
+    private List<String> values;
+    private Boolean checked;
+
+    @Valid
+    private RangeDto range;
+}
@@ -15,4 +15,7 @@ public class ProductFilterDto {
 
     @Valid
     private RangeDto priceRange;
+
+    @Valid
+    private List<AttributeFilterDto> attributes;
 }
@@ -0,0 +1,25 @@
+package com.deye.web.controller.view;
+
+import com.deye.web.enumerated.AttributeTypeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Builder
+public class AttributeFacetView {
+    private UUID id;
+    private String name;
+    private AttributeTypeEnum type;
+    private List<ValueCount> values;
+
+    @Getter
+    @AllArgsConstructor
+    public static class ValueCount {
+        private Object value;
+        private long count;
+    }
+}
@@ -0,0 +1,15 @@
+package com.deye.web.controller.view;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Builder
+public class CategoryHistogramsView {
+    private UUID categoryId;
+    private HistogramView price;
+    private List<HistogramView> attributes;
+}
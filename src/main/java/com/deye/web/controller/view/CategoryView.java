@@ -13,5 +13,6 @@ public class CategoryView {
     private String name;
     private String description;
     private String image;
+    private ImageView imageDerivatives;
     private List<CategoryAttributeView> attributes;
 }
@@ -0,0 +1,11 @@
+package com.deye.web.controller.view;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class DeletedProductsView {
+    private int deletedProducts;
+    private int deletedImages;
+}
@@ -0,0 +1,20 @@
+package com.deye.web.controller.view;
+
+import com.deye.web.enumerated.AttributeTypeEnum;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Builder
+public class HistogramView {
+    private UUID attributeId;
+    private String name;
+    private AttributeTypeEnum type;
+    private Double min;
+    private Double max;
+    private Double bucketWidth;
+    private List<Long> counts;
+}
@@ -0,0 +1,21 @@
+package com.deye.web.controller.view;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+@Builder
+public class ImageUploadView {
+    private UUID id;
+    private UUID productId;
+    private String fileName;
+    private long size;
+    private int partSize;
+    /**
+     * Offset the next request has to continue the upload from
+     */
+    private long uploadedBytes;
+    private boolean completed;
+}
@@ -0,0 +1,13 @@
+package com.deye.web.controller.view;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class ImageView {
+    private String original;
+    private String thumbnail;
+    private String card;
+    private String full;
+}
@@ -0,0 +1,29 @@
+package com.deye.web.controller.view;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Getter
+@Builder
+public class PresignedUploadView {
+    /**
+     * Content addressed key the image is attached by when it's confirmed
+     */
+    private String fileName;
+    /**
+     * True when the same content is already stored, the image is confirmed right away without being uploaded
+     */
+    private boolean uploaded;
+    /**
+     * URL the image is uploaded to by PUT request, null when the image is already uploaded
+     */
+    private String url;
+    /**
+     * Headers the PUT request has to be sent with as they are, they are signed into the URL
+     */
+    private Map<String, String> headers;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,14 @@
+package com.deye.web.controller.view;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@Builder
+public class ProductCursorPageView {
+    private List<ProductView> content;
+    private String next;
+    private boolean hasNext;
+}
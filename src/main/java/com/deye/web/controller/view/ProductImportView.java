@@ -0,0 +1,28 @@
+package com.deye.web.controller.view;
+
+import com.deye.web.enumerated.ProductImportStatusEnum;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.UUID;
+
+@Getter
+@Builder
+public class ProductImportView {
+    private UUID id;
+    private ProductImportStatusEnum status;
+    private long processedRows;
+    private long importedRows;
+    private long failedRows;
+    private List<RowError> errors;
+    private String message;
+
+    @Getter
+    @AllArgsConstructor
+    public static class RowError {
+        private long row;
+        private String message;
+    }
+}
@@ -0,0 +1,12 @@
+package com.deye.web.controller.view;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class ProductSearchView {
+    private ProductView product;
+    private Double rank;
+    private String headline;
+}
@@ -18,5 +18,6 @@ public class ProductView {
     private UUID categoryId;
     private String categoryName;
     private Set<String> images;
+    private List<ImageView> imagesDerivatives;
     private List<AttributeView> attributes;
 }
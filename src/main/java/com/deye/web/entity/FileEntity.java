@@ -3,6 +3,7 @@ package com.deye.web.entity;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.Formula;
 
 import java.util.UUID;
 
@@ -17,6 +18,18 @@ public class FileEntity {
     private UUID id;
     private String name;
 
+    /**
+     * SHA-256 of the content taken from the content addressed name, see V1_18 migration, null for older names
+     */
+    @Column(insertable = false, updatable = false)
+    private String hash;
+
+    /**
+     * True when derivatives of the stored object are generated, see ImageDerivativesStatusEnum
+     */
+    @Formula("(select o.derivatives_status = 'GENERATED' from file_object o where o.name = name)")
+    private Boolean derivativesGenerated;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "PRODUCT_ID")
     private ProductEntity product;
@@ -0,0 +1,44 @@
+package com.deye.web.entity;
+
+import com.deye.web.enumerated.ImageDerivativesStatusEnum;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stored object of a file name, see V1_18 migration. Reference count is the amount of FILE rows with the name,
+ * it's maintained by a trigger and is never written by the application
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "FILE_OBJECT")
+public class FileObjectEntity {
+
+    @Id
+    private String name;
+
+    @Column(insertable = false, updatable = false)
+    private String hash;
+
+    @Column(insertable = false, updatable = false)
+    private int refCount;
+    private boolean uploaded;
+
+    /**
+     * Set while the object is deleted from the storage, see FileOutboxService
+     */
+    private boolean deleting;
+
+    /**
+     * Written by ImageDerivativeService and reset by deletes of FileOutboxService only, so it isn't overwritten when the row is saved
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(insertable = false, updatable = false)
+    private ImageDerivativesStatusEnum derivativesStatus;
+
+    @Column(insertable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
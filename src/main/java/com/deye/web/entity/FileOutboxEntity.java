@@ -0,0 +1,25 @@
+package com.deye.web.entity;
+
+import com.deye.web.enumerated.FileOperationEnum;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * File storage operation waiting for the relay, see V1_15 migration.
+ * Bytes of an upload are kept in FILE_OUTBOX_CONTENT and aren't mapped, so operations are loaded without them
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "FILE_OUTBOX")
+public class FileOutboxEntity extends OutboxEntity {
+
+    @Enumerated(EnumType.STRING)
+    private FileOperationEnum operation;
+    private String fileName;
+    private String contentType;
+}
@@ -0,0 +1,43 @@
+package com.deye.web.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Resumable image upload, see V1_17 migration. Uploaded parts are kept by MinIO under the multipart upload id,
+ * every part except the last one has the part size the upload was started with
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "FILE_UPLOAD")
+public class FileUploadEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    private String uploadId;
+    private UUID productId;
+    private String fileName;
+    /**
+     * Temporary key the parts are uploaded to, the completed object is copied to its content addressed key
+     */
+    private String objectName;
+    private String contentType;
+    private Long size;
+    private Integer partSize;
+    /**
+     * Request which appends parts of the upload, see ImageUploadService.append
+     */
+    private UUID appendLeaseId;
+    private LocalDateTime appendLeaseUntil;
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,21 @@
+package com.deye.web.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Broker message waiting for the relay, see V1_16 migration.
+ * Payload is the event data, the message itself is built when it's published
+ */
+@Getter
+@Setter
+@Entity
+@Table(name = "MESSAGE_OUTBOX")
+public class MessageOutboxEntity extends OutboxEntity {
+    private String exchange;
+    private String routingKey;
+    private String eventType;
+    private String payload;
+}
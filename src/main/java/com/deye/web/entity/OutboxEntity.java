@@ -0,0 +1,32 @@
+package com.deye.web.entity;
+
+import com.deye.web.enumerated.OutboxStatusEnum;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Delivery state shared by records of the outboxes, see OutboxRelay
+ */
+@Getter
+@Setter
+@MappedSuperclass
+public abstract class OutboxEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    private OutboxStatusEnum status = OutboxStatusEnum.PENDING;
+    private int attempts;
+    private LocalDateTime nextAttemptAt;
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+}
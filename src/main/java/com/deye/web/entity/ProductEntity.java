@@ -8,7 +8,9 @@ import jakarta.persistence.*;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.CreationTimestamp;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -22,11 +24,18 @@ public class ProductEntity {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
+
+    @Version
+    private Long version;
     private String name;
     private String description;
     private Float price;
     private Integer stockQuantity;
 
+    @CreationTimestamp
+    @Column(updatable = false)
+    private LocalDateTime createdAt;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "CATEGORY_ID")
     private CategoryEntity category;
@@ -37,8 +46,15 @@ public class ProductEntity {
     @OneToMany(mappedBy = "product", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<AttributeProductValuesEntity> attributesValuesForProduct = new HashSet<>();
 
+    /**
+     * Images are content addressed, so a name already attached to the product is the same image and is skipped
+     */
     public void setImages(Set<String> fileNames) {
+        Set<String> imagesNames = getImagesNames();
         for (String fileName : fileNames) {
+            if (imagesNames.contains(fileName)) {
+                continue;
+            }
             FileEntity productImage = new FileEntity();
             productImage.setName(fileName);
             productImage.setProduct(this);
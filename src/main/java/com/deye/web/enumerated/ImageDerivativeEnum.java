@@ -0,0 +1,38 @@
+package com.deye.web.enumerated;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-size copies of an uploaded image, stored next to the original: image.png has image.thumbnail.png and so on
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ImageDerivativeEnum {
+    THUMBNAIL("thumbnail", 200),
+    CARD("card", 600),
+    FULL("full", 1600);
+
+    private final String suffix;
+    /**
+     * Max width and height, images which are smaller are stored as they are
+     */
+    private final int maxSize;
+
+    public String toFileName(String originalFileName) {
+        int extensionIndex = originalFileName.lastIndexOf('.');
+        if (extensionIndex < 0) {
+            return originalFileName + "." + suffix;
+        }
+        return originalFileName.substring(0, extensionIndex) + "." + suffix + originalFileName.substring(extensionIndex);
+    }
+
+    public static List<String> toFileNames(String originalFileName) {
+        return Arrays.stream(values())
+                .map(derivative -> derivative.toFileName(originalFileName))
+                .toList();
+    }
+}
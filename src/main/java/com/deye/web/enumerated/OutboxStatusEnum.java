@@ -0,0 +1,6 @@
+package com.deye.web.enumerated;
+
+public enum OutboxStatusEnum {
+    PENDING,
+    FAILED
+}
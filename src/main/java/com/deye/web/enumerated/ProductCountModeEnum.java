@@ -0,0 +1,8 @@
+package com.deye.web.enumerated;
+
+public enum ProductCountModeEnum {
+    EXACT,
+    NONE,
+    ESTIMATED,
+    CACHED
+}
@@ -0,0 +1,20 @@
+package com.deye.web.enumerated;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+public enum ProductFileFormatEnum {
+    /**
+     * One product JSON per line
+     */
+    NDJSON("application/x-ndjson", "ndjson"),
+    /**
+     * Product fields per column, images and attributes values are JSON encoded columns
+     */
+    CSV("text/csv", "csv");
+
+    private final String contentType;
+    private final String extension;
+}
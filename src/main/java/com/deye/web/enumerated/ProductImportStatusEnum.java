@@ -0,0 +1,7 @@
+package com.deye.web.enumerated;
+
+public enum ProductImportStatusEnum {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,62 @@
+package com.deye.web.enumerated;
+
+import com.deye.web.entity.ProductEntity;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+
+import static com.deye.web.configuration.adapter.sql.JsonbFunctionContributor.CODE_POINT_ORDER;
+
+@Getter
+@RequiredArgsConstructor
+public enum ProductSortEnum {
+    NAME("name"),
+    PRICE("price"),
+    STOCK("stockQuantity"),
+    CREATED_AT("createdAt"),
+    /**
+     * Similarity of the product name to the searched one. Has no entity property,
+     * so it's mapped to unsorted request and the listing engine orders products by similarity itself
+     */
+    RELEVANCE(null);
+
+    private final String property;
+
+    /**
+     * Product id is always the last sort property, so products with equal sort key keep stable order
+     */
+    public Sort toSort(Sort.Direction direction) {
+        if (property == null) {
+            return Sort.unsorted();
+        }
+        return Sort.by(direction, property, "id");
+    }
+
+    /**
+     * Expression products are ordered and compared by. Names are ordered by code points regardless of the column collation,
+     * the same way as the catalog index orders them
+     *
+     * @param property - sort property of the entity
+     */
+    public static Expression<?> toSortKey(Root<ProductEntity> root, CriteriaBuilder criteriaBuilder, String property) {
+        if (NAME.property.equals(property)) {
+            return criteriaBuilder.function(CODE_POINT_ORDER, String.class, root.get(property));
+        }
+        return root.get(property);
+    }
+
+    public Object parseSortKey(String value) {
+        return switch (this) {
+            case NAME -> value;
+            case PRICE -> Float.valueOf(value);
+            case STOCK -> Integer.valueOf(value);
+            case CREATED_AT -> LocalDateTime.parse(value);
+            case RELEVANCE -> throw new IllegalArgumentException("Relevance has no sort key");
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package com.deye.web.exception;
+
+public class PreconditionFailedException extends CommonException {
+    public PreconditionFailedException(Integer code, String message) {
+        super(code, message);
+    }
+}
@@ -9,6 +9,7 @@ import io.jsonwebtoken.JwtException;
 import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.ObjectError;
@@ -64,6 +65,22 @@ public class CommonExceptionHandler {
         return new ResponseEntity<>(errorResponseDto, HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(value = PreconditionFailedException.class)
+    public ResponseEntity<ErrorResponseDto> handlePreconditionFailedException(PreconditionFailedException e) {
+        ErrorResponseDto errorResponseDto = new ErrorResponseDto();
+        errorResponseDto.setCode(e.getCode());
+        errorResponseDto.setMessage(e.getMessage());
+        return new ResponseEntity<>(errorResponseDto, HttpStatus.PRECONDITION_FAILED);
+    }
+
+    @ExceptionHandler(value = OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponseDto> handleOptimisticLockingFailureException(OptimisticLockingFailureException e) {
+        ErrorResponseDto errorResponseDto = new ErrorResponseDto();
+        errorResponseDto.setCode(ErrorCodeUtils.PRECONDITION_FAILED_ERROR_CODE);
+        errorResponseDto.setMessage(ErrorMessageUtils.PRECONDITION_FAILED_ERROR_MESSAGE);
+        return new ResponseEntity<>(errorResponseDto, HttpStatus.PRECONDITION_FAILED);
+    }
+
     @ExceptionHandler(value = MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponseDto> handleConstraintDefinitionException(MethodArgumentNotValidException e) {
         ErrorResponseDto errorResponseDto = new ErrorResponseDto();
@@ -0,0 +1,436 @@
+package com.deye.web.index;
+
+import com.deye.web.controller.dto.AttributeFilterDto;
+import com.deye.web.controller.dto.ProductFilterDto;
+import com.deye.web.controller.dto.RangeDto;
+import com.deye.web.enumerated.AttributeTypeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.commons.lang3.StringUtils;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * In-memory index of the catalog. Every product gets an ordinal, category and select/checkbox filters are answered
+ * by intersecting compressed bitmaps of ordinals, price and numeric attributes ranges by binary search in sorted arrays.
+ * Sorted arrays are rebuilt lazily on the first read after a change, as the catalog is read much more often than written.
+ * Ties are ordered by id the same way as Postgres compares uuid, names are compared by code points the same way as the database
+ * orders them, see ProductSortEnum. Ordinals of removed products are reused by the next added ones, so bitmaps don't grow with churn.
+ * Changes may be applied out of order, so a document older than the indexed one is ignored and removed products leave
+ * tombstones with their versions, so a late document read before the removal doesn't bring the product back.
+ */
+public class CatalogIndex {
+    /**
+     * Version of tombstones of deleted products, ids of products are never reused, so no document replaces them
+     */
+    public static final long DELETED_VERSION = Long.MAX_VALUE;
+    /**
+     * Late documents are read within moments before the removal, so only the latest tombstones are kept
+     */
+    private static final int MAX_TOMBSTONES = 10_000;
+    private static final Comparator<UUID> ID_ORDER = Comparator
+            .comparing((UUID id) -> id.getMostSignificantBits(), Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+    private static final Map<String, Comparator<ProductIndexDocument>> SORT_KEYS = Map.of(
+            "id", Comparator.comparing(ProductIndexDocument::getId, ID_ORDER),
+            "name", keyThenId(ProductIndexDocument::getName, CatalogIndex::compareCodePoints),
+            "price", keyThenId(ProductIndexDocument::getPrice),
+            "stockQuantity", keyThenId(ProductIndexDocument::getStockQuantity),
+            "createdAt", keyThenId(ProductIndexDocument::getCreatedAt)
+    );
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> ordinals = new HashMap<>();
+    private final List<ProductIndexDocument> documents = new ArrayList<>();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final RoaringBitmap products = new RoaringBitmap();
+    private final Map<UUID, Long> tombstones = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Long> eldest) {
+            return size() > MAX_TOMBSTONES;
+        }
+    };
+    private final Map<UUID, RoaringBitmap> categories = new HashMap<>();
+    private final Map<UUID, Map<String, RoaringBitmap>> attributesValues = new HashMap<>();
+
+    private final Map<String, int[]> sortOrders = new HashMap<>();
+    private final Map<UUID, NumericColumn> numericAttributes = new HashMap<>();
+    private final Map<UUID, List<RangeValue>> rangeAttributes = new HashMap<>();
+    private NumericColumn prices;
+    private boolean isDirty = true;
+
+    /**
+     * Document older than the indexed one or than the tombstone of the product is ignored
+     */
+    public void upsert(ProductIndexDocument document) {
+        lock.writeLock().lock();
+        try {
+            Long removedVersion = tombstones.get(document.getId());
+            if (removedVersion != null && document.getVersion() <= removedVersion) {
+                return;
+            }
+            tombstones.remove(document.getId());
+            Integer ordinal = ordinals.get(document.getId());
+            if (ordinal != null && document.getVersion() < documents.get(ordinal).getVersion()) {
+                return;
+            }
+            if (ordinal == null) {
+                ordinal = freeOrdinals.poll();
+                if (ordinal == null) {
+                    ordinal = documents.size();
+                    documents.add(document);
+                } else {
+                    documents.set(ordinal, document);
+                }
+                ordinals.put(document.getId(), ordinal);
+            } else {
+                unindex(ordinal, documents.get(ordinal));
+                documents.set(ordinal, document);
+            }
+            index(ordinal, document);
+            isDirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param version - version the product was removed at, documents of this or older versions are ignored afterwards
+     */
+    public void remove(UUID productId, long version) {
+        lock.writeLock().lock();
+        try {
+            tombstones.merge(productId, version, Math::max);
+            Integer ordinal = ordinals.remove(productId);
+            if (ordinal != null) {
+                unindex(ordinal, documents.get(ordinal));
+                documents.set(ordinal, null);
+                freeOrdinals.push(ordinal);
+                isDirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops values of a deleted attribute from all products
+     */
+    public void removeAttribute(UUID attributeId) {
+        lock.writeLock().lock();
+        try {
+            attributesValues.remove(attributeId);
+            products.forEach((int ordinal) -> {
+                ProductIndexDocument document = documents.get(ordinal);
+                if (document.getAttributesValues().containsKey(attributeId)) {
+                    documents.set(ordinal, document.withoutAttribute(attributeId));
+                }
+            });
+            isDirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return products.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Only sorts produced by ProductSortEnum are supported: sort property and then id in the same direction
+     */
+    public boolean supports(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        if (orders.isEmpty() || !SORT_KEYS.containsKey(orders.get(0).getProperty())) {
+            return false;
+        }
+        Sort.Direction direction = orders.get(0).getDirection();
+        return orders.stream()
+                .skip(1)
+                .allMatch(order -> order.getProperty().equals("id") && order.getDirection() == direction);
+    }
+
+    /**
+     * @param productFilterDto - products filter, attributes filters must be already validated
+     * @param attributesTypes  - types of the filtered attributes
+     * @param sort             - supported sort, see {@link #supports(Sort)}
+     * @param offset           - amount of products to skip
+     * @param limit            - page size
+     */
+    public IndexPage findPage(ProductFilterDto productFilterDto, Map<UUID, AttributeTypeEnum> attributesTypes, Sort sort, long offset, int limit) {
+        acquireReadLock();
+        try {
+            RoaringBitmap matched = filter(productFilterDto, attributesTypes);
+            Sort.Order order = sort.iterator().next();
+            int[] sortOrder = sortOrders.get(order.getProperty());
+            List<UUID> productsIds = new ArrayList<>(limit);
+            long skipped = 0;
+            for (int i = 0; i < sortOrder.length && productsIds.size() < limit; i++) {
+                int ordinal = sortOrder[order.isAscending() ? i : sortOrder.length - 1 - i];
+                if (!matched.contains(ordinal)) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                    continue;
+                }
+                productsIds.add(documents.get(ordinal).getId());
+            }
+            return new IndexPage(productsIds, matched.getLongCardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap filter(ProductFilterDto productFilterDto, Map<UUID, AttributeTypeEnum> attributesTypes) {
+        RoaringBitmap matched = products.clone();
+        if (productFilterDto == null) {
+            return matched;
+        }
+        if (productFilterDto.getCategoriesIds() != null && !productFilterDto.getCategoriesIds().isEmpty()) {
+            matched.and(union(productFilterDto.getCategoriesIds().stream()
+                    .map(categories::get)
+                    .toList()));
+        }
+        RangeDto priceRange = productFilterDto.getPriceRange();
+        if (priceRange != null) {
+            matched.and(prices.between(priceRange.getMin().doubleValue(), priceRange.getMax().doubleValue()));
+        }
+        if (productFilterDto.getAttributes() != null) {
+            for (AttributeFilterDto attributeFilter : productFilterDto.getAttributes()) {
+                matched.and(filterAttribute(attributeFilter, attributesTypes.get(attributeFilter.getId())));
+            }
+        }
+        if (StringUtils.isNotBlank(productFilterDto.getName())) {
+            String name = productFilterDto.getName().toLowerCase();
+            RoaringBitmap matchedByName = new RoaringBitmap();
+            IntIterator iterator = matched.getIntIterator();
+            while (iterator.hasNext()) {
+                int ordinal = iterator.next();
+                if (documents.get(ordinal).getName().toLowerCase().contains(name)) {
+                    matchedByName.add(ordinal);
+                }
+            }
+            matched = matchedByName;
+        }
+        return matched;
+    }
+
+    private RoaringBitmap filterAttribute(AttributeFilterDto attributeFilter, AttributeTypeEnum attributeType) {
+        Map<String, RoaringBitmap> values = attributesValues.getOrDefault(attributeFilter.getId(), Map.of());
+        NumericColumn numbers = numericAttributes.getOrDefault(attributeFilter.getId(), NumericColumn.EMPTY);
+        RangeDto range = attributeFilter.getRange();
+        return switch (attributeType) {
+            case STRING_SELECT, NUMBER_SELECT -> union(attributeFilter.getValues().stream()
+                    .map(value -> values.get(toValueKey(attributeType == AttributeTypeEnum.NUMBER_SELECT ? new BigDecimal(value.trim()) : value)))
+                    .toList());
+            case CHECKBOX -> union(Collections.singletonList(values.get(toValueKey(attributeFilter.getChecked()))));
+            case NUMBER -> numbers.between(range.getMin().doubleValue(), range.getMax().doubleValue());
+            case RANGE -> {
+                RoaringBitmap matched = numbers.between(range.getMin().doubleValue(), range.getMax().doubleValue());
+                for (RangeValue rangeValue : rangeAttributes.getOrDefault(attributeFilter.getId(), List.of())) {
+                    if (rangeValue.getMin() <= range.getMax().doubleValue() && rangeValue.getMax() >= range.getMin().doubleValue()) {
+                        matched.add(rangeValue.getOrdinal());
+                    }
+                }
+                yield matched;
+            }
+            case STRING -> new RoaringBitmap();
+        };
+    }
+
+    private void index(int ordinal, ProductIndexDocument document) {
+        products.add(ordinal);
+        categories.computeIfAbsent(document.getCategoryId(), id -> new RoaringBitmap()).add(ordinal);
+        document.getAttributesValues().forEach((attributeId, value) -> {
+            if (isScalar(value)) {
+                attributesValues.computeIfAbsent(attributeId, id -> new HashMap<>())
+                        .computeIfAbsent(toValueKey(value), key -> new RoaringBitmap())
+                        .add(ordinal);
+            }
+        });
+    }
+
+    private void unindex(int ordinal, ProductIndexDocument document) {
+        products.remove(ordinal);
+        categories.get(document.getCategoryId()).remove(ordinal);
+        document.getAttributesValues().forEach((attributeId, value) -> {
+            if (isScalar(value)) {
+                attributesValues.get(attributeId).get(toValueKey(value)).remove(ordinal);
+            }
+        });
+    }
+
+    /**
+     * Read lock with sorted arrays up to date, rebuilding them under the write lock when needed
+     */
+    private void acquireReadLock() {
+        lock.readLock().lock();
+        if (!isDirty) {
+            return;
+        }
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            if (isDirty) {
+                rebuildSortedArrays();
+                isDirty = false;
+            }
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void rebuildSortedArrays() {
+        List<ProductIndexDocument> liveDocuments = new ArrayList<>(products.getCardinality());
+        products.forEach((int ordinal) -> liveDocuments.add(documents.get(ordinal)));
+        sortOrders.clear();
+        SORT_KEYS.forEach((property, comparator) -> sortOrders.put(property, liveDocuments.stream()
+                .sorted(comparator)
+                .mapToInt(document -> ordinals.get(document.getId()))
+                .toArray()));
+
+        Map<UUID, List<double[]>> numbers = new HashMap<>();
+        List<double[]> pricesValues = new ArrayList<>(liveDocuments.size());
+        rangeAttributes.clear();
+        for (ProductIndexDocument document : liveDocuments) {
+            int ordinal = ordinals.get(document.getId());
+            if (document.getPrice() != null) {
+                pricesValues.add(new double[]{document.getPrice(), ordinal});
+            }
+            document.getAttributesValues().forEach((attributeId, value) -> {
+                if (value instanceof Number number) {
+                    numbers.computeIfAbsent(attributeId, id -> new ArrayList<>()).add(new double[]{number.doubleValue(), ordinal});
+                } else if (value instanceof Map<?, ?> range && range.get("min") instanceof Number min && range.get("max") instanceof Number max) {
+                    rangeAttributes.computeIfAbsent(attributeId, id -> new ArrayList<>()).add(new RangeValue(ordinal, min.doubleValue(), max.doubleValue()));
+                }
+            });
+        }
+        prices = NumericColumn.of(pricesValues);
+        numericAttributes.clear();
+        numbers.forEach((attributeId, values) -> numericAttributes.put(attributeId, NumericColumn.of(values)));
+    }
+
+    private static RoaringBitmap union(List<RoaringBitmap> bitmaps) {
+        return RoaringBitmap.or(bitmaps.stream()
+                .filter(Objects::nonNull)
+                .iterator());
+    }
+
+    private static boolean isScalar(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean;
+    }
+
+    /**
+     * Numbers read from JSON and from filters may differ in type, e.g. 1 and 1.0, so they are compared by value
+     */
+    private static String toValueKey(Object value) {
+        if (value instanceof Number number) {
+            return new BigDecimal(number.toString()).stripTrailingZeros().toPlainString();
+        }
+        return String.valueOf(value);
+    }
+
+    private static <T extends Comparable<? super T>> Comparator<ProductIndexDocument> keyThenId(Function<ProductIndexDocument, T> key) {
+        return keyThenId(key, Comparator.naturalOrder());
+    }
+
+    private static <T> Comparator<ProductIndexDocument> keyThenId(Function<ProductIndexDocument, T> key, Comparator<T> keyOrder) {
+        return Comparator.comparing(key, Comparator.nullsLast(keyOrder))
+                .thenComparing(ProductIndexDocument::getId, ID_ORDER);
+    }
+
+    /**
+     * Order of ucs_basic collation. String.compareTo compares UTF-16 units, which puts supplementary characters
+     * before U+E000..U+FFFF, unlike code points
+     */
+    static int compareCodePoints(String left, String right) {
+        int i = 0;
+        int j = 0;
+        while (i < left.length() && j < right.length()) {
+            int leftCodePoint = left.codePointAt(i);
+            int rightCodePoint = right.codePointAt(j);
+            if (leftCodePoint != rightCodePoint) {
+                return Integer.compare(leftCodePoint, rightCodePoint);
+            }
+            i += Character.charCount(leftCodePoint);
+            j += Character.charCount(rightCodePoint);
+        }
+        return Integer.compare(left.length() - i, right.length() - j);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class IndexPage {
+        private final List<UUID> productsIds;
+        private final long total;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class RangeValue {
+        private final int ordinal;
+        private final double min;
+        private final double max;
+    }
+
+    /**
+     * Ordinals sorted by a numeric value, range lookup is a binary search
+     */
+    private static class NumericColumn {
+        private static final NumericColumn EMPTY = new NumericColumn(new double[0], new int[0]);
+        private final double[] values;
+        private final int[] ordinals;
+
+        private NumericColumn(double[] values, int[] ordinals) {
+            this.values = values;
+            this.ordinals = ordinals;
+        }
+
+        private static NumericColumn of(List<double[]> valuesWithOrdinals) {
+            valuesWithOrdinals.sort(Comparator.comparingDouble(valueWithOrdinal -> valueWithOrdinal[0]));
+            double[] values = new double[valuesWithOrdinals.size()];
+            int[] ordinals = new int[valuesWithOrdinals.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = valuesWithOrdinals.get(i)[0];
+                ordinals[i] = (int) valuesWithOrdinals.get(i)[1];
+            }
+            return new NumericColumn(values, ordinals);
+        }
+
+        private RoaringBitmap between(double min, double max) {
+            int from = lowerBound(min, false);
+            int to = lowerBound(max, true);
+            return from >= to ? new RoaringBitmap() : RoaringBitmap.bitmapOf(Arrays.copyOfRange(ordinals, from, to));
+        }
+
+        /**
+         * @return index of the first value greater than or equal to the given one, or strictly greater when inclusive
+         */
+        private int lowerBound(double value, boolean inclusive) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < value || (inclusive && values[middle] == value)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.deye.web.index;
+
+import com.deye.web.entity.AttributeProductValuesEntity;
+import com.deye.web.entity.ProductEntity;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Values of a product the catalog index filters and sorts by
+ */
+@Value
+public class ProductIndexDocument {
+    UUID id;
+    /**
+     * Version of the product the document was read at, older documents don't replace newer ones in the index
+     */
+    long version;
+    UUID categoryId;
+    String name;
+    Float price;
+    Integer stockQuantity;
+    LocalDateTime createdAt;
+    Map<UUID, Object> attributesValues;
+
+    public static ProductIndexDocument of(ProductEntity product) {
+        Map<UUID, Object> attributesValues = new HashMap<>();
+        for (AttributeProductValuesEntity attributeValue : product.getAttributesValuesForProduct()) {
+            attributesValues.put(attributeValue.getAttribute().getId(), attributeValue.getValue());
+        }
+        return new ProductIndexDocument(product.getId(), product.getVersion(), product.getCategory().getId(), product.getName(), product.getPrice(),
+                product.getStockQuantity(), product.getCreatedAt(), attributesValues);
+    }
+
+    public ProductIndexDocument withoutAttribute(UUID attributeId) {
+        Map<UUID, Object> remainingValues = new HashMap<>(attributesValues);
+        remainingValues.remove(attributeId);
+        return new ProductIndexDocument(id, version, categoryId, name, price, stockQuantity, createdAt, remainingValues);
+    }
+}
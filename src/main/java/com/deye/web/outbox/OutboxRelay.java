@@ -0,0 +1,161 @@
+package com.deye.web.outbox;
+
+import com.deye.web.entity.OutboxEntity;
+import com.deye.web.enumerated.OutboxStatusEnum;
+import com.deye.web.repository.OutboxRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Relay of a transactional outbox. Due records are claimed by batches in short transactions and applied
+ * outside of transactions, applied records are deleted and failed ones are retried with exponential backoff
+ * and are left as FAILED after {@value MAX_ATTEMPTS} attempts. Delivery is at least once
+ *
+ * @param <E> - records of the outbox
+ */
+@Slf4j
+public abstract class OutboxRelay<E extends OutboxEntity> implements OutboxStatsProvider {
+    public static final int MAX_ATTEMPTS = 10;
+    /**
+     * Claimed records are not claimed again until the lease ends, so records of a stopped relay are retried after it
+     */
+    private static final Duration LEASE = Duration.ofMinutes(5);
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong superseded = new AtomicLong();
+
+    protected abstract OutboxRepository<E> getRepository();
+
+    protected abstract PlatformTransactionManager getTransactionManager();
+
+    /**
+     * @return name of the outbox in logs and stats
+     */
+    protected abstract String getName();
+
+    protected abstract int getBatchSize();
+
+    /**
+     * Applies claimed records, runs outside of transactions
+     *
+     * @return error messages of the records which weren't applied by their ids, empty when all records are applied
+     */
+    protected abstract Map<Long, String> apply(List<E> records);
+
+    /**
+     * Applies due records batch by batch until there are no more of them
+     */
+    public void relay() {
+        try {
+            int claimed;
+            do {
+                claimed = relayBatch();
+            } while (claimed == getBatchSize());
+        } catch (Exception e) {
+            log.error("Error occurred while relaying {} outbox", getName(), e);
+        }
+    }
+
+    /**
+     * @param amount - amount of records which didn't have to be applied, because later records replace them
+     */
+    protected void countSuperseded(long amount) {
+        superseded.addAndGet(amount);
+    }
+
+    private int relayBatch() {
+        List<E> records = claim();
+        if (records.isEmpty()) {
+            return 0;
+        }
+        Map<Long, String> errors;
+        try {
+            errors = apply(records);
+        } catch (Exception e) {
+            log.error("Batch of {} {} outbox records isn't applied", records.size(), getName(), e);
+            errors = new HashMap<>();
+            for (E record : records) {
+                errors.put(record.getId(), e.getMessage());
+            }
+        }
+        complete(records, errors);
+        processed.addAndGet(records.size() - errors.size());
+        return records.size();
+    }
+
+    /**
+     * Locks due records in a short transaction, counts the attempt and moves their next attempt time to the lease end
+     */
+    private List<E> claim() {
+        return newTransaction().execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<E> records = getRepository().findAllDueForUpdate(now, getBatchSize());
+            for (E record : records) {
+                record.setAttempts(record.getAttempts() + 1);
+                record.setNextAttemptAt(now.plus(LEASE));
+            }
+            return records;
+        });
+    }
+
+    /**
+     * Applied records are deleted, failed ones are rescheduled or left as FAILED when they are out of attempts
+     */
+    private void complete(List<E> records, Map<Long, String> errors) {
+        List<Long> completedIds = records.stream()
+                .map(OutboxEntity::getId)
+                .filter(id -> !errors.containsKey(id))
+                .toList();
+        List<E> failed = records.stream()
+                .filter(record -> errors.containsKey(record.getId()))
+                .toList();
+        LocalDateTime now = LocalDateTime.now();
+        for (E record : failed) {
+            record.setLastError(errors.get(record.getId()));
+            if (record.getAttempts() >= MAX_ATTEMPTS) {
+                log.error("Record with id: {} of {} outbox is failed after {} attempts: {}", record.getId(), getName(), record.getAttempts(), record.getLastError());
+                record.setStatus(OutboxStatusEnum.FAILED);
+            } else {
+                record.setNextAttemptAt(now.plus(OutboxUtils.retryDelay(record.getAttempts())));
+                retried.incrementAndGet();
+            }
+        }
+        newTransaction().executeWithoutResult(status -> {
+            if (!completedIds.isEmpty()) {
+                getRepository().deleteAllByIdInBatch(completedIds);
+            }
+            if (!failed.isEmpty()) {
+                getRepository().saveAll(failed);
+            }
+        });
+    }
+
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(getTransactionManager());
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    @Override
+    public OutboxStats getStats() {
+        LocalDateTime oldestPendingCreatedAt = getRepository().findOldestPendingCreatedAt();
+        return OutboxStats.builder()
+                .name(getName())
+                .pending(getRepository().countByStatus(OutboxStatusEnum.PENDING))
+                .failed(getRepository().countByStatus(OutboxStatusEnum.FAILED))
+                .oldestPendingAgeSeconds(oldestPendingCreatedAt == null ? null : Duration.between(oldestPendingCreatedAt, LocalDateTime.now()).toSeconds())
+                .processed(processed.get())
+                .retried(retried.get())
+                .superseded(superseded.get())
+                .build();
+    }
+}
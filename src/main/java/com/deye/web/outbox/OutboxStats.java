@@ -0,0 +1,19 @@
+package com.deye.web.outbox;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Getter;
+
+@Getter
+@Builder
+public class OutboxStats {
+    private final String name;
+    private final long pending;
+    private final long failed;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final Long oldestPendingAgeSeconds;
+    private final long processed;
+    private final long retried;
+    private final long superseded;
+}
@@ -0,0 +1,6 @@
+package com.deye.web.outbox;
+
+public interface OutboxStatsProvider {
+
+    OutboxStats getStats();
+}
@@ -0,0 +1,21 @@
+package com.deye.web.outbox;
+
+import lombok.experimental.UtilityClass;
+
+import java.time.Duration;
+
+@UtilityClass
+public class OutboxUtils {
+    public static final Duration FIRST_RETRY_DELAY = Duration.ofSeconds(1);
+    public static final Duration MAX_RETRY_DELAY = Duration.ofMinutes(10);
+
+    /**
+     * Exponential backoff: delay is doubled with every failed attempt up to {@link #MAX_RETRY_DELAY}
+     *
+     * @param attempts - amount of failed attempts, starting from 1
+     */
+    public static Duration retryDelay(int attempts) {
+        Duration delay = FIRST_RETRY_DELAY.multipliedBy(1L << Math.min(Math.max(attempts - 1, 0), 20));
+        return delay.compareTo(MAX_RETRY_DELAY) > 0 ? MAX_RETRY_DELAY : delay;
+    }
+}
@@ -2,10 +2,25 @@ package com.deye.web.repository;
 
 import com.deye.web.entity.AttributeEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface AttributeRepository extends JpaRepository<AttributeEntity, UUID> {
+
+    @Query("select distinct ca.attribute from CategoryAttributeEntity ca " +
+            "where ca.isFilterable = true and ca.attribute.id in ?1")
+    List<AttributeEntity> findAllFilterableByIds(Collection<UUID> ids);
+
+    @Query("select distinct ca.attribute from CategoryAttributeEntity ca " +
+            "where ca.isFilterable = true and ca.category.id in ?1")
+    List<AttributeEntity> findAllFilterableByCategoriesIds(Collection<UUID> categoriesIds);
+
+    @Query("select distinct ca.attribute from CategoryAttributeEntity ca " +
+            "where ca.isFilterable = true")
+    List<AttributeEntity> findAllFilterable();
 }
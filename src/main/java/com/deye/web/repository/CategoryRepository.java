@@ -1,8 +1,14 @@
 package com.deye.web.repository;
 
 import com.deye.web.entity.CategoryEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,8 +23,17 @@ public interface CategoryRepository extends JpaRepository<CategoryEntity, UUID>
             "left join fetch c.categoryAttributes ca " +
             "left join fetch ca.attribute " +
             "where c.id = ?1")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     Optional<CategoryEntity> findByIdWithFetchedAttributesAndImage(UUID id);
 
+    /**
+     * Writable category, unlike {@link #findByIdWithFetchedAttributesAndImage}, changes of which are never flushed
+     */
+    @Query("select c from CategoryEntity c " +
+            "left join fetch c.image " +
+            "where c.id = ?1")
+    Optional<CategoryEntity> findWithImageById(UUID id);
+
     @Query("select c from CategoryEntity c " +
             "left join fetch c.image " +
             "left join fetch c.categoryAttributes ca " +
@@ -30,9 +45,31 @@ public interface CategoryRepository extends JpaRepository<CategoryEntity, UUID>
             "where c.id = ?1")
     Optional<CategoryEntity> findByIdWithFetchedAttributesAndImagesAndProducts(UUID id);
 
+    /**
+     * Same category as loaded in the current persistence context, its version is incremented on flush
+     * even if only child rows, e.g. image or attributes, were changed
+     */
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    @Query("select c from CategoryEntity c where c.id = ?1")
+    Optional<CategoryEntity> findWithVersionIncrementById(UUID id);
+
+    @Modifying
+    @Query("update CategoryEntity c set c.version = c.version + 1 " +
+            "where c.id in (select ca.category.id from CategoryAttributeEntity ca where ca.attribute.id = ?1)")
+    int incrementVersionByAttributeId(UUID attributeId);
+
+    @Query("select c.id from CategoryEntity c join c.image i where i.name = ?1")
+    List<UUID> findAllIdsByImageName(String imageName);
+
+    @Modifying
+    @Query("update CategoryEntity c set c.version = c.version + 1 " +
+            "where c.image.id in (select f.id from FileEntity f where f.name = ?1)")
+    int incrementVersionByImageName(String imageName);
+
     @Query("select c from CategoryEntity c " +
             "left join fetch c.image " +
             "left join fetch c.categoryAttributes ca " +
             "left join fetch ca.attribute ")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
     List<CategoryEntity> findAllWithFetchedAttributesAndImage();
 }
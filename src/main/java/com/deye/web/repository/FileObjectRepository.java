@@ -0,0 +1,76 @@
+package com.deye.web.repository;
+
+import com.deye.web.entity.FileObjectEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FileObjectRepository extends JpaRepository<FileObjectEntity, String> {
+
+    /**
+     * Row of the name is created by the FILE trigger as well, so concurrent creation is ignored instead of failed
+     */
+    @Modifying
+    @Query(value = "insert into file_object (name) values (?1) on conflict (name) do nothing", nativeQuery = true)
+    void createIfAbsent(String name);
+
+    /**
+     * Lock is held until the end of the transaction, so upload decision and deletion of the same object don't interleave
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from FileObjectEntity o where o.name = ?1")
+    FileObjectEntity findWithLockByName(String name);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from FileObjectEntity o where o.name in ?1 order by o.name")
+    List<FileObjectEntity> findAllWithLockByNames(Collection<String> names);
+
+    /**
+     * Names of uploaded objects whose derivatives aren't generated yet, oldest first
+     */
+    @Query(value = "select o.name from file_object o where o.uploaded and o.derivatives_status is null order by o.created_at limit ?1", nativeQuery = true)
+    List<String> findAllNamesWithoutDerivatives(int limit);
+
+    @Query(value = "select count(*) from file_object o where o.uploaded and o.derivatives_status is null", nativeQuery = true)
+    long countWithoutDerivatives();
+
+    @Query(value = "select count(*) from file_object o where o.derivatives_status = ?1", nativeQuery = true)
+    long countByDerivativesStatus(String derivativesStatus);
+
+    @Modifying
+    @Query(value = "update file_object set derivatives_status = ?2 where name = ?1", nativeQuery = true)
+    int updateDerivativesStatus(String name, String derivativesStatus);
+
+    /**
+     * Derivatives of the objects are generated again by the backfill once the objects are uploaded again
+     */
+    @Modifying
+    @Query(value = "update file_object set derivatives_status = null where name in ?1", nativeQuery = true)
+    int resetDerivativesStatusByNames(Collection<String> names);
+
+    @Modifying
+    @Query("update FileObjectEntity o set o.uploaded = true where o.name in ?1")
+    int markUploaded(Collection<String> names);
+
+    /**
+     * Names of objects which aren't referenced by any FILE row and aren't being deleted already,
+     * e.g. presigned uploads which were never confirmed
+     *
+     * @param createdAt - only objects created before it are returned
+     * @param limit     - max amount of names
+     */
+    @Query(value = "select o.name from file_object o " +
+            "where o.ref_count = 0 and o.created_at < ?1 " +
+            "and not exists (select 1 from file_outbox f where f.file_name = o.name and f.status = 'PENDING') " +
+            "order by o.created_at " +
+            "limit ?2", nativeQuery = true)
+    List<String> findAllAbandonedNames(LocalDateTime createdAt, int limit);
+}
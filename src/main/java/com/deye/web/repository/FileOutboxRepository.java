@@ -0,0 +1,44 @@
+package com.deye.web.repository;
+
+import com.deye.web.entity.FileOutboxEntity;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface FileOutboxRepository extends OutboxRepository<FileOutboxEntity> {
+
+    /**
+     * Locks pending operations which are due and are the first pending operation of their file, so operations
+     * of the same file are applied in order. Rows locked by another relay are skipped instead of waited for
+     *
+     * @param now   - operations with next attempt time before it are due
+     * @param limit - max amount of operations
+     */
+    @Override
+    @Query(value = "select o.* from file_outbox o " +
+            "where o.status = 'PENDING' and o.next_attempt_at <= ?1 " +
+            "and not exists (select 1 from file_outbox e where e.file_name = o.file_name and e.status = 'PENDING' and e.id < o.id) " +
+            "order by o.id " +
+            "limit ?2 " +
+            "for update of o skip locked", nativeQuery = true)
+    List<FileOutboxEntity> findAllDueForUpdate(LocalDateTime now, int limit);
+
+    @Query("select o from FileOutboxEntity o where o.fileName in ?1 and o.status = com.deye.web.enumerated.OutboxStatusEnum.PENDING")
+    List<FileOutboxEntity> findAllPendingByFileNames(Collection<String> fileNames);
+
+    @Modifying
+    @Query(value = "insert into file_outbox_content (outbox_id, content) values (?1, ?2)", nativeQuery = true)
+    void saveContent(Long id, byte[] content);
+
+    @Query(value = "select c.content from file_outbox_content c where c.outbox_id = ?1", nativeQuery = true)
+    byte[] findContentById(Long id);
+
+    @Override
+    @Query("select min(o.createdAt) from FileOutboxEntity o where o.status = com.deye.web.enumerated.OutboxStatusEnum.PENDING")
+    LocalDateTime findOldestPendingCreatedAt();
+}
@@ -0,0 +1,37 @@
+package com.deye.web.repository;
+
+import com.deye.web.entity.FileUploadEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface FileUploadRepository extends JpaRepository<FileUploadEntity, UUID> {
+
+    Optional<FileUploadEntity> findByIdAndProductId(UUID id, UUID productId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select u from FileUploadEntity u where u.id = ?1 and u.productId = ?2")
+    Optional<FileUploadEntity> findWithLockByIdAndProductId(UUID id, UUID productId);
+
+    /**
+     * @return 0 when the lease was taken over by another request
+     */
+    @Modifying
+    @Query("update FileUploadEntity u set u.appendLeaseUntil = ?3 where u.id = ?1 and u.appendLeaseId = ?2")
+    int extendAppendLease(UUID id, UUID leaseId, LocalDateTime until);
+
+    @Modifying
+    @Query("update FileUploadEntity u set u.appendLeaseId = null, u.appendLeaseUntil = null where u.id = ?1 and u.appendLeaseId = ?2")
+    int releaseAppendLease(UUID id, UUID leaseId);
+
+    List<FileUploadEntity> findAllByCreatedAtBefore(LocalDateTime createdAt);
+}
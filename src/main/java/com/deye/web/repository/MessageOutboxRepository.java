@@ -0,0 +1,24 @@
+package com.deye.web.repository;
+
+import com.deye.web.entity.MessageOutboxEntity;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface MessageOutboxRepository extends OutboxRepository<MessageOutboxEntity> {
+
+    @Override
+    @Query(value = "select o.* from message_outbox o " +
+            "where o.status = 'PENDING' and o.next_attempt_at <= ?1 " +
+            "order by o.id " +
+            "limit ?2 " +
+            "for update skip locked", nativeQuery = true)
+    List<MessageOutboxEntity> findAllDueForUpdate(LocalDateTime now, int limit);
+
+    @Override
+    @Query("select min(o.createdAt) from MessageOutboxEntity o where o.status = com.deye.web.enumerated.OutboxStatusEnum.PENDING")
+    LocalDateTime findOldestPendingCreatedAt();
+}
@@ -0,0 +1,28 @@
+package com.deye.web.repository;
+
+import com.deye.web.entity.OutboxEntity;
+import com.deye.web.enumerated.OutboxStatusEnum;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Queries of an outbox used by its relay, see OutboxRelay
+ */
+@NoRepositoryBean
+public interface OutboxRepository<E extends OutboxEntity> extends JpaRepository<E, Long> {
+
+    /**
+     * Locks pending records which are due, rows locked by another relay are skipped instead of waited for
+     *
+     * @param now   - records with next attempt time before it are due
+     * @param limit - max amount of records
+     */
+    List<E> findAllDueForUpdate(LocalDateTime now, int limit);
+
+    long countByStatus(OutboxStatusEnum status);
+
+    LocalDateTime findOldestPendingCreatedAt();
+}
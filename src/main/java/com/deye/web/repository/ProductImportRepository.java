@@ -0,0 +1,17 @@
+package com.deye.web.repository;
+
+import com.deye.web.entity.ProductEntity;
+
+import java.util.List;
+
+public interface ProductImportRepository {
+
+    /**
+     * Inserts new products with their images and attributes values by COPY, bypassing the persistence context.
+     * Products must have ids assigned, images and attributes values get new ids.
+     * Must be called within a transaction
+     *
+     * @param products - products to insert
+     */
+    void insertAll(List<ProductEntity> products);
+}
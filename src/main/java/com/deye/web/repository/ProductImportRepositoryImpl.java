@@ -0,0 +1,74 @@
+package com.deye.web.repository;
+
+import com.deye.web.configuration.adapter.sql.StringAndObjectConverter;
+import com.deye.web.entity.AttributeProductValuesEntity;
+import com.deye.web.entity.FileEntity;
+import com.deye.web.entity.ProductEntity;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Rows of every table are streamed by a single COPY ... FROM STDIN in CSV format on the connection of the current transaction,
+ * row triggers fire for copied rows the same way as for inserted ones
+ */
+@RequiredArgsConstructor
+public class ProductImportRepositoryImpl implements ProductImportRepository {
+    private static final String COPY_PRODUCT = "copy product (id, name, description, price, stock_quantity, category_id) from stdin with (format csv)";
+    private static final String COPY_FILE = "copy file (id, name, product_id) from stdin with (format csv)";
+    private static final String COPY_ATTRIBUTE_PRODUCT_VALUE = "copy attribute_product_value (id, product_id, attribute_id, value) from stdin with (format csv)";
+    private final JdbcTemplate jdbcTemplate;
+    private final StringAndObjectConverter stringAndObjectConverter;
+
+    @Override
+    public void insertAll(List<ProductEntity> products) {
+        List<FileEntity> images = products.stream()
+                .flatMap(product -> product.getImages().stream())
+                .toList();
+        List<AttributeProductValuesEntity> attributesValues = products.stream()
+                .flatMap(product -> product.getAttributesValuesForProduct().stream())
+                .toList();
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            copy(copyManager, COPY_PRODUCT, products, product -> List.of(product.getId(), product.getName(), product.getDescription(),
+                    product.getPrice(), product.getStockQuantity(), product.getCategory().getId()));
+            copy(copyManager, COPY_FILE, images, image -> List.of(UUID.randomUUID(), image.getName(), image.getProduct().getId()));
+            copy(copyManager, COPY_ATTRIBUTE_PRODUCT_VALUE, attributesValues, attributeValue -> List.of(UUID.randomUUID(),
+                    attributeValue.getProduct().getId(), attributeValue.getAttribute().getId(),
+                    stringAndObjectConverter.convertToDatabaseColumn(attributeValue.getValue())));
+            return null;
+        });
+    }
+
+    private <T> void copy(CopyManager copyManager, String sql, List<T> rows, Function<T, List<Object>> toFields) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        StringBuilder csv = new StringBuilder();
+        for (T row : rows) {
+            List<Object> fields = toFields.apply(row);
+            for (int i = 0; i < fields.size(); i++) {
+                if (i > 0) {
+                    csv.append(',');
+                }
+                csv.append('"').append(fields.get(i).toString().replace("\"", "\"\"")).append('"');
+            }
+            csv.append('\n');
+        }
+        try {
+            copyManager.copyIn(sql, new StringReader(csv.toString()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.deye.web.repository;
+
+import com.deye.web.entity.ProductEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public interface ProductListingRepository {
+
+    /**
+     * Selects only identifiers of the products matching specification, so the page itself
+     * can be hydrated afterwards with a fixed number of fetch queries.
+     * One row more than the page size is selected to tell whether the next page exists without counting.
+     * When pageable is unsorted, order defined by the specification itself is kept.
+     *
+     * @param specification - products filter
+     * @param pageable      - page to select
+     * @return up to page size + 1 products ids in the requested order
+     */
+    List<UUID> findIds(Specification<ProductEntity> specification, Pageable pageable);
+
+    /**
+     * Selects identifiers of all products matching specification together with their categories identifiers
+     *
+     * @param specification - products filter
+     * @return rows of [id, category id]
+     */
+    List<Object[]> findIdsWithCategoriesIds(Specification<ProductEntity> specification);
+
+    /**
+     * Streams identifiers of all products matching specification ordered by id through a forward-only cursor,
+     * rows are fetched from the database in batches of the given size instead of being loaded at once.
+     * Must be called within a transaction and the stream must be closed
+     *
+     * @param specification - products filter
+     * @param fetchSize     - amount of rows fetched per round trip
+     */
+    Stream<UUID> streamIds(Specification<ProductEntity> specification, int fetchSize);
+
+    /**
+     * Selects first products matching specification together with the value of their sort property,
+     * used by keyset pagination to build the cursor of the next page
+     *
+     * @param specification   - products filter including keyset condition
+     * @param sort            - order of products
+     * @param sortKeyProperty - property to select along with id
+     * @param limit           - max amount of rows
+     * @return rows of [id, sort key]
+     */
+    List<Object[]> findIdsWithSortKeys(Specification<ProductEntity> specification, Sort sort, String sortKeyProperty, int limit);
+
+    /**
+     * Counts products matching specification per value of the given attributes in one grouped query
+     *
+     * @param specification - products filter
+     * @param attributesIds - attributes to count values of
+     * @return rows of [attribute id, value, products count]
+     */
+    List<Object[]> countAttributeValues(Specification<ProductEntity> specification, Collection<UUID> attributesIds);
+
+    /**
+     * Counts products matching specification per equal-width price bucket, see width_bucket in Postgres
+     *
+     * @param specification - products filter
+     * @param min           - lower bound of the first bucket
+     * @param max           - upper bound of the last bucket, greater than min
+     * @param bucketsCount  - amount of buckets
+     * @return rows of [bucket number, products count], values equal to max get bucket number bucketsCount + 1
+     */
+    List<Object[]> countPriceBuckets(Specification<ProductEntity> specification, double min, double max, int bucketsCount);
+
+    /**
+     * Counts products matching specification per equal-width bucket of every given numeric attribute.
+     * Range values are counted by their middle
+     *
+     * @param specification - products filter
+     * @param bounds        - [min, max] of buckets per attribute id, max greater than min
+     * @param bucketsCount  - amount of buckets
+     * @return rows of [attribute id, bucket number, products count]
+     */
+    List<Object[]> countAttributeBuckets(Specification<ProductEntity> specification, Map<UUID, double[]> bounds, int bucketsCount);
+}
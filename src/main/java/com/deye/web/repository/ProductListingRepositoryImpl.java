@@ -0,0 +1,174 @@
+package com.deye.web.repository;
+
+import com.deye.web.entity.AttributeProductValuesEntity;
+import com.deye.web.entity.ProductEntity;
+import com.deye.web.enumerated.ProductSortEnum;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static com.deye.web.configuration.adapter.sql.JsonbFunctionContributor.*;
+
+public class ProductListingRepositoryImpl implements ProductListingRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<UUID> findIds(Specification<ProductEntity> specification, Pageable pageable) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UUID> query = criteriaBuilder.createQuery(UUID.class);
+        Root<ProductEntity> root = query.from(ProductEntity.class);
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root.get("id"));
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(toOrders(pageable.getSort(), root, criteriaBuilder));
+        }
+
+        TypedQuery<UUID> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize() + 1);
+        }
+        return typedQuery.getResultList();
+    }
+
+    @Override
+    public List<Object[]> findIdsWithCategoriesIds(Specification<ProductEntity> specification) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = criteriaBuilder.createQuery(Object[].class);
+        Root<ProductEntity> root = query.from(ProductEntity.class);
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.multiselect(root.get("id"), root.get("category").get("id"));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    @Override
+    public Stream<UUID> streamIds(Specification<ProductEntity> specification, int fetchSize) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UUID> query = criteriaBuilder.createQuery(UUID.class);
+        Root<ProductEntity> root = query.from(ProductEntity.class);
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(root.get("id"));
+        query.orderBy(criteriaBuilder.asc(root.get("id")));
+        return entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    @Override
+    public List<Object[]> findIdsWithSortKeys(Specification<ProductEntity> specification, Sort sort, String sortKeyProperty, int limit) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = criteriaBuilder.createQuery(Object[].class);
+        Root<ProductEntity> root = query.from(ProductEntity.class);
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.multiselect(root.get("id"), root.get(sortKeyProperty));
+        query.orderBy(toOrders(sort, root, criteriaBuilder));
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public List<Object[]> countAttributeValues(Specification<ProductEntity> specification, Collection<UUID> attributesIds) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = criteriaBuilder.createQuery(Object[].class);
+        Root<ProductEntity> root = query.from(ProductEntity.class);
+        Join<ProductEntity, AttributeProductValuesEntity> attributeValue = root.join("attributesValuesForProduct");
+        Predicate attributesPredicate = attributeValue.get("attribute").get("id").in(attributesIds);
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        query.where(predicate == null ? attributesPredicate : criteriaBuilder.and(predicate, attributesPredicate));
+        query.multiselect(attributeValue.get("attribute").get("id"), attributeValue.get("value"), criteriaBuilder.count(root));
+        query.groupBy(attributeValue.get("attribute").get("id"), attributeValue.get("value"));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    @Override
+    public List<Object[]> countPriceBuckets(Specification<ProductEntity> specification, double min, double max, int bucketsCount) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = criteriaBuilder.createQuery(Object[].class);
+        Root<ProductEntity> root = query.from(ProductEntity.class);
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        Expression<Integer> bucket = widthBucket(criteriaBuilder, root.get("price"), min, max, bucketsCount);
+        query.multiselect(bucket, criteriaBuilder.count(root));
+        query.groupBy(bucket);
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    @Override
+    public List<Object[]> countAttributeBuckets(Specification<ProductEntity> specification, Map<UUID, double[]> bounds, int bucketsCount) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = criteriaBuilder.createQuery(Object[].class);
+        Root<ProductEntity> root = query.from(ProductEntity.class);
+        Join<ProductEntity, AttributeProductValuesEntity> attributeValue = root.join("attributesValuesForProduct");
+        Expression<UUID> attributeId = attributeValue.get("attribute").get("id");
+        Expression<Object> value = attributeValue.get("value");
+        Expression<BigDecimal> rangeMiddle = criteriaBuilder.quot(
+                criteriaBuilder.sum(criteriaBuilder.function(JSONB_RANGE_MIN, BigDecimal.class, value), criteriaBuilder.function(JSONB_RANGE_MAX, BigDecimal.class, value)),
+                2).as(BigDecimal.class);
+        Expression<BigDecimal> number = criteriaBuilder.coalesce(criteriaBuilder.function(JSONB_NUMBER, BigDecimal.class, value), rangeMiddle);
+
+        CriteriaBuilder.Case<Integer> bucket = criteriaBuilder.selectCase();
+        bounds.forEach((id, attributeBounds) -> bucket.when(criteriaBuilder.equal(attributeId, id),
+                widthBucket(criteriaBuilder, number, attributeBounds[0], attributeBounds[1], bucketsCount)));
+        Predicate attributesPredicate = criteriaBuilder.and(attributeId.in(bounds.keySet()), criteriaBuilder.isNotNull(number));
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        query.where(predicate == null ? attributesPredicate : criteriaBuilder.and(predicate, attributesPredicate));
+        Expression<Integer> bucketNumber = bucket.otherwise(criteriaBuilder.nullLiteral(Integer.class));
+        query.multiselect(attributeId, bucketNumber, criteriaBuilder.count(root));
+        query.groupBy(attributeId, bucketNumber);
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private List<Order> toOrders(Sort sort, Root<ProductEntity> root, CriteriaBuilder criteriaBuilder) {
+        return sort.stream()
+                .map(order -> {
+                    Expression<?> key = ProductSortEnum.toSortKey(root, criteriaBuilder, order.getProperty());
+                    return order.isAscending() ? criteriaBuilder.asc(key) : criteriaBuilder.desc(key);
+                })
+                .toList();
+    }
+
+    /**
+     * Grouped by the same expression instance as selected, so Postgres dialect groups by the select item position
+     * and literals bound as parameters don't break the grouping
+     */
+    private Expression<Integer> widthBucket(CriteriaBuilder criteriaBuilder, Expression<? extends Number> value, double min, double max, int bucketsCount) {
+        return criteriaBuilder.function("width_bucket", Integer.class, value,
+                criteriaBuilder.literal(min), criteriaBuilder.literal(max), criteriaBuilder.literal(bucketsCount));
+    }
+}
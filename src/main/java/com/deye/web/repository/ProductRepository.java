@@ -1,18 +1,24 @@
 package com.deye.web.repository;
 
 import com.deye.web.entity.ProductEntity;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface ProductRepository extends JpaRepository<ProductEntity, UUID>, JpaSpecificationExecutor<ProductEntity> {
+public interface ProductRepository extends JpaRepository<ProductEntity, UUID>, JpaSpecificationExecutor<ProductEntity>, ProductListingRepository, ProductImportRepository {
 
     @Query("select p from ProductEntity p " +
             "left join fetch p.images " +
@@ -23,4 +29,122 @@ public interface ProductRepository extends JpaRepository<ProductEntity, UUID>, J
             "left join fetch pa.attribute " +
             "where p.id = ?1")
     Optional<ProductEntity> findByIdWithFetchedImagesAndCategoryAndAttributes(UUID id);
+
+    /**
+     * Same product as loaded in the current persistence context, its version is incremented on flush
+     * even if only child rows, e.g. images or attributes values, were changed
+     */
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    @Query("select p from ProductEntity p where p.id = ?1")
+    Optional<ProductEntity> findWithVersionIncrementById(UUID id);
+
+    /**
+     * @return row of [product version, category version], empty when product doesn't exist
+     */
+    @Query("select p.version, p.category.version from ProductEntity p where p.id = ?1")
+    List<Object[]> findVersionsById(UUID id);
+
+    @Modifying
+    @Query("update ProductEntity p set p.version = p.version + 1 " +
+            "where p.id in (select pa.product.id from AttributeProductValuesEntity pa where pa.attribute.id = ?1)")
+    int incrementVersionByAttributeId(UUID attributeId);
+
+    /**
+     * Planner estimate of products amount for the base listing filter, see V1_10 migration.
+     * Attribute values filters are not taken into account, so requests with them are counted exactly instead
+     *
+     * @param namePattern    - lower case LIKE pattern of product name, nullable
+     * @param categoriesIds  - categories ids, empty for any category
+     * @param minPrice       - lower price bound, nullable
+     * @param maxPrice       - upper price bound, nullable
+     */
+    @Query(value = "select estimate_products_count(cast(?1 as text), cast(?2 as uuid[]), cast(?3 as float), cast(?4 as float))", nativeQuery = true)
+    long estimateCount(String namePattern, UUID[] categoriesIds, Double minPrice, Double maxPrice);
+
+    /**
+     * Page of full text search hits ordered by relevance, see V1_13 migration.
+     * Every row is [id, rank, headline, total], where total is the amount of all hits
+     *
+     * @param searchQuery   - web search syntax query: words, "quoted phrases", or, -excluded
+     * @param categoriesIds - categories ids, empty for any category
+     * @param minPrice      - lower price bound, nullable
+     * @param maxPrice      - upper price bound, nullable
+     * @param limit         - page size
+     * @param offset        - amount of hits to skip
+     */
+    @Query(value = "with search as (select websearch_to_tsquery('simple', cast(?1 as text)) as query), " +
+            "hits as (select p.id, p.name, p.description, ts_rank_cd(p.search_vector, s.query) as rank, count(*) over () as total " +
+            "from product p, search s " +
+            "where p.search_vector @@ s.query " +
+            "and (cardinality(cast(?2 as uuid[])) = 0 or p.category_id = any (cast(?2 as uuid[]))) " +
+            "and (cast(?3 as float) is null or p.price >= cast(?3 as float)) " +
+            "and (cast(?4 as float) is null or p.price <= cast(?4 as float)) " +
+            "order by rank desc, p.id " +
+            "limit ?5 offset ?6) " +
+            "select h.id, h.rank, " +
+            "ts_headline('simple', h.name || ' ' || h.description, s.query, 'MaxFragments=2, MaxWords=20, MinWords=5'), " +
+            "h.total " +
+            "from hits h, search s " +
+            "order by h.rank desc, h.id", nativeQuery = true)
+    List<Object[]> search(String searchQuery, UUID[] categoriesIds, Double minPrice, Double maxPrice, int limit, long offset);
+
+    @Query("select min(p.price), max(p.price) from ProductEntity p where p.category.id = ?1")
+    List<Object[]> findPriceBoundsByCategoryId(UUID categoryId);
+
+    /**
+     * Bounds of number and range attributes values of the category products, see JsonbFunctionContributor
+     *
+     * @return rows of [attribute id, min, max]
+     */
+    @Query("select pa.attribute.id, " +
+            "min(coalesce(jsonb_number(pa.value), jsonb_range_min(pa.value))), " +
+            "max(coalesce(jsonb_number(pa.value), jsonb_range_max(pa.value))) " +
+            "from AttributeProductValuesEntity pa " +
+            "where pa.product.category.id = ?1 " +
+            "group by pa.attribute.id")
+    List<Object[]> findAttributesBoundsByCategoryId(UUID categoryId);
+
+    @Query("select p.name from ProductEntity p where p.name in ?1")
+    List<String> findAllNamesByNames(Collection<String> names);
+
+    @Query("select f.name from FileEntity f where f.product.id in ?1")
+    List<String> findAllImagesNamesByProductsIds(Collection<UUID> productsIds);
+
+    /**
+     * Deletes products in one statement, their images and attributes values rows are deleted by foreign keys cascade
+     */
+    @Modifying
+    @Query("delete from ProductEntity p where p.id in ?1")
+    int deleteAllByIds(Collection<UUID> productsIds);
+
+    @Query("select p.id from ProductEntity p where p.category.id = ?1")
+    List<UUID> findAllIdsByCategoryId(UUID categoryId);
+
+    @Query("select f.product.id from FileEntity f where f.name = ?1 and f.product is not null")
+    List<UUID> findAllIdsByImageName(String imageName);
+
+    @Modifying
+    @Query("update ProductEntity p set p.version = p.version + 1 " +
+            "where p.id in (select f.product.id from FileEntity f where f.name = ?1)")
+    int incrementVersionByImageName(String imageName);
+
+    @Query("select p.id, p.version, p.category.id, p.name, p.price, p.stockQuantity, p.createdAt from ProductEntity p")
+    List<Object[]> findAllIndexRows();
+
+    @Query("select pa.product.id, pa.attribute.id, pa.value from AttributeProductValuesEntity pa")
+    List<Object[]> findAllAttributesValuesIndexRows();
+
+    @Query("select distinct p from ProductEntity p " +
+            "left join fetch p.images " +
+            "left join fetch p.category " +
+            "where p.id in ?1")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<ProductEntity> findAllByIdsWithFetchedImagesAndCategory(Collection<UUID> ids);
+
+    @Query("select distinct p from ProductEntity p " +
+            "left join fetch p.attributesValuesForProduct pa " +
+            "left join fetch pa.attribute " +
+            "where p.id in ?1")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<ProductEntity> findAllByIdsWithFetchedAttributes(Collection<UUID> ids);
 }
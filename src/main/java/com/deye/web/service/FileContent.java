@@ -0,0 +1,15 @@
+package com.deye.web.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * File read into memory, e.g. staged upload of the file outbox
+ */
+@Getter
+@AllArgsConstructor
+public class FileContent {
+    private String name;
+    private String contentType;
+    private byte[] content;
+}
@@ -1,15 +1,17 @@
 package com.deye.web.service;
 
-import org.springframework.web.multipart.MultipartFile;
+import java.util.Collection;
+import java.util.Map;
 
 public interface FileService {
 
     /**
-     * uploads file to the storage
+     * uploads files to the storage concurrently. Failure of a file doesn't stop uploading of others
      *
-     * @param file - file, e.g image
+     * @param files - files read into memory, e.g images
+     * @return error messages of files that weren't uploaded by their names, empty when all files are uploaded
      */
-    void upload(MultipartFile file);
+    Map<String, String> uploadAll(Collection<FileContent> files);
 
     /**
      * deletes file from storage
@@ -17,4 +19,13 @@ public interface FileService {
      * @param fileName key to find the file
      */
     void delete(String fileName);
+
+    /**
+     * deletes files from storage by multi-object requests, one request per batch of files.
+     * Failure of a file doesn't stop deletion of others
+     *
+     * @param fileNames keys to find the files
+     * @return error messages of files that weren't deleted by their keys, empty when all files are deleted
+     */
+    Map<String, String> deleteAll(Collection<String> fileNames);
 }
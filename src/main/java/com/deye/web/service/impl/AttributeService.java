@@ -1,5 +1,7 @@
 package com.deye.web.service.impl;
 
+import com.deye.web.async.listener.events.DeletedAttributeEvent;
+import com.deye.web.async.listener.events.SavedAttributeEvent;
 import com.deye.web.controller.dto.CreateAttributeDto;
 import com.deye.web.controller.view.AttributeView;
 import com.deye.web.entity.AttributeEntity;
@@ -7,10 +9,13 @@ import com.deye.web.entity.attribute.definition.AttributeDefinition;
 import com.deye.web.exception.EntityNotFoundException;
 import com.deye.web.util.mapper.AttributeMapper;
 import com.deye.web.repository.AttributeRepository;
+import com.deye.web.repository.CategoryRepository;
+import com.deye.web.repository.ProductRepository;
 import com.deye.web.util.error.ErrorCodeUtils;
 import com.deye.web.util.error.ErrorMessageUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,7 +26,10 @@ import java.util.UUID;
 @Slf4j
 @RequiredArgsConstructor
 public class AttributeService {
+    private final ApplicationEventPublisher applicationEventPublisher;
     private final AttributeRepository attributeRepository;
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
     private final AttributeMapper attributeMapper;
 
     @Transactional
@@ -35,10 +43,11 @@ public class AttributeService {
         attribute.setDefinition(attributeDefinition);
 
         attributeRepository.save(attribute);
+        applicationEventPublisher.publishEvent(new SavedAttributeEvent(attribute.getId()));
         log.info("Attribute saved successfully: id={}", attribute.getId());
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<AttributeView> getAll() {
         log.info("Fetching all attributes");
         List<AttributeView> attributes = attributeRepository.findAll().stream()
@@ -48,7 +57,7 @@ public class AttributeService {
         return attributes;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public AttributeView getById(UUID id) {
         log.info("Fetching attribute by ID: {}", id);
         AttributeView attributeView = attributeMapper.toAttributeView(attributeRepository.findById(id)
@@ -67,7 +76,11 @@ public class AttributeService {
             log.warn("Attempted to delete non-existing attribute: id={}", id);
             throw new EntityNotFoundException(ErrorCodeUtils.ATTRIBUTE_NOT_FOUND_ERROR_CODE, ErrorMessageUtils.ATTRIBUTE_NOT_FOUND_ERROR_MESSAGE);
         }
+        int productsCount = productRepository.incrementVersionByAttributeId(id);
+        int categoriesCount = categoryRepository.incrementVersionByAttributeId(id);
+        log.info("Versions incremented for {} products and {} categories using attribute: id={}", productsCount, categoriesCount, id);
         attributeRepository.deleteById(id);
+        applicationEventPublisher.publishEvent(new DeletedAttributeEvent(id));
         log.info("Attribute deleted successfully: id={}", id);
     }
 }
@@ -0,0 +1,157 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.controller.dto.ProductFilterDto;
+import com.deye.web.entity.AttributeEntity;
+import com.deye.web.entity.ProductEntity;
+import com.deye.web.enumerated.AttributeTypeEnum;
+import com.deye.web.index.CatalogIndex;
+import com.deye.web.index.ProductIndexDocument;
+import com.deye.web.repository.ProductRepository;
+import com.deye.web.service.spricification.ProductFilterSpecification;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Optional in-process catalog index, enabled by catalog.index.enabled property.
+ * Built once the application is ready and then kept up to date by committed product, category and attribute changes,
+ * changes committed while the index is being built are applied to it right after the build.
+ * Documents are read after commits and may arrive out of order, the index keeps the newest version of every product, see CatalogIndex.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CatalogIndexService {
+    private final ConfigService configService;
+    private final ProductRepository productRepository;
+    private final ProductFilterSpecification productFilterSpecification;
+    private final PlatformTransactionManager transactionManager;
+    private volatile CatalogIndex index;
+    private List<Consumer<CatalogIndex>> pendingChanges;
+
+    public void build() {
+        if (!configService.isCatalogIndexEnabled()) {
+            return;
+        }
+        log.info("Building catalog index");
+        synchronized (this) {
+            pendingChanges = new ArrayList<>();
+        }
+        CatalogIndex builtIndex = new CatalogIndex();
+        try {
+            readOnlyTransaction().executeWithoutResult(status -> load(builtIndex));
+        } catch (Exception e) {
+            log.error("Catalog index building failed, products are filtered by the database", e);
+            synchronized (this) {
+                pendingChanges = null;
+            }
+            return;
+        }
+        synchronized (this) {
+            pendingChanges.forEach(change -> change.accept(builtIndex));
+            pendingChanges = null;
+            index = builtIndex;
+        }
+        log.info("Catalog index built, products indexed: {}", builtIndex.size());
+    }
+
+    public void onProductSaved(UUID productId) {
+        onProductsSaved(List.of(productId));
+    }
+
+    public void onProductsSaved(Collection<UUID> productsIds) {
+        if (!configService.isCatalogIndexEnabled() || productsIds.isEmpty()) {
+            return;
+        }
+        List<ProductEntity> products = readOnlyTransaction().execute(status -> productRepository.findAllByIdsWithFetchedAttributes(productsIds));
+        Map<UUID, ProductIndexDocument> documents = products == null ? Map.of() : products.stream()
+                .map(ProductIndexDocument::of)
+                .collect(Collectors.toMap(ProductIndexDocument::getId, Function.identity()));
+        applyChange(catalogIndex -> {
+            for (UUID productId : productsIds) {
+                ProductIndexDocument document = documents.get(productId);
+                if (document == null) {
+                    catalogIndex.remove(productId, CatalogIndex.DELETED_VERSION);
+                } else {
+                    catalogIndex.upsert(document);
+                }
+            }
+        });
+    }
+
+    public void onProductsDeleted(Collection<UUID> productsIds) {
+        if (!configService.isCatalogIndexEnabled() || productsIds == null) {
+            return;
+        }
+        applyChange(catalogIndex -> productsIds.forEach(productId -> catalogIndex.remove(productId, CatalogIndex.DELETED_VERSION)));
+    }
+
+    /**
+     * Category changes may remove attributes values of its products, so all products of the category are reindexed
+     */
+    public void onCategorySaved(UUID categoryId) {
+        if (!configService.isCatalogIndexEnabled()) {
+            return;
+        }
+        List<UUID> productsIds = readOnlyTransaction().execute(status -> productRepository.findAllIdsByCategoryId(categoryId));
+        onProductsSaved(productsIds == null ? List.of() : productsIds);
+    }
+
+    public void onAttributeDeleted(UUID attributeId) {
+        if (!configService.isCatalogIndexEnabled()) {
+            return;
+        }
+        applyChange(catalogIndex -> catalogIndex.removeAttribute(attributeId));
+    }
+
+    /**
+     * @return page of products ids with their total amount, or empty when the index isn't built or can't serve the sort
+     */
+    public Optional<CatalogIndex.IndexPage> findPage(ProductFilterDto productFilterDto, Pageable pageable) {
+        CatalogIndex catalogIndex = index;
+        if (catalogIndex == null || pageable.isUnpaged() || !catalogIndex.supports(pageable.getSort())) {
+            return Optional.empty();
+        }
+        Map<UUID, AttributeTypeEnum> attributesTypes = productFilterSpecification.getFilterableAttributes(productFilterDto).values().stream()
+                .collect(Collectors.toMap(AttributeEntity::getId, attribute -> attribute.getDefinition().getAttributeType()));
+        return Optional.of(catalogIndex.findPage(productFilterDto, attributesTypes, pageable.getSort(), pageable.getOffset(), pageable.getPageSize()));
+    }
+
+    private synchronized void applyChange(Consumer<CatalogIndex> change) {
+        if (pendingChanges != null) {
+            pendingChanges.add(change);
+        }
+        if (index != null) {
+            change.accept(index);
+        }
+    }
+
+    private void load(CatalogIndex catalogIndex) {
+        Map<UUID, Map<UUID, Object>> attributesValues = new HashMap<>();
+        for (Object[] row : productRepository.findAllAttributesValuesIndexRows()) {
+            attributesValues.computeIfAbsent((UUID) row[0], id -> new HashMap<>()).put((UUID) row[1], row[2]);
+        }
+        for (Object[] row : productRepository.findAllIndexRows()) {
+            UUID productId = (UUID) row[0];
+            catalogIndex.upsert(new ProductIndexDocument(productId, (Long) row[1], (UUID) row[2], (String) row[3], (Float) row[4], (Integer) row[5],
+                    (LocalDateTime) row[6], attributesValues.getOrDefault(productId, Map.of())));
+        }
+    }
+
+    private TransactionTemplate readOnlyTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate;
+    }
+}
@@ -0,0 +1,141 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.cache.CachedJson;
+import com.deye.web.cache.CategoryCatalogSnapshot;
+import com.deye.web.controller.view.CategoryView;
+import com.deye.web.entity.CategoryEntity;
+import com.deye.web.exception.JsonException;
+import com.deye.web.repository.CategoryRepository;
+import com.deye.web.util.ETagUtils;
+import com.deye.web.util.error.ErrorCodeUtils;
+import com.deye.web.util.error.ErrorMessageUtils;
+import com.deye.web.util.mapper.CategoryMapper;
+import com.deye.web.util.mapper.ImageMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Serialized categories catalog. Readers get the current snapshot without locking, the snapshot is rebuilt
+ * in the background after commits touching categories or attributes and then swapped atomically.
+ * Committed changes are counted before the background rebuild starts, readers which find the snapshot missing
+ * some of them rebuild it themselves, so deleted or changed categories are never served after the commit.
+ * Every rebuild request gets a version, a snapshot is published only if it is newer than the current one,
+ * so a slow rebuild can't replace the result of a later one.
+ * Image links of the snapshot expire, so it's rebuilt when the window of views with image links ends.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CategoryCatalogService {
+    private final CategoryRepository categoryRepository;
+    private final CategoryMapper categoryMapper;
+    private final ImageMapper imageMapper;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
+    private final AtomicReference<CategoryCatalogSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong requestedVersion = new AtomicLong();
+    private final AtomicLong committedChanges = new AtomicLong();
+
+    /**
+     * @return current snapshot, built in the calling thread only if none was built yet or it misses committed changes
+     */
+    public CategoryCatalogSnapshot getSnapshot() {
+        CategoryCatalogSnapshot currentSnapshot = snapshot.get();
+        return isUpToDate(currentSnapshot) ? currentSnapshot : rebuildOutdated();
+    }
+
+    /**
+     * Called after every commit changing categories or attributes, before the snapshot is rebuilt
+     */
+    public void onChangeCommitted() {
+        committedChanges.incrementAndGet();
+    }
+
+    /**
+     * Concurrent readers of an outdated snapshot wait for a single rebuild instead of loading the catalog each
+     */
+    private synchronized CategoryCatalogSnapshot rebuildOutdated() {
+        CategoryCatalogSnapshot currentSnapshot = snapshot.get();
+        return isUpToDate(currentSnapshot) ? currentSnapshot : rebuild();
+    }
+
+    /**
+     * Snapshot of a previous view window is outdated too, its ETags would report it as not modified after its window
+     */
+    private boolean isUpToDate(CategoryCatalogSnapshot currentSnapshot) {
+        return currentSnapshot != null
+                && currentSnapshot.getCommittedChanges() >= committedChanges.get()
+                && Objects.equals(currentSnapshot.getViewEpoch(), imageMapper.getViewEpoch());
+    }
+
+    /**
+     * Rebuilds the snapshot when its view window ends, so readers don't have to rebuild it themselves
+     */
+    @Scheduled(fixedDelayString = "PT1M")
+    public void rebuildExpiring() {
+        CategoryCatalogSnapshot currentSnapshot = snapshot.get();
+        if (currentSnapshot != null && !Objects.equals(currentSnapshot.getViewEpoch(), imageMapper.getViewEpoch())) {
+            log.info("Categories catalog snapshot {} image links are expiring, rebuilding it", currentSnapshot.getVersion());
+            rebuild();
+        }
+    }
+
+    public CacheControl getViewCacheControl() {
+        return imageMapper.getViewCacheControl();
+    }
+
+    public CategoryCatalogSnapshot rebuild() {
+        long version = requestedVersion.incrementAndGet();
+        long includedChanges = committedChanges.get();
+        Long viewEpoch = imageMapper.getViewEpoch();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+        Map<UUID, Long> categoriesVersions = new HashMap<>();
+        List<CategoryView> categories = transactionTemplate.execute(status -> categoryRepository.findAllWithFetchedAttributesAndImage().stream()
+                .peek(category -> categoriesVersions.put(category.getId(), category.getVersion()))
+                .map(categoryMapper::toCategoryView)
+                .toList());
+        Map<UUID, CachedJson> categoriesJsonById = new HashMap<>();
+        for (CategoryView category : categories) {
+            categoriesJsonById.put(category.getId(), new CachedJson(toJson(category),
+                    ETagUtils.withViewEpoch(ETagUtils.categoryETag(categoriesVersions.get(category.getId())), viewEpoch)));
+        }
+        CachedJson categoriesJson = new CachedJson(toJson(categories), ETagUtils.withViewEpoch(ETagUtils.categoriesETag(categoriesVersions), viewEpoch));
+        CategoryCatalogSnapshot builtSnapshot = new CategoryCatalogSnapshot(version, includedChanges, categoriesJson, viewEpoch, Map.copyOf(categoriesJsonById));
+        CategoryCatalogSnapshot publishedSnapshot = snapshot.accumulateAndGet(builtSnapshot,
+                (current, built) -> current == null || current.getVersion() < built.getVersion() ? built : current);
+        log.info("Categories catalog snapshot {} built, categories: {}", version, categories.size());
+        return publishedSnapshot;
+    }
+
+    public CachedJson toJson(CategoryEntity category) {
+        return new CachedJson(toJson(categoryMapper.toCategoryView(category)),
+                ETagUtils.withViewEpoch(ETagUtils.categoryETag(category.getVersion()), imageMapper.getViewEpoch()));
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            log.error("Categories catalog serialization error", e);
+            throw new JsonException(ErrorCodeUtils.JSON_PARSE_ERROR_CODE, ErrorMessageUtils.JSON_PARSE_ERROR_MESSAGE);
+        }
+    }
+}
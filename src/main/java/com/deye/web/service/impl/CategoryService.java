@@ -2,25 +2,29 @@ package com.deye.web.service.impl;
 
 import com.deye.web.async.listener.events.DeletedCategoryEvent;
 import com.deye.web.async.listener.events.SavedCategoryEvent;
+import com.deye.web.cache.CachedJson;
 import com.deye.web.controller.AttributeController;
 import com.deye.web.controller.dto.CategoryAttributeDto;
 import com.deye.web.controller.dto.CreateCategoryDto;
 import com.deye.web.controller.dto.UpdateCategoryDto;
-import com.deye.web.controller.view.CategoryView;
+import com.deye.web.controller.view.PresignedUploadView;
 import com.deye.web.entity.AttributeEntity;
 import com.deye.web.entity.CategoryAttributeEntity;
 import com.deye.web.entity.CategoryEntity;
 import com.deye.web.entity.ProductEntity;
 import com.deye.web.entity.attribute.definition.AttributeDefinition;
 import com.deye.web.exception.EntityNotFoundException;
+import com.deye.web.exception.PreconditionFailedException;
 import com.deye.web.exception.TransactionConsistencyException;
 import com.deye.web.exception.WrongRequestBodyException;
 import com.deye.web.repository.AttributeRepository;
 import com.deye.web.repository.CategoryRepository;
-import com.deye.web.util.mapper.CategoryMapper;
+import com.deye.web.util.ContentKeyUtils;
+import com.deye.web.util.ETagUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.CacheControl;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -30,6 +34,7 @@ import java.util.stream.Collectors;
 
 import static com.deye.web.util.error.ErrorCodeUtils.ATTRIBUTES_VALUES_ERROR_CODE;
 import static com.deye.web.util.error.ErrorCodeUtils.CATEGORY_NOT_FOUND_ERROR_CODE;
+import static com.deye.web.util.error.ErrorCodeUtils.PRECONDITION_FAILED_ERROR_CODE;
 import static com.deye.web.util.error.ErrorMessageUtils.*;
 
 @Service
@@ -39,8 +44,9 @@ public class CategoryService {
     private final ApplicationEventPublisher applicationEventPublisher;
     private final AttributeRepository attributeRepository;
     private final CategoryRepository categoryRepository;
-    private final CategoryMapper categoryMapper;
     private final AttributeController attributeController;
+    private final CategoryCatalogService categoryCatalogService;
+    private final PresignedUploadService presignedUploadService;
 
     /**
      * Method for creating category to add new product type
@@ -59,25 +65,39 @@ public class CategoryService {
         CategoryEntity category = new CategoryEntity();
         category.setName(categoryDto.getName());
         category.setDescription(categoryDto.getDescription());
-        category.setImage(categoryDto.getImage().getOriginalFilename());
+        category.setImage(ContentKeyUtils.toFileName(categoryDto.getImage()));
         addAttributesToCategory(category, categoryDto.getAttributes());
         return categoryRepository.saveAndFlush(category);
     }
 
-    @Transactional
-    public Set<CategoryView> getAll() {
-        List<CategoryEntity> categories = categoryRepository.findAllWithFetchedAttributesAndImage();
-        return categories.stream()
-                .map(categoryMapper::toCategoryView)
-                .collect(Collectors.toSet());
+    /**
+     * Serialized list of all categories from the catalog snapshot, no database access
+     */
+    public CachedJson getAllJson() {
+        log.info("Getting all categories from catalog snapshot");
+        return categoryCatalogService.getSnapshot().getCategoriesJson();
     }
 
-    @Transactional
-    public CategoryView getById(UUID id) {
-        log.info("Getting category by id: {}", id);
-        CategoryEntity category = getCategoryEntityByIdWithFetchedAttributesInformationAndImage(id);
-        log.info("Category found: {}", id);
-        return categoryMapper.toCategoryView(category);
+    /**
+     * Cache-Control of category views, they are fresh until their image links window ends
+     */
+    public CacheControl getViewCacheControl() {
+        return categoryCatalogService.getViewCacheControl();
+    }
+
+    /**
+     * Serialized category from the catalog snapshot including all committed changes.
+     * Category missing in the snapshot is read from the database, so it's reported as not found by the usual lookup
+     *
+     * @param id - category id
+     */
+    public CachedJson getJsonById(UUID id) {
+        log.info("Getting category by id from catalog snapshot: {}", id);
+        CachedJson category = categoryCatalogService.getSnapshot().getCategoryJson(id);
+        if (category != null) {
+            return category;
+        }
+        return categoryCatalogService.toJson(getCategoryEntityByIdWithFetchedAttributesInformationAndImage(id));
     }
 
     @Transactional(rollbackFor = TransactionConsistencyException.class)
@@ -96,10 +116,18 @@ public class CategoryService {
         applicationEventPublisher.publishEvent(new DeletedCategoryEvent(id, filesNamesToRemove, removedProductsIds));
     }
 
+    /**
+     * @param ifMatch - If-Match header, category is updated only if one of its tags is the current category ETag, nullable
+     */
     @Transactional(rollbackFor = TransactionConsistencyException.class)
-    public void update(UUID id, UpdateCategoryDto categoryDto) {
+    public void update(UUID id, UpdateCategoryDto categoryDto, String ifMatch) {
         log.info("Updating category with id: {}", id);
         CategoryEntity category = getCategoryEntityByIdWithFetchedAttributesInformationAndImagesAndProducts(id);
+        if (!ETagUtils.matches(ifMatch, ETagUtils.categoryETag(category.getVersion()))) {
+            log.warn("Category with id: {} doesn't match If-Match: {}", id, ifMatch);
+            throw new PreconditionFailedException(PRECONDITION_FAILED_ERROR_CODE, PRECONDITION_FAILED_ERROR_MESSAGE);
+        }
+        categoryRepository.findWithVersionIncrementById(id);
         if (categoryDto.getName() != null && !categoryDto.getName().equals(category.getName())) {
             category.setName(categoryDto.getName());
             log.info("Category new name is set");
@@ -112,7 +140,7 @@ public class CategoryService {
         String previousImageName = "";
         if (newImage != null) {
             previousImageName = category.getImage().getName();
-            category.setImage(newImage.getOriginalFilename());
+            category.setImage(ContentKeyUtils.toFileName(newImage));
             log.info("Category new image is set");
         }
         List<UUID> attributesIdsToRemove = categoryDto.getAttributesIdsToRemove();
@@ -133,6 +161,38 @@ public class CategoryService {
         applicationEventPublisher.publishEvent(new SavedCategoryEvent(category, newImage, previousImageName));
     }
 
+    public PresignedUploadView issueImageUpload(UUID id, String fileName, String contentType, long size, String hash) {
+        log.info("Issuing upload URL of image: {} for category with id: {}", fileName, id);
+        if (!categoryRepository.existsById(id)) {
+            throw new EntityNotFoundException(CATEGORY_NOT_FOUND_ERROR_CODE, CATEGORY_NOT_FOUND_ERROR_MESSAGE);
+        }
+        return presignedUploadService.issue(fileName, contentType, size, hash);
+    }
+
+    /**
+     * Replaces the category image with the image uploaded by a presigned URL, see PresignedUploadService
+     *
+     * @param fileName - key the upload URL was issued for
+     */
+    @Transactional(rollbackFor = TransactionConsistencyException.class)
+    public void confirmImageUpload(UUID id, String fileName) {
+        log.info("Confirming upload of image: {} for category with id: {}", fileName, id);
+        CategoryEntity category = categoryRepository.findWithImageById(id)
+                .orElseThrow(() -> {
+                    log.error("Category with id: {} not found", id);
+                    return new EntityNotFoundException(CATEGORY_NOT_FOUND_ERROR_CODE, CATEGORY_NOT_FOUND_ERROR_MESSAGE);
+                });
+        presignedUploadService.confirm(fileName);
+        String previousImageName = category.getImage().getName();
+        if (previousImageName.equals(fileName)) {
+            return;
+        }
+        categoryRepository.findWithVersionIncrementById(id);
+        category.setImage(fileName);
+        categoryRepository.saveAndFlush(category);
+        applicationEventPublisher.publishEvent(new SavedCategoryEvent(category, null, previousImageName));
+    }
+
     private void addAttributesToCategory(CategoryEntity category, List<CategoryAttributeDto> attributesDto) {
         log.info("Adding attributes to category: {}", category.getName());
         if (attributesDto != null && !attributesDto.isEmpty()) {
@@ -3,6 +3,9 @@ package com.deye.web.service.impl;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
 
 @Service
 @RequiredArgsConstructor
@@ -24,4 +27,32 @@ public class ConfigService {
     public String getMinioUrl() {
         return env.getProperty("minio.url");
     }
+
+    public DataSize getMinioUploadPartSize() {
+        return env.getProperty("minio.upload.part-size", DataSize.class, DataSize.ofMegabytes(8));
+    }
+
+    public DataSize getMinioUploadMaxSize() {
+        return env.getProperty("minio.upload.max-size", DataSize.class, DataSize.ofMegabytes(100));
+    }
+
+    public Duration getMinioUploadPresignedExpiry() {
+        return env.getProperty("minio.upload.presigned-expiry", Duration.class, Duration.ofMinutes(15));
+    }
+
+    public boolean isMinioImageUrlPresigned() {
+        return env.getProperty("minio.image-url.presigned", Boolean.class, true);
+    }
+
+    public Duration getMinioImageUrlWindow() {
+        return env.getProperty("minio.image-url.window", Duration.class, Duration.ofHours(1));
+    }
+
+    public int getImageDerivativesWorkers() {
+        return env.getProperty("image.derivatives.workers", Integer.class, 2);
+    }
+
+    public boolean isCatalogIndexEnabled() {
+        return env.getProperty("catalog.index.enabled", Boolean.class, false);
+    }
 }
@@ -0,0 +1,315 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.entity.FileObjectEntity;
+import com.deye.web.entity.FileOutboxEntity;
+import com.deye.web.enumerated.FileOperationEnum;
+import com.deye.web.enumerated.ImageDerivativeEnum;
+import com.deye.web.enumerated.ImageDerivativesStatusEnum;
+import com.deye.web.exception.FileStorageException;
+import com.deye.web.outbox.OutboxRelay;
+import com.deye.web.repository.FileObjectRepository;
+import com.deye.web.repository.FileOutboxRepository;
+import com.deye.web.service.FileContent;
+import com.deye.web.service.FileService;
+import com.deye.web.util.ContentKeyUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.deye.web.util.error.ErrorCodeUtils.MINIO_UPLOAD_FILE_ERROR_CODE;
+import static com.deye.web.util.error.ErrorMessageUtils.FILE_STAGING_ERROR_MESSAGE;
+
+/**
+ * Transactional outbox of file storage operations. Uploads and deletes are recorded in the transaction
+ * which changes the catalog, bytes of uploads are staged in the database, and the relay carries them out
+ * after commit, so storage round trips don't hold database transactions and connections.
+ * Files are content addressed: a stored object is shared by all FILE rows with its name, see FileObjectEntity.
+ * Operations of a file are applied in the order they were recorded, an operation whose result is replaced
+ * by a later one of the same file is skipped, see {@link #findSupersededIds}. Failed operations are retried as described in OutboxRelay.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileOutboxService extends OutboxRelay<FileOutboxEntity> {
+    private static final int BATCH_SIZE = 100;
+    /**
+     * Amount of staged uploads read into memory at once
+     */
+    private static final int UPLOAD_GROUP_SIZE = 8;
+    private final FileOutboxRepository fileOutboxRepository;
+    private final FileObjectRepository fileObjectRepository;
+    private final FileService fileService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Records uploads in the current transaction under content addressed keys, see ContentKeyUtils.
+     * Content which is already stored isn't staged at all, bytes of other files are read and staged right away
+     *
+     * @param files - files to upload, e.g images
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueUploads(Collection<MultipartFile> files) {
+        int staged = 0;
+        for (MultipartFile file : files) {
+            String fileName = ContentKeyUtils.toFileName(file);
+            fileObjectRepository.createIfAbsent(fileName);
+            if (fileObjectRepository.findWithLockByName(fileName).isUploaded()) {
+                log.info("File: {} is already stored under key: {}, upload is skipped", file.getOriginalFilename(), fileName);
+                continue;
+            }
+            try {
+                enqueueUpload(fileName, file.getContentType(), file.getBytes());
+            } catch (IOException e) {
+                log.error("Error occurred while staging file: {}", file.getOriginalFilename(), e);
+                throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, FILE_STAGING_ERROR_MESSAGE);
+            }
+            staged++;
+        }
+        log.info("{} of {} file uploads are recorded to the outbox", staged, files.size());
+    }
+
+    /**
+     * Records upload of content which is already read in the current transaction, e.g. of an image completed
+     * while the same content is being deleted
+     *
+     * @param fileName - content addressed key
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueUpload(String fileName, String contentType, byte[] content) {
+        FileOutboxEntity operation = fileOutboxRepository.save(toOperation(FileOperationEnum.UPLOAD, fileName, contentType));
+        fileOutboxRepository.saveContent(operation.getId(), content);
+    }
+
+    /**
+     * Records deletes in the current transaction. Object is deleted by the relay along with its derivatives
+     * only if no FILE row references its name any more
+     *
+     * @param fileNames - keys of files to delete
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueDeletes(Collection<String> fileNames) {
+        if (fileNames.isEmpty()) {
+            return;
+        }
+        fileOutboxRepository.saveAll(fileNames.stream()
+                .distinct()
+                .map(fileName -> toOperation(FileOperationEnum.DELETE, fileName, null))
+                .toList());
+        log.info("{} file deletes are recorded to the outbox", fileNames.size());
+    }
+
+    private FileOutboxEntity toOperation(FileOperationEnum type, String fileName, String contentType) {
+        FileOutboxEntity operation = new FileOutboxEntity();
+        operation.setOperation(type);
+        operation.setFileName(fileName);
+        operation.setContentType(contentType);
+        operation.setNextAttemptAt(LocalDateTime.now());
+        return operation;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${file.outbox.relay-delay:500}")
+    public void relay() {
+        super.relay();
+    }
+
+    @Override
+    protected Map<Long, String> apply(List<FileOutboxEntity> operations) {
+        Set<Long> supersededIds = findSupersededIds(operations);
+        List<FileOutboxEntity> deletes = new ArrayList<>();
+        List<FileOutboxEntity> uploads = new ArrayList<>();
+        for (FileOutboxEntity operation : operations) {
+            if (supersededIds.contains(operation.getId())) {
+                continue;
+            }
+            if (operation.getOperation() == FileOperationEnum.DELETE) {
+                deletes.add(operation);
+            } else {
+                uploads.add(operation);
+            }
+        }
+        Map<Long, String> errors = new HashMap<>();
+        applyDeletes(deletes, errors);
+        for (int from = 0; from < uploads.size(); from += UPLOAD_GROUP_SIZE) {
+            applyUploads(uploads.subList(from, Math.min(from + UPLOAD_GROUP_SIZE, uploads.size())), errors);
+        }
+        countSuperseded(supersededIds.size());
+        log.info("Relayed {} file operations: {} superseded, {} failed", operations.size(), supersededIds.size(), errors.size());
+        return errors;
+    }
+
+    /**
+     * A DELETE followed by any later pending operation of the same file is skipped, the later one deletes the object
+     * or uploads it again. An UPLOAD is skipped only when it's followed by a later UPLOAD of the same content:
+     * a later DELETE doesn't run when the file is still referenced, so it can't replace the upload
+     */
+    private Set<Long> findSupersededIds(List<FileOutboxEntity> operations) {
+        Map<String, List<FileOutboxEntity>> pendingByFileName = fileOutboxRepository.findAllPendingByFileNames(operations.stream()
+                        .map(FileOutboxEntity::getFileName)
+                        .collect(Collectors.toSet())).stream()
+                .collect(Collectors.groupingBy(FileOutboxEntity::getFileName));
+        Set<Long> supersededIds = new HashSet<>();
+        for (FileOutboxEntity operation : operations) {
+            boolean isSuperseded = pendingByFileName.getOrDefault(operation.getFileName(), List.of()).stream()
+                    .filter(later -> later.getId() > operation.getId())
+                    .anyMatch(later -> operation.getOperation() == FileOperationEnum.DELETE || later.getOperation() == FileOperationEnum.UPLOAD);
+            if (isSuperseded) {
+                supersededIds.add(operation.getId());
+            }
+        }
+        return supersededIds;
+    }
+
+    /**
+     * Deletes run in two short transactions around the storage requests, so object rows aren't locked during them.
+     * The first one marks unreferenced objects as deleting, not uploaded and without derivatives, so their content
+     * isn't reused and uploads of the same content wait for the delete. The second one deletes rows of the objects
+     * which were deleted from the storage and are still unreferenced. Other rows stay not uploaded, so their content
+     * is uploaded again and their derivatives are generated again, views which were showing the derivatives are refreshed
+     */
+    private void applyDeletes(List<FileOutboxEntity> deletes, Map<Long, String> errors) {
+        if (deletes.isEmpty()) {
+            return;
+        }
+        Set<String> fileNames = deletes.stream()
+                .map(FileOutboxEntity::getFileName)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Set<String> withDerivativesNames = new HashSet<>();
+        List<String> deletedNames = transactionTemplate.execute(status -> {
+            Map<String, FileObjectEntity> objects = findAllWithLock(fileNames);
+            List<String> names = new ArrayList<>();
+            for (String fileName : fileNames) {
+                FileObjectEntity object = objects.get(fileName);
+                if (object != null && object.getRefCount() > 0) {
+                    log.info("File: {} is still referenced {} times, it isn't deleted", fileName, object.getRefCount());
+                    object.setDeleting(false);
+                    continue;
+                }
+                if (object != null) {
+                    object.setDeleting(true);
+                    object.setUploaded(false);
+                    if (object.getDerivativesStatus() == ImageDerivativesStatusEnum.GENERATED) {
+                        withDerivativesNames.add(fileName);
+                    }
+                }
+                names.add(fileName);
+            }
+            if (!withDerivativesNames.isEmpty()) {
+                fileObjectRepository.resetDerivativesStatusByNames(withDerivativesNames);
+            }
+            return names;
+        });
+        if (deletedNames == null || deletedNames.isEmpty()) {
+            return;
+        }
+        Map<String, List<String>> objectsNames = new LinkedHashMap<>();
+        for (String fileName : deletedNames) {
+            List<String> names = new ArrayList<>();
+            names.add(fileName);
+            names.addAll(ImageDerivativeEnum.toFileNames(fileName));
+            objectsNames.put(fileName, names);
+        }
+        Map<String, String> deleteErrors = fileService.deleteAll(objectsNames.values().stream()
+                .flatMap(List::stream)
+                .toList());
+        Map<String, String> objectsErrors = new HashMap<>();
+        objectsNames.forEach((fileName, names) -> names.stream()
+                .filter(deleteErrors::containsKey)
+                .findFirst()
+                .ifPresent(name -> objectsErrors.put(fileName, deleteErrors.get(name))));
+        transactionTemplate.executeWithoutResult(status -> {
+            List<String> rowsNames = new ArrayList<>();
+            findAllWithLock(deletedNames).forEach((fileName, object) -> {
+                if (!objectsErrors.containsKey(fileName) && object.getRefCount() == 0) {
+                    rowsNames.add(fileName);
+                } else {
+                    object.setDeleting(false);
+                }
+            });
+            if (!rowsNames.isEmpty()) {
+                fileObjectRepository.deleteAllByIdInBatch(rowsNames);
+            }
+            if (!withDerivativesNames.isEmpty()) {
+                imageDerivativeService.markDeleted(withDerivativesNames);
+            }
+        });
+        for (FileOutboxEntity operation : deletes) {
+            if (objectsErrors.containsKey(operation.getFileName())) {
+                errors.put(operation.getId(), objectsErrors.get(operation.getFileName()));
+            }
+        }
+    }
+
+    private Map<String, FileObjectEntity> findAllWithLock(Collection<String> fileNames) {
+        Map<String, FileObjectEntity> objects = new HashMap<>();
+        for (FileObjectEntity object : fileObjectRepository.findAllWithLockByNames(fileNames)) {
+            objects.put(object.getName(), object);
+        }
+        return objects;
+    }
+
+    private void applyUploads(List<FileOutboxEntity> uploads, Map<Long, String> errors) {
+        List<FileContent> files = new ArrayList<>();
+        for (FileOutboxEntity operation : uploads) {
+            byte[] content = fileOutboxRepository.findContentById(operation.getId());
+            if (content == null) {
+                errors.put(operation.getId(), "Staged content is missing");
+                continue;
+            }
+            files.add(new FileContent(operation.getFileName(), operation.getContentType(), content));
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        Map<String, String> uploadErrors = fileService.uploadAll(files);
+        for (FileOutboxEntity operation : uploads) {
+            if (uploadErrors.containsKey(operation.getFileName())) {
+                errors.put(operation.getId(), uploadErrors.get(operation.getFileName()));
+            }
+        }
+        List<String> uploadedNames = files.stream()
+                .map(FileContent::getName)
+                .filter(fileName -> !uploadErrors.containsKey(fileName))
+                .toList();
+        if (!uploadedNames.isEmpty()) {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            transactionTemplate.executeWithoutResult(status -> fileObjectRepository.markUploaded(uploadedNames));
+        }
+    }
+
+    @Override
+    protected FileOutboxRepository getRepository() {
+        return fileOutboxRepository;
+    }
+
+    @Override
+    protected PlatformTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    @Override
+    protected String getName() {
+        return "files";
+    }
+
+    @Override
+    protected int getBatchSize() {
+        return BATCH_SIZE;
+    }
+}
@@ -0,0 +1,316 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.async.listener.events.ChangedImageDerivativesEvent;
+import com.deye.web.enumerated.ImageDerivativeEnum;
+import com.deye.web.enumerated.ImageDerivativesStatusEnum;
+import com.deye.web.repository.CategoryRepository;
+import com.deye.web.repository.FileObjectRepository;
+import com.deye.web.repository.ProductRepository;
+import com.deye.web.util.ContentKeyUtils;
+import com.deye.web.outbox.OutboxStats;
+import com.deye.web.outbox.OutboxStatsProvider;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates fixed-size derivatives of uploaded images, see ImageDerivativeEnum, on a bounded pool of workers.
+ * The original is decoded straight from the storage stream with subsampling, so a large photo is never decoded
+ * in its full resolution, and scaled down by halving steps with bilinear interpolation, which keeps quality of
+ * small derivatives close to area averaging. When the queue is full, the image is rejected and counted instead of
+ * slowing the uploading thread down, its derivatives are generated by the backfill which periodically queues uploaded
+ * images without derivatives, including the ones whose generation failed.
+ * Once all derivatives are stored the object is marked GENERATED and versions of products and categories showing
+ * the image are incremented, so their views and ETags start linking the derivatives instead of the original.
+ * The same happens the other way round when the derivatives are deleted from the storage together with the original.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageDerivativeService implements OutboxStatsProvider {
+    private static final int QUEUE_CAPACITY = 100;
+    private final MinioClient minio;
+    private final ConfigService configService;
+    private final FileObjectRepository fileObjectRepository;
+    private final ProductRepository productRepository;
+    private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+    /**
+     * Images queued or being generated, they aren't queued again by the backfill
+     */
+    private final Set<String> queuedNames = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private ThreadPoolTaskExecutor workers;
+
+    @PostConstruct
+    void startWorkers() {
+        workers = new ThreadPoolTaskExecutor();
+        workers.setCorePoolSize(configService.getImageDerivativesWorkers());
+        workers.setMaxPoolSize(configService.getImageDerivativesWorkers());
+        workers.setQueueCapacity(QUEUE_CAPACITY);
+        workers.setThreadNamePrefix("image-derivatives-");
+        workers.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        workers.setWaitForTasksToCompleteOnShutdown(true);
+        workers.initialize();
+    }
+
+    @PreDestroy
+    void stopWorkers() {
+        workers.shutdown();
+    }
+
+    /**
+     * Queues generation of the image derivatives, files which aren't JPEG or PNG images are ignored
+     *
+     * @param fileName    - key of the uploaded original
+     * @param contentType - content type of the original
+     */
+    public void submit(String fileName, String contentType) {
+        if (toFormat(contentType) != null) {
+            queue(fileName);
+        }
+    }
+
+    /**
+     * Queues uploaded images without derivatives while there is room in the queue
+     */
+    @Scheduled(fixedDelayString = "PT5M")
+    public void backfill() {
+        int queued = 0;
+        for (String fileName : fileObjectRepository.findAllNamesWithoutDerivatives(QUEUE_CAPACITY)) {
+            if (queuedNames.contains(fileName)) {
+                continue;
+            }
+            if (!queue(fileName)) {
+                break;
+            }
+            queued++;
+        }
+        if (queued > 0) {
+            log.info("Queued {} images without derivatives", queued);
+        }
+    }
+
+    /**
+     * @return false if the queue is full
+     */
+    private boolean queue(String fileName) {
+        if (!queuedNames.add(fileName)) {
+            return true;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    generate(fileName);
+                } catch (Exception e) {
+                    log.error("Error occurred while generating derivatives of image: {}", fileName, e);
+                } finally {
+                    queuedNames.remove(fileName);
+                }
+            });
+            return true;
+        } catch (TaskRejectedException e) {
+            queuedNames.remove(fileName);
+            rejected.incrementAndGet();
+            log.warn("Derivatives queue is full, image: {} is left for the backfill", fileName);
+            return false;
+        }
+    }
+
+    /**
+     * Format is taken from the stored object, so images queued by the backfill are generated the same way
+     */
+    private void generate(String fileName) throws Exception {
+        String bucketName = configService.getMinioBucketName();
+        BufferedImage original = null;
+        String contentType;
+        String format;
+        try (GetObjectResponse content = minio.getObject(GetObjectArgs.builder().bucket(bucketName).object(fileName).build())) {
+            contentType = content.headers().get(HttpHeaders.CONTENT_TYPE);
+            format = toFormat(contentType);
+            if (format != null) {
+                original = read(content, maxDerivativeSize());
+            }
+        }
+        if (original == null) {
+            log.warn("Image: {} can't be decoded, derivatives are not generated", fileName);
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.executeWithoutResult(status -> fileObjectRepository.updateDerivativesStatus(fileName, ImageDerivativesStatusEnum.UNSUPPORTED.name()));
+            return;
+        }
+        for (ImageDerivativeEnum derivative : ImageDerivativeEnum.values()) {
+            byte[] bytes = write(scale(original, derivative.getMaxSize(), format), format);
+            minio.putObject(PutObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(derivative.toFileName(fileName))
+                    .contentType(contentType)
+                    .headers(Map.of(HttpHeaders.CACHE_CONTROL, ContentKeyUtils.IMMUTABLE_CACHE_CONTROL))
+                    .stream(new ByteArrayInputStream(bytes), bytes.length, -1)
+                    .build());
+        }
+        markGenerated(fileName);
+        generated.incrementAndGet();
+        log.info("Generated derivatives of image: {} from {}x{}", fileName, original.getWidth(), original.getHeight());
+    }
+
+    private void markGenerated(String fileName) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (fileObjectRepository.updateDerivativesStatus(fileName, ImageDerivativesStatusEnum.GENERATED.name()) != 0) {
+                refreshViews(fileName);
+            }
+        });
+    }
+
+    /**
+     * Views showing the images stop linking their derivatives, which were deleted from the storage with the originals
+     *
+     * @param fileNames - images whose derivatives status was reset
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void markDeleted(Collection<String> fileNames) {
+        fileNames.forEach(this::refreshViews);
+    }
+
+    private void refreshViews(String fileName) {
+        List<UUID> productsIds = productRepository.findAllIdsByImageName(fileName);
+        List<UUID> categoriesIds = categoryRepository.findAllIdsByImageName(fileName);
+        if (productsIds.isEmpty() && categoriesIds.isEmpty()) {
+            return;
+        }
+        productRepository.incrementVersionByImageName(fileName);
+        categoryRepository.incrementVersionByImageName(fileName);
+        eventPublisher.publishEvent(new ChangedImageDerivativesEvent(fileName, productsIds, categoriesIds));
+    }
+
+    /**
+     * Decodes every n-th pixel of every n-th row, where n keeps the decoded image not smaller than the largest derivative
+     */
+    private BufferedImage read(InputStream content, int minSize) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int subsampling = Math.max(1, Math.max(reader.getWidth(0), reader.getHeight(0)) / minSize);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image, int maxSize, String format) {
+        int imageType = "png".equals(format) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        double ratio = Math.min(1d, (double) maxSize / Math.max(image.getWidth(), image.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage scaled = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            scaled = draw(scaled, width, height, imageType);
+        } while (width != targetWidth || height != targetHeight);
+        return scaled;
+    }
+
+    private BufferedImage draw(BufferedImage image, int width, int height, int imageType) {
+        BufferedImage target = new BufferedImage(width, height, imageType);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private byte[] write(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, format, output)) {
+            throw new IOException("No image writer for format: " + format);
+        }
+        return output.toByteArray();
+    }
+
+    private int maxDerivativeSize() {
+        return Arrays.stream(ImageDerivativeEnum.values())
+                .mapToInt(ImageDerivativeEnum::getMaxSize)
+                .max()
+                .orElseThrow();
+    }
+
+    /**
+     * Generation of derivatives as an outbox of the uploaded images: pending are images without derivatives,
+     * failed are images which can't be decoded and retried are images rejected by the full queue
+     */
+    @Override
+    public OutboxStats getStats() {
+        return OutboxStats.builder()
+                .name("image-derivatives")
+                .pending(fileObjectRepository.countWithoutDerivatives())
+                .failed(fileObjectRepository.countByDerivativesStatus(ImageDerivativesStatusEnum.UNSUPPORTED.name()))
+                .processed(generated.get())
+                .retried(rejected.get())
+                .build();
+    }
+
+    private String toFormat(String contentType) {
+        if (MediaType.IMAGE_JPEG_VALUE.equals(contentType)) {
+            return "jpg";
+        }
+        if (MediaType.IMAGE_PNG_VALUE.equals(contentType)) {
+            return "png";
+        }
+        return null;
+    }
+}
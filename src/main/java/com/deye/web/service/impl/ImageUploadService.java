@@ -0,0 +1,369 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.async.listener.events.SavedProductEvent;
+import com.deye.web.async.listener.events.UploadedFileEvent;
+import com.deye.web.configuration.MultipartMinioClient;
+import com.deye.web.controller.view.ImageUploadView;
+import com.deye.web.entity.FileObjectEntity;
+import com.deye.web.entity.FileUploadEntity;
+import com.deye.web.entity.ProductEntity;
+import com.deye.web.exception.EntityNotFoundException;
+import com.deye.web.exception.FileStorageException;
+import com.deye.web.exception.WrongRequestBodyException;
+import com.deye.web.repository.FileObjectRepository;
+import com.deye.web.repository.FileUploadRepository;
+import com.deye.web.repository.ProductRepository;
+import com.deye.web.service.FileService;
+import com.deye.web.util.ContentKeyUtils;
+import io.minio.CopyObjectArgs;
+import io.minio.CopySource;
+import io.minio.GetObjectArgs;
+import io.minio.MinioClient;
+import io.minio.messages.Part;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static com.deye.web.util.error.ErrorCodeUtils.IMAGE_UPLOAD_ERROR_CODE;
+import static com.deye.web.util.error.ErrorCodeUtils.IMAGE_UPLOAD_NOT_FOUND_ERROR_CODE;
+import static com.deye.web.util.error.ErrorCodeUtils.MINIO_UPLOAD_FILE_ERROR_CODE;
+import static com.deye.web.util.error.ErrorCodeUtils.PRODUCT_NOT_FOUND_ERROR_CODE;
+import static com.deye.web.util.error.ErrorMessageUtils.*;
+
+/**
+ * Resumable product image uploads streamed straight into MinIO multipart uploads. Request body is read part by part
+ * into one buffer of the part size and every full part is uploaded before the next one is read, so an upload never holds
+ * more than one part in memory whatever the image size is. Parts are kept by MinIO, so an interrupted upload is continued
+ * by its id from the amount of uploaded bytes, the incomplete part of the interrupted request is read again.
+ * Only one request appends parts of an upload at a time, it holds a lease on the upload row which is extended
+ * with every part, concurrent requests are rejected until the lease is released or expires.
+ * Parts are uploaded to a temporary object. When the last part is uploaded, the object is completed, hashed
+ * and copied to its content addressed key on the server side unless the same content is already stored,
+ * then it's attached to the product as a new image.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ImageUploadService {
+    /**
+     * Min size of a part which isn't the last one accepted by S3 API
+     */
+    private static final DataSize MIN_PART_SIZE = DataSize.ofMegabytes(5);
+    private static final int MAX_PARTS = 10000;
+    private static final Duration STALE_UPLOAD_AGE = Duration.ofHours(24);
+    /**
+     * Max time of reading and uploading one part, lease of a request which is stopped expires after it
+     */
+    private static final Duration APPEND_LEASE = Duration.ofMinutes(5);
+    private static final String TEMPORARY_OBJECTS_PREFIX = "uploads/";
+    private final FileUploadRepository fileUploadRepository;
+    private final ProductRepository productRepository;
+    private final FileObjectRepository fileObjectRepository;
+    private final MultipartMinioClient multipartMinio;
+    private final MinioClient minio;
+    private final FileService fileService;
+    private final FileOutboxService fileOutboxService;
+    private final ConfigService configService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * @param productId   - product the image is uploaded for
+     * @param fileName    - name of the image, only its extension is kept in the stored key
+     * @param contentType - JPEG or PNG
+     * @param size        - exact size of the image in bytes
+     */
+    public ImageUploadView start(UUID productId, String fileName, String contentType, long size) {
+        if (!MediaType.IMAGE_JPEG_VALUE.equals(contentType) && !MediaType.IMAGE_PNG_VALUE.equals(contentType)) {
+            throw new WrongRequestBodyException(IMAGE_UPLOAD_ERROR_CODE, IMAGE_UPLOAD_TYPE_ERROR_MESSAGE);
+        }
+        if (size <= 0 || size > configService.getMinioUploadMaxSize().toBytes()) {
+            throw new WrongRequestBodyException(IMAGE_UPLOAD_ERROR_CODE, IMAGE_UPLOAD_SIZE_ERROR_MESSAGE);
+        }
+        if (!productRepository.existsById(productId)) {
+            throw new EntityNotFoundException(PRODUCT_NOT_FOUND_ERROR_CODE, PRODUCT_NOT_FOUND_ERROR_MESSAGE);
+        }
+        long partSize = Math.max(configService.getMinioUploadPartSize().toBytes(), MIN_PART_SIZE.toBytes());
+        partSize = Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+        FileUploadEntity upload = new FileUploadEntity();
+        upload.setProductId(productId);
+        upload.setFileName(fileName);
+        upload.setObjectName(TEMPORARY_OBJECTS_PREFIX + UUID.randomUUID());
+        upload.setContentType(contentType);
+        upload.setSize(size);
+        upload.setPartSize((int) partSize);
+        try {
+            upload.setUploadId(multipartMinio.createMultipartUpload(configService.getMinioBucketName(), upload.getObjectName(), contentType));
+        } catch (Exception e) {
+            log.error("Error occurred while starting upload of image: {}", fileName, e);
+            throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, MINIO_UPLOAD_FILE_ERROR_MESSAGE);
+        }
+        fileUploadRepository.save(upload);
+        log.info("Started upload of image: {} with {} bytes by parts of {} bytes, productId: {}", fileName, size, partSize, productId);
+        return toView(upload, 0, false);
+    }
+
+    public ImageUploadView get(UUID productId, UUID id) {
+        FileUploadEntity upload = getUpload(productId, id);
+        return toView(upload, uploadedBytes(upload, listParts(upload)), false);
+    }
+
+    /**
+     * Streams the body into parts starting from the offset. Body may end at any byte: full parts are kept,
+     * the remaining bytes are dropped and have to be sent again from the returned offset
+     *
+     * @param offset - amount of uploaded bytes returned by the previous request
+     * @param body   - image bytes starting from the offset
+     */
+    public ImageUploadView append(UUID productId, UUID id, long offset, InputStream body) {
+        UUID leaseId = UUID.randomUUID();
+        FileUploadEntity upload = leaseAppend(productId, id, leaseId);
+        try {
+            return append(upload, leaseId, offset, body);
+        } finally {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.executeWithoutResult(status -> fileUploadRepository.releaseAppendLease(upload.getId(), leaseId));
+        }
+    }
+
+    private ImageUploadView append(FileUploadEntity upload, UUID leaseId, long offset, InputStream body) {
+        String bucketName = configService.getMinioBucketName();
+        List<Part> parts = listParts(upload);
+        long uploadedBytes = uploadedBytes(upload, parts);
+        if (offset != uploadedBytes) {
+            throw new WrongRequestBodyException(IMAGE_UPLOAD_ERROR_CODE, IMAGE_UPLOAD_OFFSET_ERROR_MESSAGE);
+        }
+        byte[] buffer = new byte[upload.getPartSize()];
+        while (uploadedBytes < upload.getSize()) {
+            int length = (int) Math.min(upload.getPartSize(), upload.getSize() - uploadedBytes);
+            int read;
+            try {
+                read = body.readNBytes(buffer, 0, length);
+            } catch (IOException e) {
+                log.warn("Upload of image: {} is interrupted at {} bytes", upload.getFileName(), uploadedBytes);
+                break;
+            }
+            if (read < length) {
+                break;
+            }
+            extendAppendLease(upload, leaseId);
+            int partNumber = parts.size() + 1;
+            try {
+                String etag = multipartMinio.uploadPart(bucketName, upload.getObjectName(), upload.getUploadId(), partNumber, buffer, length);
+                parts.add(new Part(partNumber, etag));
+            } catch (Exception e) {
+                log.error("Error occurred while uploading part {} of image: {}", partNumber, upload.getFileName(), e);
+                throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, MINIO_UPLOAD_FILE_ERROR_MESSAGE);
+            }
+            uploadedBytes += length;
+        }
+        if (uploadedBytes < upload.getSize()) {
+            log.info("Uploaded {} of {} bytes of image: {}", uploadedBytes, upload.getSize(), upload.getFileName());
+            return toView(upload, uploadedBytes, false);
+        }
+        complete(upload, parts);
+        return toView(upload, uploadedBytes, true);
+    }
+
+    /**
+     * Takes the lease of the upload row under a row lock, so two requests can't both find the upload free
+     */
+    private FileUploadEntity leaseAppend(UUID productId, UUID id, UUID leaseId) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        return transactionTemplate.execute(status -> {
+            FileUploadEntity upload = fileUploadRepository.findWithLockByIdAndProductId(id, productId)
+                    .orElseThrow(() -> new EntityNotFoundException(IMAGE_UPLOAD_NOT_FOUND_ERROR_CODE, IMAGE_UPLOAD_NOT_FOUND_ERROR_MESSAGE));
+            LocalDateTime now = LocalDateTime.now();
+            if (upload.getAppendLeaseUntil() != null && upload.getAppendLeaseUntil().isAfter(now)) {
+                log.warn("Upload of image: {} is continued by another request", upload.getFileName());
+                throw new WrongRequestBodyException(IMAGE_UPLOAD_ERROR_CODE, IMAGE_UPLOAD_IN_PROGRESS_ERROR_MESSAGE);
+            }
+            upload.setAppendLeaseId(leaseId);
+            upload.setAppendLeaseUntil(now.plus(APPEND_LEASE));
+            return upload;
+        });
+    }
+
+    /**
+     * A request which was stopped for longer than the lease doesn't upload parts any more, its upload may be continued by another one
+     */
+    private void extendAppendLease(FileUploadEntity upload, UUID leaseId) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Integer extended = transactionTemplate.execute(status -> fileUploadRepository.extendAppendLease(upload.getId(), leaseId, LocalDateTime.now().plus(APPEND_LEASE)));
+        if (extended == null || extended == 0) {
+            log.warn("Lease of upload of image: {} is taken over by another request", upload.getFileName());
+            throw new WrongRequestBodyException(IMAGE_UPLOAD_ERROR_CODE, IMAGE_UPLOAD_IN_PROGRESS_ERROR_MESSAGE);
+        }
+    }
+
+    public void abort(UUID productId, UUID id) {
+        FileUploadEntity upload = getUpload(productId, id);
+        abort(upload);
+        log.info("Aborted upload of image: {}", upload.getFileName());
+    }
+
+    /**
+     * Aborts uploads which weren't finished in {@link #STALE_UPLOAD_AGE}, their parts are kept by MinIO until then
+     */
+    @Scheduled(fixedDelayString = "PT1H")
+    public void abortStale() {
+        List<FileUploadEntity> uploads = fileUploadRepository.findAllByCreatedAtBefore(LocalDateTime.now().minus(STALE_UPLOAD_AGE));
+        for (FileUploadEntity upload : uploads) {
+            try {
+                abort(upload);
+            } catch (Exception e) {
+                log.error("Error occurred while aborting stale upload of image: {}", upload.getFileName(), e);
+            }
+        }
+        if (!uploads.isEmpty()) {
+            log.info("Aborted {} stale image uploads", uploads.size());
+        }
+    }
+
+    private void abort(FileUploadEntity upload) {
+        try {
+            multipartMinio.abortMultipartUpload(configService.getMinioBucketName(), upload.getObjectName(), upload.getUploadId());
+        } catch (Exception e) {
+            log.warn("Multipart upload of image: {} can't be aborted, deleting the object if it was completed", upload.getFileName(), e);
+            fileService.delete(upload.getObjectName());
+        }
+        fileUploadRepository.delete(upload);
+    }
+
+    /**
+     * Completes the object and attaches it to the product in one transaction with the upload row deletion.
+     * Stored object of the content key is locked until the image is attached, so it can't be deleted meanwhile.
+     * The temporary object is deleted in any case, when the product was deleted meanwhile nothing is attached
+     */
+    private void complete(FileUploadEntity upload, List<Part> parts) {
+        String bucketName = configService.getMinioBucketName();
+        String fileName;
+        try {
+            multipartMinio.completeMultipartUpload(bucketName, upload.getObjectName(), upload.getUploadId(), parts);
+            try (InputStream content = minio.getObject(GetObjectArgs.builder().bucket(bucketName).object(upload.getObjectName()).build())) {
+                fileName = ContentKeyUtils.toFileName(ContentKeyUtils.sha256(content), upload.getFileName());
+            }
+        } catch (Exception e) {
+            log.error("Error occurred while completing upload of image: {}", upload.getFileName(), e);
+            throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, MINIO_UPLOAD_FILE_ERROR_MESSAGE);
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        boolean[] isCopied = {false};
+        boolean isAttached = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            fileUploadRepository.deleteById(upload.getId());
+            ProductEntity product = productRepository.findByIdWithFetchedImagesAndCategoryAndAttributes(upload.getProductId()).orElse(null);
+            if (product == null) {
+                return false;
+            }
+            isCopied[0] = store(upload, fileName);
+            productRepository.findWithVersionIncrementById(product.getId());
+            product.setImages(Set.of(fileName));
+            productRepository.saveAndFlush(product);
+            eventPublisher.publishEvent(new SavedProductEvent(product, null));
+            return true;
+        }));
+        try {
+            fileService.delete(upload.getObjectName());
+        } catch (Exception e) {
+            log.warn("Temporary object: {} of image: {} isn't deleted", upload.getObjectName(), upload.getFileName());
+        }
+        if (!isAttached) {
+            log.warn("Product with id: {} was deleted while its image: {} was uploaded", upload.getProductId(), upload.getFileName());
+            throw new EntityNotFoundException(PRODUCT_NOT_FOUND_ERROR_CODE, PRODUCT_NOT_FOUND_ERROR_MESSAGE);
+        }
+        if (isCopied[0]) {
+            eventPublisher.publishEvent(new UploadedFileEvent(fileName, upload.getContentType()));
+        }
+        log.info("Image: {} of {} bytes is uploaded as: {} and attached to product with id: {}", upload.getFileName(), upload.getSize(), fileName, upload.getProductId());
+        upload.setFileName(fileName);
+    }
+
+    /**
+     * Copies the temporary object to the content key unless the content is already stored. When the same content
+     * is being deleted, a copy could be deleted right after it's made, so the image is staged to the file outbox
+     * instead and is uploaded after the delete
+     *
+     * @return true if the object was copied
+     */
+    private boolean store(FileUploadEntity upload, String fileName) {
+        fileObjectRepository.createIfAbsent(fileName);
+        FileObjectEntity object = fileObjectRepository.findWithLockByName(fileName);
+        if (object.isUploaded()) {
+            log.info("Image: {} is already stored as: {}, uploaded object isn't copied", upload.getFileName(), fileName);
+            return false;
+        }
+        String bucketName = configService.getMinioBucketName();
+        if (object.isDeleting()) {
+            try (InputStream content = minio.getObject(GetObjectArgs.builder().bucket(bucketName).object(upload.getObjectName()).build())) {
+                fileOutboxService.enqueueUpload(fileName, upload.getContentType(), content.readAllBytes());
+            } catch (Exception e) {
+                log.error("Error occurred while staging uploaded image: {} as: {}", upload.getFileName(), fileName, e);
+                throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, FILE_STAGING_ERROR_MESSAGE);
+            }
+            log.info("Image: {} is being deleted as: {}, uploaded object is staged to be uploaded after the delete", upload.getFileName(), fileName);
+            return false;
+        }
+        try {
+            minio.copyObject(CopyObjectArgs.builder()
+                    .bucket(bucketName)
+                    .object(fileName)
+                    .source(CopySource.builder().bucket(bucketName).object(upload.getObjectName()).build())
+                    .headers(Map.of(HttpHeaders.CONTENT_TYPE, upload.getContentType(), HttpHeaders.CACHE_CONTROL, ContentKeyUtils.IMMUTABLE_CACHE_CONTROL))
+                    .build());
+        } catch (Exception e) {
+            log.error("Error occurred while copying uploaded image: {} to: {}", upload.getFileName(), fileName, e);
+            throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, MINIO_UPLOAD_FILE_ERROR_MESSAGE);
+        }
+        object.setUploaded(true);
+        return true;
+    }
+
+    private FileUploadEntity getUpload(UUID productId, UUID id) {
+        return fileUploadRepository.findByIdAndProductId(id, productId)
+                .orElseThrow(() -> new EntityNotFoundException(IMAGE_UPLOAD_NOT_FOUND_ERROR_CODE, IMAGE_UPLOAD_NOT_FOUND_ERROR_MESSAGE));
+    }
+
+    private List<Part> listParts(FileUploadEntity upload) {
+        try {
+            return multipartMinio.listParts(configService.getMinioBucketName(), upload.getObjectName(), upload.getUploadId());
+        } catch (Exception e) {
+            log.error("Error occurred while listing parts of image: {}", upload.getFileName(), e);
+            throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, MINIO_UPLOAD_FILE_ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Parts are uploaded one after another and all of them except the last one have the part size
+     */
+    private long uploadedBytes(FileUploadEntity upload, List<Part> parts) {
+        return Math.min((long) parts.size() * upload.getPartSize(), upload.getSize());
+    }
+
+    private ImageUploadView toView(FileUploadEntity upload, long uploadedBytes, boolean isCompleted) {
+        return ImageUploadView.builder()
+                .id(upload.getId())
+                .productId(upload.getProductId())
+                .fileName(upload.getFileName())
+                .size(upload.getSize())
+                .partSize(upload.getPartSize())
+                .uploadedBytes(uploadedBytes)
+                .completed(isCompleted)
+                .build();
+    }
+}
@@ -0,0 +1,32 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.cache.CacheStats;
+import com.deye.web.cache.CacheStatsProvider;
+import com.deye.web.outbox.OutboxStats;
+import com.deye.web.outbox.OutboxStatsProvider;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class MetricsService {
+    private final List<CacheStatsProvider> caches;
+    private final List<OutboxStatsProvider> outboxes;
+
+    public List<CacheStats> getCachesStats() {
+        return caches.stream()
+                .map(CacheStatsProvider::getStats)
+                .sorted(Comparator.comparing(CacheStats::getName))
+                .toList();
+    }
+
+    public List<OutboxStats> getOutboxesStats() {
+        return outboxes.stream()
+                .map(OutboxStatsProvider::getStats)
+                .sorted(Comparator.comparing(OutboxStats::getName))
+                .toList();
+    }
+}
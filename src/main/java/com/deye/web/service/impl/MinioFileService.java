@@ -1,16 +1,33 @@
 package com.deye.web.service.impl;
 
+import com.deye.web.async.listener.events.UploadedFileEvent;
 import com.deye.web.exception.FileStorageException;
+import com.deye.web.service.FileContent;
 import com.deye.web.service.FileService;
+import com.deye.web.util.ContentKeyUtils;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
 import io.minio.RemoveObjectArgs;
+import io.minio.RemoveObjectsArgs;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.InputStream;
+import java.io.ByteArrayInputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
 
 import static com.deye.web.util.error.ErrorCodeUtils.MINIO_DELETE_FILE_ERROR_CODE;
 import static com.deye.web.util.error.ErrorCodeUtils.MINIO_UPLOAD_FILE_ERROR_CODE;
@@ -21,27 +38,75 @@ import static com.deye.web.util.error.ErrorMessageUtils.MINIO_UPLOAD_FILE_ERROR_
 @RequiredArgsConstructor
 @Slf4j
 public class MinioFileService implements FileService {
+    /**
+     * Max amount of objects in one multi-object delete request accepted by S3 API
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+    /**
+     * Max amount of uploads of one call running at the same time
+     */
+    private static final int MAX_CONCURRENT_UPLOADS = 4;
     private final ConfigService configService;
     private final MinioClient minio;
+    private final MinioAsyncClient minioAsync;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public void upload(MultipartFile file) {
-        try (InputStream content = file.getInputStream()) {
-            String bucketName = configService.getMinioBucketName();
-            String fileName = file.getOriginalFilename();
+    /**
+     * Uploads are sent by the async client without waiting for each other, up to {@value MAX_CONCURRENT_UPLOADS} at a time.
+     * Keys are content addressed, so objects are stored as immutable for caches.
+     * Uploaded files are announced by UploadedFileEvent one by one
+     */
+    @Override
+    public Map<String, String> uploadAll(Collection<FileContent> files) {
+        String bucketName = configService.getMinioBucketName();
+        Semaphore permits = new Semaphore(MAX_CONCURRENT_UPLOADS);
+        Map<FileContent, CompletableFuture<?>> uploads = new LinkedHashMap<>();
+        for (FileContent file : files) {
+            uploads.put(file, uploadAsync(bucketName, file, permits));
+        }
+        Map<String, String> errors = new HashMap<>();
+        uploads.forEach((file, upload) -> {
+            String fileName = file.getName();
+            try {
+                upload.join();
+                eventPublisher.publishEvent(new UploadedFileEvent(fileName, file.getContentType()));
+            } catch (CompletionException e) {
+                log.error("Error occurred while uploading image file: {}", fileName, e.getCause());
+                errors.put(fileName, e.getCause().getMessage());
+            }
+        });
+        if (errors.isEmpty()) {
+            log.info("Successfully uploaded {} images", uploads.size());
+        } else {
+            log.error("{} of {} image files weren't uploaded: {}", errors.size(), uploads.size(), errors);
+        }
+        return errors;
+    }
+
+    private CompletableFuture<?> uploadAsync(String bucketName, FileContent file, Semaphore permits) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(e);
+        }
+        try {
             PutObjectArgs putObjectArgs = PutObjectArgs.builder()
                     .bucket(bucketName)
-                    .object(fileName)
+                    .object(file.getName())
                     .contentType(file.getContentType())
-                    .stream(content, file.getSize(), -1)
+                    .headers(Map.of(HttpHeaders.CACHE_CONTROL, ContentKeyUtils.IMMUTABLE_CACHE_CONTROL))
+                    .stream(new ByteArrayInputStream(file.getContent()), file.getContent().length, -1)
                     .build();
-            minio.putObject(putObjectArgs);
-            log.info("Successfully uploaded image: {}", fileName);
+            return minioAsync.putObject(putObjectArgs)
+                    .whenComplete((response, e) -> permits.release());
         } catch (Exception e) {
-            log.error("Error occurred while uploading image file", e);
-            throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, MINIO_UPLOAD_FILE_ERROR_MESSAGE);
+            permits.release();
+            return CompletableFuture.failedFuture(e);
         }
     }
 
+    @Override
     public void delete(String fileName) {
         String bucketName = configService.getMinioBucketName();
         RemoveObjectArgs removeObjectArgs = RemoveObjectArgs.builder()
@@ -55,4 +120,39 @@ public class MinioFileService implements FileService {
             throw new FileStorageException(MINIO_DELETE_FILE_ERROR_CODE, MINIO_DELETE_FILE_ERROR_MESSAGE);
         }
     }
+
+    /**
+     * Removed objects are reported by the server lazily, so results are read completely before the next batch is sent.
+     * When a whole batch request fails, every file of the batch is reported with the request error
+     */
+    @Override
+    public Map<String, String> deleteAll(Collection<String> fileNames) {
+        String bucketName = configService.getMinioBucketName();
+        List<String> distinctFileNames = fileNames.stream()
+                .distinct()
+                .toList();
+        Map<String, String> errors = new HashMap<>();
+        for (int from = 0; from < distinctFileNames.size(); from += DELETE_BATCH_SIZE) {
+            List<String> batch = distinctFileNames.subList(from, Math.min(from + DELETE_BATCH_SIZE, distinctFileNames.size()));
+            RemoveObjectsArgs removeObjectsArgs = RemoveObjectsArgs.builder()
+                    .bucket(bucketName)
+                    .objects(batch.stream().map(DeleteObject::new).toList())
+                    .build();
+            try {
+                for (Result<DeleteError> result : minio.removeObjects(removeObjectsArgs)) {
+                    DeleteError error = result.get();
+                    errors.put(error.objectName(), error.message());
+                }
+            } catch (Exception e) {
+                log.error("Error occurred while deleting batch of {} image files", batch.size(), e);
+                batch.forEach(fileName -> errors.put(fileName, e.getMessage()));
+            }
+        }
+        if (errors.isEmpty()) {
+            log.info("Successfully deleted {} image files", distinctFileNames.size());
+        } else {
+            log.error("{} of {} image files weren't deleted: {}", errors.size(), distinctFileNames.size(), errors);
+        }
+        return errors;
+    }
 }
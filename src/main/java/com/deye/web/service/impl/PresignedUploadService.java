@@ -0,0 +1,196 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.async.listener.events.UploadedFileEvent;
+import com.deye.web.controller.view.PresignedUploadView;
+import com.deye.web.entity.FileObjectEntity;
+import com.deye.web.exception.EntityNotFoundException;
+import com.deye.web.exception.FileStorageException;
+import com.deye.web.exception.WrongRequestBodyException;
+import com.deye.web.repository.FileObjectRepository;
+import com.deye.web.util.ContentKeyUtils;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import io.minio.errors.ErrorResponseException;
+import io.minio.http.Method;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static com.deye.web.util.error.ErrorCodeUtils.IMAGE_UPLOAD_ERROR_CODE;
+import static com.deye.web.util.error.ErrorCodeUtils.IMAGE_UPLOAD_NOT_FOUND_ERROR_CODE;
+import static com.deye.web.util.error.ErrorCodeUtils.MINIO_UPLOAD_FILE_ERROR_CODE;
+import static com.deye.web.util.error.ErrorMessageUtils.*;
+
+/**
+ * Images uploaded by clients straight to MinIO with presigned PUT URLs, so image bytes never pass through the application.
+ * Client hashes the image and gets a URL of its content addressed key, or no URL at all when the same content
+ * is already stored. After the upload the image is confirmed by a stat request only and attached to a product
+ * or a category. Images which weren't confirmed are deleted by the file outbox after {@link #ABANDONED_OBJECT_AGE}.
+ * Content type and checksum of the content are signed into the URL, so the storage rejects uploads of other bytes
+ * or of another type, and the checksum is checked again when the upload is confirmed
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PresignedUploadService {
+    private static final Pattern CONTENT_KEY_PATTERN = Pattern.compile("^[0-9a-f]{64}(\\.[a-z0-9]+)?$");
+    private static final Pattern HASH_PATTERN = Pattern.compile("^[0-9a-f]{64}$");
+    private static final Duration ABANDONED_OBJECT_AGE = Duration.ofHours(24);
+    private static final int ABANDONED_OBJECTS_BATCH_SIZE = 1000;
+    private static final String CHECKSUM_HEADER = "x-amz-checksum-sha256";
+    private static final String CHECKSUM_MODE_HEADER = "x-amz-checksum-mode";
+    private final FileObjectRepository fileObjectRepository;
+    private final FileOutboxService fileOutboxService;
+    private final MinioClient minio;
+    private final ConfigService configService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * @param fileName    - name of the image, only its extension is kept in the stored key
+     * @param contentType - JPEG or PNG
+     * @param size        - exact size of the image in bytes
+     * @param hash        - lower case hex SHA-256 of the image content
+     */
+    @Transactional
+    public PresignedUploadView issue(String fileName, String contentType, long size, String hash) {
+        validate(contentType, size);
+        if (hash == null || !HASH_PATTERN.matcher(hash).matches()) {
+            throw new WrongRequestBodyException(IMAGE_UPLOAD_ERROR_CODE, IMAGE_UPLOAD_HASH_ERROR_MESSAGE);
+        }
+        String key = ContentKeyUtils.toFileName(hash, fileName);
+        fileObjectRepository.createIfAbsent(key);
+        FileObjectEntity object = fileObjectRepository.findWithLockByName(key);
+        rejectDeleting(object);
+        if (object.isUploaded()) {
+            log.info("Image: {} is already stored as: {}, upload URL isn't issued", fileName, key);
+            return PresignedUploadView.builder()
+                    .fileName(key)
+                    .uploaded(true)
+                    .build();
+        }
+        Duration expiry = configService.getMinioUploadPresignedExpiry();
+        Map<String, String> headers = Map.of(
+                HttpHeaders.CONTENT_TYPE, contentType,
+                HttpHeaders.CACHE_CONTROL, ContentKeyUtils.IMMUTABLE_CACHE_CONTROL,
+                CHECKSUM_HEADER, ContentKeyUtils.toChecksum(key));
+        String url;
+        try {
+            url = minio.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                    .method(Method.PUT)
+                    .bucket(configService.getMinioBucketName())
+                    .object(key)
+                    .expiry((int) expiry.toSeconds())
+                    .extraHeaders(headers)
+                    .build());
+        } catch (Exception e) {
+            log.error("Error occurred while presigning upload of image: {}", key, e);
+            throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, MINIO_UPLOAD_FILE_ERROR_MESSAGE);
+        }
+        log.info("Issued upload URL of image: {} as: {} for {}", fileName, key, expiry);
+        return PresignedUploadView.builder()
+                .fileName(key)
+                .uploaded(false)
+                .url(url)
+                .headers(headers)
+                .expiresAt(LocalDateTime.now().plus(expiry))
+                .build();
+    }
+
+    /**
+     * Checks by a stat request that the image is uploaded with the checksum of its key and marks its object as uploaded,
+     * so the same content isn't uploaded again. Object stays locked until the image is attached in the current transaction
+     *
+     * @param fileName - key returned when the upload URL was issued
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void confirm(String fileName) {
+        if (fileName == null || !CONTENT_KEY_PATTERN.matcher(fileName).matches()) {
+            throw new EntityNotFoundException(IMAGE_UPLOAD_NOT_FOUND_ERROR_CODE, PRESIGNED_IMAGE_NOT_FOUND_ERROR_MESSAGE);
+        }
+        fileObjectRepository.createIfAbsent(fileName);
+        FileObjectEntity object = fileObjectRepository.findWithLockByName(fileName);
+        rejectDeleting(object);
+        StatObjectResponse stat = stat(fileName);
+        if (stat == null) {
+            throw new EntityNotFoundException(IMAGE_UPLOAD_NOT_FOUND_ERROR_CODE, PRESIGNED_IMAGE_NOT_FOUND_ERROR_MESSAGE);
+        }
+        if (object.isUploaded()) {
+            return;
+        }
+        validate(stat.contentType(), stat.size());
+        if (!ContentKeyUtils.toChecksum(fileName).equals(stat.headers().get(CHECKSUM_HEADER))) {
+            log.warn("Checksum: {} of image: {} doesn't match its key", stat.headers().get(CHECKSUM_HEADER), fileName);
+            throw new WrongRequestBodyException(IMAGE_UPLOAD_ERROR_CODE, IMAGE_UPLOAD_CHECKSUM_ERROR_MESSAGE);
+        }
+        object.setUploaded(true);
+        eventPublisher.publishEvent(new UploadedFileEvent(fileName, stat.contentType()));
+        log.info("Confirmed upload of image: {} with {} bytes", fileName, stat.size());
+    }
+
+    /**
+     * Records deletion of objects which no FILE row references for {@link #ABANDONED_OBJECT_AGE},
+     * the file outbox deletes them unless they are referenced again meanwhile
+     */
+    @Scheduled(fixedDelayString = "PT1H")
+    @Transactional
+    public void deleteAbandoned() {
+        List<String> fileNames = fileObjectRepository.findAllAbandonedNames(LocalDateTime.now().minus(ABANDONED_OBJECT_AGE), ABANDONED_OBJECTS_BATCH_SIZE);
+        if (!fileNames.isEmpty()) {
+            log.info("Recording deletion of {} abandoned images", fileNames.size());
+            fileOutboxService.enqueueDeletes(fileNames);
+        }
+    }
+
+    /**
+     * Object which is being deleted may be removed from the storage after it was uploaded or confirmed,
+     * so the client has to retry when the delete is finished
+     */
+    private void rejectDeleting(FileObjectEntity object) {
+        if (object.isDeleting()) {
+            log.warn("Image: {} is being deleted from the storage, upload is rejected", object.getName());
+            throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, FILE_DELETING_ERROR_MESSAGE);
+        }
+    }
+
+    private StatObjectResponse stat(String fileName) {
+        try {
+            return minio.statObject(StatObjectArgs.builder()
+                    .bucket(configService.getMinioBucketName())
+                    .object(fileName)
+                    .extraHeaders(Map.of(CHECKSUM_MODE_HEADER, "ENABLED"))
+                    .build());
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return null;
+            }
+            log.error("Error occurred while checking upload of image: {}", fileName, e);
+            throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, MINIO_UPLOAD_FILE_ERROR_MESSAGE);
+        } catch (Exception e) {
+            log.error("Error occurred while checking upload of image: {}", fileName, e);
+            throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, MINIO_UPLOAD_FILE_ERROR_MESSAGE);
+        }
+    }
+
+    private void validate(String contentType, long size) {
+        if (!MediaType.IMAGE_JPEG_VALUE.equals(contentType) && !MediaType.IMAGE_PNG_VALUE.equals(contentType)) {
+            throw new WrongRequestBodyException(IMAGE_UPLOAD_ERROR_CODE, IMAGE_UPLOAD_TYPE_ERROR_MESSAGE);
+        }
+        if (size <= 0 || size > configService.getMinioUploadMaxSize().toBytes()) {
+            throw new WrongRequestBodyException(IMAGE_UPLOAD_ERROR_CODE, IMAGE_UPLOAD_SIZE_ERROR_MESSAGE);
+        }
+    }
+}
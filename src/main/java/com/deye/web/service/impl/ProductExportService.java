@@ -0,0 +1,121 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.controller.dto.ProductFilterDto;
+import com.deye.web.controller.view.AttributeView;
+import com.deye.web.controller.view.ProductView;
+import com.deye.web.entity.ProductEntity;
+import com.deye.web.enumerated.ProductFileFormatEnum;
+import com.deye.web.repository.ProductRepository;
+import com.deye.web.service.spricification.ProductFilterSpecification;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Streams all products matching a filter straight into the output stream. Ids are read through a forward-only cursor,
+ * every batch of them is hydrated, written and detached before the next one, so memory used by the export
+ * doesn't depend on the amount of exported products.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProductExportService {
+    private static final int FETCH_SIZE = 1000;
+    private static final int BATCH_SIZE = 500;
+    private static final String CSV_HEADER = "id,name,description,price,stockQuantity,categoryId,categoryName,images,attributes\n";
+    private final ProductRepository productRepository;
+    private final ProductFilterSpecification productFilterSpecification;
+    private final ProductListingService productListingService;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param productFilterDto - products filter
+     * @param format           - output format
+     * @param outputStream     - stream to write products to, it's flushed after every batch but not closed
+     * @return amount of exported products
+     */
+    @Transactional(readOnly = true)
+    public long export(ProductFilterDto productFilterDto, ProductFileFormatEnum format, OutputStream outputStream) throws IOException {
+        Specification<ProductEntity> specification = productFilterSpecification.filterBy(productFilterDto);
+        if (format == ProductFileFormatEnum.CSV) {
+            outputStream.write(CSV_HEADER.getBytes(StandardCharsets.UTF_8));
+        }
+        long exported = 0;
+        try (Stream<UUID> productsIds = productRepository.streamIds(specification, FETCH_SIZE)) {
+            Iterator<UUID> iterator = productsIds.iterator();
+            List<UUID> batch = new ArrayList<>(BATCH_SIZE);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == BATCH_SIZE || !iterator.hasNext()) {
+                    for (ProductView product : productListingService.hydrate(batch)) {
+                        write(product, format, outputStream);
+                        exported++;
+                    }
+                    outputStream.flush();
+                    entityManager.clear();
+                    batch.clear();
+                }
+            }
+        }
+        outputStream.flush();
+        return exported;
+    }
+
+    private void write(ProductView product, ProductFileFormatEnum format, OutputStream outputStream) throws IOException {
+        switch (format) {
+            case NDJSON -> {
+                outputStream.write(objectMapper.writeValueAsBytes(product));
+                outputStream.write('\n');
+            }
+            case CSV -> outputStream.write(toCsvRow(product).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private String toCsvRow(ProductView product) throws IOException {
+        Map<String, Object> attributesValues = new LinkedHashMap<>();
+        for (AttributeView attribute : product.getAttributes()) {
+            attributesValues.put(attribute.getName(), attribute.getValue());
+        }
+        return String.join(",",
+                toCsvValue(product.getId()),
+                toCsvValue(product.getName()),
+                toCsvValue(product.getDescription()),
+                toCsvValue(product.getPrice()),
+                toCsvValue(product.getStockQuantity()),
+                toCsvValue(product.getCategoryId()),
+                toCsvValue(product.getCategoryName()),
+                toCsvValue(objectMapper.writeValueAsString(product.getImages())),
+                toCsvValue(objectMapper.writeValueAsString(attributesValues))) + "\n";
+    }
+
+    /**
+     * RFC 4180 field: quoted when it contains separator, quote or line break, quotes are doubled
+     */
+    private String toCsvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String field = value.toString();
+        if (field.contains(",") || field.contains("\"") || field.contains("\n") || field.contains("\r")) {
+            return "\"" + field.replace("\"", "\"\"") + "\"";
+        }
+        return field;
+    }
+}
@@ -0,0 +1,123 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.cache.ProductFacetsCache;
+import com.deye.web.cache.ProductFilterCacheKey;
+import com.deye.web.controller.dto.ProductFilterDto;
+import com.deye.web.controller.view.AttributeFacetView;
+import com.deye.web.entity.AttributeEntity;
+import com.deye.web.entity.ProductEntity;
+import com.deye.web.entity.attribute.definition.AttributeDefinition;
+import com.deye.web.entity.attribute.definition.NumberSelectAttributeDefinition;
+import com.deye.web.entity.attribute.definition.StringSelectAttributeDefinition;
+import com.deye.web.enumerated.AttributeTypeEnum;
+import com.deye.web.repository.AttributeRepository;
+import com.deye.web.repository.ProductRepository;
+import com.deye.web.service.spricification.ProductFilterSpecification;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Counts of matching products per value of filterable select and checkbox attributes
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductFacetService {
+    private static final Set<AttributeTypeEnum> FACET_TYPES = EnumSet.of(AttributeTypeEnum.STRING_SELECT, AttributeTypeEnum.NUMBER_SELECT, AttributeTypeEnum.CHECKBOX);
+    private final ProductRepository productRepository;
+    private final AttributeRepository attributeRepository;
+    private final ProductFilterSpecification productFilterSpecification;
+    private final ProductFacetsCache productFacetsCache;
+
+    /**
+     * Facets of filterable attributes of the filtered categories, or of all categories when none is selected.
+     * Values of every attribute are counted by a single grouped query over attribute values of the matching products,
+     * values from the attribute definition which no product has are returned with zero count
+     *
+     * @param productFilterDto - products filter
+     */
+    @Transactional(readOnly = true)
+    public List<AttributeFacetView> getFacets(ProductFilterDto productFilterDto) {
+        ProductFilterCacheKey filterKey = ProductFilterCacheKey.of(productFilterDto);
+        long cacheGeneration = productFacetsCache.getGeneration();
+        List<AttributeFacetView> cachedFacets = productFacetsCache.get(filterKey);
+        if (cachedFacets != null) {
+            return cachedFacets;
+        }
+
+        List<AttributeEntity> attributes = getFacetAttributes(filterKey.getCategoriesIds());
+        Map<UUID, Map<String, Long>> counts = new HashMap<>();
+        Map<UUID, Map<String, Object>> values = new HashMap<>();
+        if (!attributes.isEmpty()) {
+            Specification<ProductEntity> specification = productFilterSpecification.filterBy(productFilterDto);
+            List<UUID> attributesIds = attributes.stream()
+                    .map(AttributeEntity::getId)
+                    .toList();
+            for (Object[] row : productRepository.countAttributeValues(specification, attributesIds)) {
+                UUID attributeId = (UUID) row[0];
+                String valueKey = toValueKey(row[1]);
+                counts.computeIfAbsent(attributeId, id -> new HashMap<>()).merge(valueKey, (Long) row[2], Long::sum);
+                values.computeIfAbsent(attributeId, id -> new LinkedHashMap<>()).putIfAbsent(valueKey, row[1]);
+            }
+        }
+
+        List<AttributeFacetView> facets = attributes.stream()
+                .sorted(Comparator.comparing(AttributeEntity::getName))
+                .map(attribute -> toFacet(attribute, counts.getOrDefault(attribute.getId(), Map.of()), values.getOrDefault(attribute.getId(), Map.of())))
+                .toList();
+        productFacetsCache.put(filterKey, facets, cacheGeneration);
+        log.info("Counted values of {} attributes", facets.size());
+        return facets;
+    }
+
+    private List<AttributeEntity> getFacetAttributes(List<UUID> categoriesIds) {
+        List<AttributeEntity> attributes = categoriesIds.isEmpty()
+                ? attributeRepository.findAllFilterable()
+                : attributeRepository.findAllFilterableByCategoriesIds(categoriesIds);
+        return attributes.stream()
+                .filter(attribute -> FACET_TYPES.contains(attribute.getDefinition().getAttributeType()))
+                .toList();
+    }
+
+    private AttributeFacetView toFacet(AttributeEntity attribute, Map<String, Long> counts, Map<String, Object> foundValues) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Object definedValue : getDefinedValues(attribute.getDefinition())) {
+            values.put(toValueKey(definedValue), definedValue);
+        }
+        foundValues.forEach(values::putIfAbsent);
+        List<AttributeFacetView.ValueCount> valuesCounts = values.entrySet().stream()
+                .map(value -> new AttributeFacetView.ValueCount(value.getValue(), counts.getOrDefault(value.getKey(), 0L)))
+                .toList();
+        return AttributeFacetView.builder()
+                .id(attribute.getId())
+                .name(attribute.getName())
+                .type(attribute.getDefinition().getAttributeType())
+                .values(valuesCounts)
+                .build();
+    }
+
+    private List<?> getDefinedValues(AttributeDefinition definition) {
+        return switch (definition.getAttributeType()) {
+            case STRING_SELECT -> ((StringSelectAttributeDefinition) definition).getValues();
+            case NUMBER_SELECT -> ((NumberSelectAttributeDefinition) definition).getValues();
+            case CHECKBOX -> List.of(true, false);
+            default -> List.of();
+        };
+    }
+
+    /**
+     * Numbers read from JSON and from definitions may differ in type, e.g. 1 and 1.0, so they are compared by value
+     */
+    private String toValueKey(Object value) {
+        if (value instanceof Number number) {
+            return new BigDecimal(number.toString()).stripTrailingZeros().toPlainString();
+        }
+        return String.valueOf(value);
+    }
+}
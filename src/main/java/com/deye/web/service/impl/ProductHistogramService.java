@@ -0,0 +1,180 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.cache.CategoryStatistics;
+import com.deye.web.cache.CategoryStatisticsCache;
+import com.deye.web.controller.dto.ProductFilterDto;
+import com.deye.web.controller.view.CategoryHistogramsView;
+import com.deye.web.controller.view.HistogramView;
+import com.deye.web.entity.AttributeEntity;
+import com.deye.web.entity.ProductEntity;
+import com.deye.web.entity.attribute.definition.RangeAttributeDefinition;
+import com.deye.web.enumerated.AttributeTypeEnum;
+import com.deye.web.exception.WrongRequestBodyException;
+import com.deye.web.repository.AttributeRepository;
+import com.deye.web.repository.ProductRepository;
+import com.deye.web.service.spricification.ProductFilterSpecification;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+
+import static com.deye.web.util.error.ErrorCodeUtils.HISTOGRAM_BUCKETS_ERROR_CODE;
+import static com.deye.web.util.error.ErrorMessageUtils.HISTOGRAM_BUCKETS_ERROR_MESSAGE;
+
+/**
+ * Distribution of prices and of number/range attributes values within a category. Bounds of the buckets
+ * come from the category statistics, so only the bucket counts under the current filter are queried
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductHistogramService {
+    private static final int MAX_BUCKETS_COUNT = 100;
+    private final ProductRepository productRepository;
+    private final AttributeRepository attributeRepository;
+    private final ProductFilterSpecification productFilterSpecification;
+    private final CategoryStatisticsCache categoryStatisticsCache;
+
+    /**
+     * @param categoryId       - category of products
+     * @param productFilterDto - filter applied within the category
+     * @param bucketsCount     - amount of buckets of every histogram
+     */
+    @Transactional(readOnly = true)
+    public CategoryHistogramsView getHistograms(UUID categoryId, ProductFilterDto productFilterDto, int bucketsCount) {
+        if (bucketsCount < 1 || bucketsCount > MAX_BUCKETS_COUNT) {
+            throw new WrongRequestBodyException(HISTOGRAM_BUCKETS_ERROR_CODE, HISTOGRAM_BUCKETS_ERROR_MESSAGE);
+        }
+        CategoryStatistics statistics = getStatistics(categoryId);
+        Specification<ProductEntity> specification = productFilterSpecification.filterBy(withCategory(productFilterDto, categoryId));
+
+        HistogramView priceHistogram = HistogramView.builder()
+                .name("price")
+                .counts(List.of())
+                .build();
+        if (statistics.getPrice() != null) {
+            double[] bounds = toBucketsBounds(statistics.getPrice().getMin(), statistics.getPrice().getMax());
+            long[] counts = toCounts(productRepository.countPriceBuckets(specification, bounds[0], bounds[1], bucketsCount), 0, bucketsCount);
+            priceHistogram = toHistogram(null, "price", null, bounds, counts);
+        }
+
+        List<AttributeEntity> attributes = attributeRepository.findAllFilterableByCategoriesIds(List.of(categoryId)).stream()
+                .filter(attribute -> attribute.getDefinition().getAttributeType() == AttributeTypeEnum.NUMBER
+                        || attribute.getDefinition().getAttributeType() == AttributeTypeEnum.RANGE)
+                .sorted(Comparator.comparing(AttributeEntity::getName))
+                .toList();
+        Map<UUID, double[]> attributesBounds = new HashMap<>();
+        for (AttributeEntity attribute : attributes) {
+            CategoryStatistics.Bounds bounds = statistics.getAttributes().get(attribute.getId());
+            if (bounds != null) {
+                attributesBounds.put(attribute.getId(), toAttributeBucketsBounds(attribute, bounds));
+            }
+        }
+        Map<UUID, List<Object[]>> attributesRows = new HashMap<>();
+        if (!attributesBounds.isEmpty()) {
+            for (Object[] row : productRepository.countAttributeBuckets(specification, attributesBounds, bucketsCount)) {
+                attributesRows.computeIfAbsent((UUID) row[0], id -> new ArrayList<>()).add(row);
+            }
+        }
+        List<HistogramView> attributesHistograms = attributes.stream()
+                .filter(attribute -> attributesBounds.containsKey(attribute.getId()))
+                .map(attribute -> toHistogram(attribute.getId(), attribute.getName(), attribute.getDefinition().getAttributeType(),
+                        attributesBounds.get(attribute.getId()),
+                        toCounts(attributesRows.getOrDefault(attribute.getId(), List.of()), 1, bucketsCount)))
+                .toList();
+        log.info("Built price and {} attributes histograms of category with id: {}", attributesHistograms.size(), categoryId);
+        return CategoryHistogramsView.builder()
+                .categoryId(categoryId)
+                .price(priceHistogram)
+                .attributes(attributesHistograms)
+                .build();
+    }
+
+    private CategoryStatistics getStatistics(UUID categoryId) {
+        CategoryStatistics statistics = categoryStatisticsCache.get(categoryId);
+        if (statistics != null) {
+            return statistics;
+        }
+        long version = categoryStatisticsCache.getVersion(categoryId);
+        Object[] priceRow = productRepository.findPriceBoundsByCategoryId(categoryId).get(0);
+        CategoryStatistics.Bounds price = priceRow[0] == null ? null
+                : new CategoryStatistics.Bounds(((Number) priceRow[0]).doubleValue(), ((Number) priceRow[1]).doubleValue());
+        Map<UUID, CategoryStatistics.Bounds> attributes = new HashMap<>();
+        for (Object[] row : productRepository.findAttributesBoundsByCategoryId(categoryId)) {
+            if (row[1] != null && row[2] != null) {
+                attributes.put((UUID) row[0], new CategoryStatistics.Bounds(((Number) row[1]).doubleValue(), ((Number) row[2]).doubleValue()));
+            }
+        }
+        statistics = new CategoryStatistics(price, attributes);
+        categoryStatisticsCache.put(categoryId, statistics, version);
+        log.info("Calculated statistics of category with id: {}", categoryId);
+        return statistics;
+    }
+
+    /**
+     * Observed bounds of a range attribute are limited by the bounds allowed by its definition
+     */
+    private double[] toAttributeBucketsBounds(AttributeEntity attribute, CategoryStatistics.Bounds bounds) {
+        double min = bounds.getMin();
+        double max = bounds.getMax();
+        if (attribute.getDefinition() instanceof RangeAttributeDefinition rangeDefinition) {
+            min = Math.max(min, rangeDefinition.getMin().doubleValue());
+            max = Math.min(max, rangeDefinition.getMax().doubleValue());
+            if (min > max) {
+                min = rangeDefinition.getMin().doubleValue();
+                max = rangeDefinition.getMax().doubleValue();
+            }
+        }
+        return toBucketsBounds(min, max);
+    }
+
+    /**
+     * width_bucket needs distinct bounds, single value gets a bucket of width one
+     */
+    private double[] toBucketsBounds(double min, double max) {
+        return new double[]{min, max > min ? max : min + 1};
+    }
+
+    /**
+     * Values below the first bucket or not less than the upper bound are counted in the first and the last bucket
+     *
+     * @param bucketColumn - index of the bucket number in a row, count is the next column
+     */
+    private long[] toCounts(List<Object[]> rows, int bucketColumn, int bucketsCount) {
+        long[] counts = new long[bucketsCount];
+        for (Object[] row : rows) {
+            if (row[bucketColumn] == null) {
+                continue;
+            }
+            int bucket = Math.min(Math.max(((Number) row[bucketColumn]).intValue(), 1), bucketsCount);
+            counts[bucket - 1] += ((Number) row[bucketColumn + 1]).longValue();
+        }
+        return counts;
+    }
+
+    private HistogramView toHistogram(UUID attributeId, String name, AttributeTypeEnum type, double[] bounds, long[] counts) {
+        return HistogramView.builder()
+                .attributeId(attributeId)
+                .name(name)
+                .type(type)
+                .min(bounds[0])
+                .max(bounds[1])
+                .bucketWidth((bounds[1] - bounds[0]) / counts.length)
+                .counts(Arrays.stream(counts).boxed().toList())
+                .build();
+    }
+
+    private ProductFilterDto withCategory(ProductFilterDto productFilterDto, UUID categoryId) {
+        ProductFilterDto categoryFilter = new ProductFilterDto();
+        if (productFilterDto != null) {
+            categoryFilter.setName(productFilterDto.getName());
+            categoryFilter.setPriceRange(productFilterDto.getPriceRange());
+            categoryFilter.setAttributes(productFilterDto.getAttributes());
+        }
+        categoryFilter.setCategoriesIds(List.of(categoryId));
+        return categoryFilter;
+    }
+}
@@ -0,0 +1,420 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.async.listener.events.ImportedProductsEvent;
+import com.deye.web.controller.dto.ProductImportRowDto;
+import com.deye.web.controller.view.ProductImportView;
+import com.deye.web.entity.CategoryAttributeEntity;
+import com.deye.web.entity.CategoryEntity;
+import com.deye.web.entity.ProductEntity;
+import com.deye.web.enumerated.ProductFileFormatEnum;
+import com.deye.web.enumerated.ProductImportStatusEnum;
+import com.deye.web.exception.CommonException;
+import com.deye.web.exception.EntityNotFoundException;
+import com.deye.web.entity.FileObjectEntity;
+import com.deye.web.repository.CategoryRepository;
+import com.deye.web.repository.FileObjectRepository;
+import com.deye.web.repository.ProductRepository;
+import com.deye.web.util.CsvReader;
+import com.deye.web.util.error.ErrorCodeUtils;
+import com.deye.web.util.error.ErrorMessageUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk products import. Uploaded rows are spooled to a temporary file and imported in the background by chunks:
+ * rows of a chunk are validated in parallel against attributes of their categories, checked for duplicated names
+ * and the valid ones are inserted by COPY in one transaction per chunk. Images must be uploaded to the storage already,
+ * rows referencing images which aren't are rejected. Invalid rows are skipped and reported with their numbers,
+ * so a few bad rows don't prevent the rest of the catalog from being imported.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductImportService {
+    private static final int CHUNK_SIZE = 1000;
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final int MAX_KEPT_IMPORTS = 100;
+    private static final Set<String> CSV_JSON_COLUMNS = Set.of("images", "attributes");
+    private final ApplicationEventPublisher eventPublisher;
+    private final CategoryRepository categoryRepository;
+    private final CategoryService categoryService;
+    private final ConfigService configService;
+    private final ProductRepository productRepository;
+    private final FileObjectRepository fileObjectRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final PlatformTransactionManager transactionManager;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+    private final Map<UUID, ProductImport> imports = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, ProductImport> eldest) {
+            return size() > MAX_KEPT_IMPORTS;
+        }
+    };
+
+    /**
+     * @param rows   - NDJSON lines or CSV records with header, see ProductImportRowDto
+     * @param format - rows format
+     * @return state of the started import
+     */
+    public ProductImportView start(InputStream rows, ProductFileFormatEnum format) throws IOException {
+        Path file = Files.createTempFile("products-import", "." + format.getExtension());
+        try {
+            Files.copy(rows, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        ProductImport productImport = new ProductImport(UUID.randomUUID());
+        synchronized (imports) {
+            imports.put(productImport.id, productImport);
+        }
+        log.info("Products import {} started, format: {}", productImport.id, format);
+        applicationTaskExecutor.execute(() -> run(productImport, file, format));
+        return productImport.toView();
+    }
+
+    public ProductImportView get(UUID id) {
+        ProductImport productImport;
+        synchronized (imports) {
+            productImport = imports.get(id);
+        }
+        if (productImport == null) {
+            log.error("Products import with id: {} not found", id);
+            throw new EntityNotFoundException(ErrorCodeUtils.PRODUCT_IMPORT_NOT_FOUND_ERROR_CODE, ErrorMessageUtils.PRODUCT_IMPORT_NOT_FOUND_ERROR_MESSAGE);
+        }
+        return productImport.toView();
+    }
+
+    private void run(ProductImport productImport, Path file, ProductFileFormatEnum format) {
+        Map<UUID, Optional<CategoryEntity>> categories = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            RowReader rowReader = format == ProductFileFormatEnum.CSV ? csvRowReader(reader) : ndjsonRowReader(reader);
+            List<ParsedRow> chunk = new ArrayList<>(CHUNK_SIZE);
+            ParsedRow row;
+            while ((row = rowReader.read()) != null) {
+                chunk.add(row);
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(productImport, chunk, categories);
+                    chunk.clear();
+                }
+            }
+            importChunk(productImport, chunk, categories);
+            productImport.finish(ProductImportStatusEnum.COMPLETED, null);
+            ProductImportView view = productImport.toView();
+            log.info("Products import {} completed, imported: {}, failed: {}", view.getId(), view.getImportedRows(), view.getFailedRows());
+        } catch (Exception e) {
+            log.error("Products import {} failed", productImport.id, e);
+            productImport.finish(ProductImportStatusEnum.FAILED, e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Products import file {} can't be deleted", file, e);
+            }
+        }
+    }
+
+    private void importChunk(ProductImport productImport, List<ParsedRow> chunk, Map<UUID, Optional<CategoryEntity>> categories) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        loadCategories(chunk, categories);
+        chunk.parallelStream().forEach(row -> toProduct(row, categories));
+        rejectDuplicates(chunk);
+
+        List<ParsedRow> validRows = chunk.stream()
+                .filter(row -> row.error == null)
+                .toList();
+        if (!validRows.isEmpty()) {
+            try {
+                TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+                transactionTemplate.executeWithoutResult(status -> {
+                    rejectMissingImages(validRows);
+                    List<ProductEntity> products = validRows.stream()
+                            .filter(row -> row.error == null)
+                            .map(row -> row.product)
+                            .toList();
+                    if (products.isEmpty()) {
+                        return;
+                    }
+                    productRepository.insertAll(products);
+                    eventPublisher.publishEvent(new ImportedProductsEvent(
+                            products.stream().map(ProductEntity::getId).collect(Collectors.toSet()),
+                            products.stream().map(product -> product.getCategory().getId()).collect(Collectors.toSet())));
+                });
+            } catch (Exception e) {
+                log.error("Products import {} batch failed", productImport.id, e);
+                validRows.forEach(row -> row.error = ErrorMessageUtils.PRODUCT_IMPORT_BATCH_ERROR_MESSAGE);
+            }
+        }
+        productImport.progress(chunk);
+        log.info("Products import {} processed {} rows", productImport.id, productImport.toView().getProcessedRows());
+    }
+
+    private void loadCategories(List<ParsedRow> chunk, Map<UUID, Optional<CategoryEntity>> categories) {
+        Set<UUID> categoriesIdsToLoad = chunk.stream()
+                .filter(row -> row.row != null && row.row.getCategoryId() != null)
+                .map(row -> row.row.getCategoryId())
+                .filter(categoryId -> !categories.containsKey(categoryId))
+                .collect(Collectors.toSet());
+        if (categoriesIdsToLoad.isEmpty()) {
+            return;
+        }
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.setReadOnly(true);
+        transactionTemplate.executeWithoutResult(status -> categoriesIdsToLoad
+                .forEach(categoryId -> categories.put(categoryId, categoryRepository.findByIdWithFetchedAttributesAndImage(categoryId))));
+    }
+
+    /**
+     * Builds product of a parsed row, runs on a pool thread and only reads shared categories
+     */
+    private void toProduct(ParsedRow parsedRow, Map<UUID, Optional<CategoryEntity>> categories) {
+        if (parsedRow.error != null) {
+            return;
+        }
+        ProductImportRowDto row = parsedRow.row;
+        Set<ConstraintViolation<ProductImportRowDto>> violations = validator.validate(row);
+        if (!violations.isEmpty()) {
+            parsedRow.error = violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+            return;
+        }
+        Optional<CategoryEntity> category = categories.get(row.getCategoryId());
+        if (category == null || category.isEmpty()) {
+            parsedRow.error = ErrorMessageUtils.CATEGORY_NOT_FOUND_ERROR_MESSAGE;
+            return;
+        }
+        ProductEntity product = new ProductEntity();
+        product.setId(UUID.randomUUID());
+        product.setName(row.getName());
+        product.setDescription(row.getDescription());
+        product.setPrice(row.getPrice());
+        product.setStockQuantity(row.getStockQuantity());
+        product.setCategory(category.get());
+        product.setImages(toImagesNames(row.getImages()));
+        try {
+            Map<UUID, Object> attributesValues = toAttributesValues(category.get(), row.getAttributes());
+            categoryService.validateCategoryAttributesValues(product, attributesValues);
+            attributesValues.forEach((attributeId, value) ->
+                    product.addAttributeValue(category.get().getCategoryAttribute(attributeId).getAttribute(), value));
+        } catch (CommonException e) {
+            parsedRow.error = e.getMessage();
+            return;
+        }
+        parsedRow.product = product;
+    }
+
+    /**
+     * Image references may be full storage URLs, as they are exported, or object names
+     */
+    private Set<String> toImagesNames(List<String> images) {
+        String bucketName = configService.getMinioBucketName();
+        return images.stream()
+                .map(image -> StringUtils.contains(image, bucketName + "/") ? StringUtils.substringAfter(image, bucketName + "/") : image)
+                .collect(Collectors.toSet());
+    }
+
+    private Map<UUID, Object> toAttributesValues(CategoryEntity category, Map<String, Object> attributes) {
+        Map<UUID, Object> attributesValues = new HashMap<>();
+        if (attributes == null) {
+            return attributesValues;
+        }
+        attributes.forEach((attribute, value) -> {
+            UUID attributeId = category.getCategoryAttributes().stream()
+                    .map(CategoryAttributeEntity::getAttribute)
+                    .filter(categoryAttribute -> categoryAttribute.getId().toString().equals(attribute) || categoryAttribute.getName().equals(attribute))
+                    .findAny()
+                    .orElseThrow(() -> new EntityNotFoundException(ErrorCodeUtils.CATEGORY_ATTRIBUTE_NOT_FOUND_ERROR_CODE, ErrorMessageUtils.CATEGORY_ATTRIBUTE_NOT_FOUND_ERROR_MESSAGE))
+                    .getId();
+            attributesValues.put(attributeId, value);
+        });
+        return attributesValues;
+    }
+
+    /**
+     * Product names are unique: rows repeating them within the chunk or reusing existing ones are rejected.
+     * Image names are content addressed, so the same image may be used by many products
+     */
+    private void rejectDuplicates(List<ParsedRow> chunk) {
+        List<ParsedRow> validRows = chunk.stream()
+                .filter(row -> row.error == null)
+                .toList();
+        if (validRows.isEmpty()) {
+            return;
+        }
+        Set<String> names = new HashSet<>(productRepository.findAllNamesByNames(validRows.stream()
+                .map(row -> row.product.getName())
+                .collect(Collectors.toSet())));
+        for (ParsedRow row : validRows) {
+            if (names.contains(row.product.getName())) {
+                row.error = ErrorMessageUtils.PRODUCT_NAME_ALREADY_EXISTS_ERROR_MESSAGE;
+            } else {
+                names.add(row.product.getName());
+            }
+        }
+    }
+
+    /**
+     * Objects of the images are locked until the rows referencing them are inserted, so they can't be deleted meanwhile
+     */
+    private void rejectMissingImages(List<ParsedRow> rows) {
+        Set<String> imagesNames = rows.stream()
+                .flatMap(row -> row.product.getImagesNames().stream())
+                .collect(Collectors.toSet());
+        Set<String> uploadedNames = fileObjectRepository.findAllWithLockByNames(imagesNames).stream()
+                .filter(FileObjectEntity::isUploaded)
+                .map(FileObjectEntity::getName)
+                .collect(Collectors.toSet());
+        for (ParsedRow row : rows) {
+            if (!uploadedNames.containsAll(row.product.getImagesNames())) {
+                row.error = ErrorMessageUtils.PRODUCT_IMPORT_IMAGE_NOT_FOUND_ERROR_MESSAGE;
+            }
+        }
+    }
+
+    private RowReader ndjsonRowReader(BufferedReader reader) {
+        long[] rowNumber = {0};
+        return () -> {
+            String line;
+            do {
+                line = reader.readLine();
+                rowNumber[0]++;
+            } while (line != null && line.isBlank());
+            if (line == null) {
+                return null;
+            }
+            ParsedRow row = new ParsedRow(rowNumber[0]);
+            try {
+                row.row = objectMapper.readValue(line, ProductImportRowDto.class);
+            } catch (Exception e) {
+                row.error = ErrorMessageUtils.PRODUCT_IMPORT_ROW_PARSE_ERROR_MESSAGE;
+            }
+            return row;
+        };
+    }
+
+    /**
+     * Columns are matched to row fields by the header, so exported CSV can be imported back.
+     * Images and attributes columns hold JSON array and JSON object
+     */
+    private RowReader csvRowReader(BufferedReader reader) throws IOException {
+        CsvReader csvReader = new CsvReader(reader);
+        List<String> header = csvReader.readRecord();
+        long[] rowNumber = {0};
+        return () -> {
+            List<String> record;
+            do {
+                record = csvReader.readRecord();
+                rowNumber[0]++;
+            } while (record != null && record.size() == 1 && record.get(0).isBlank());
+            if (record == null) {
+                return null;
+            }
+            ParsedRow row = new ParsedRow(rowNumber[0]);
+            try {
+                ObjectNode fields = objectMapper.createObjectNode();
+                for (int i = 0; i < header.size() && i < record.size(); i++) {
+                    String column = header.get(i).trim();
+                    String value = record.get(i);
+                    if (value.isEmpty()) {
+                        continue;
+                    }
+                    JsonNode field = CSV_JSON_COLUMNS.contains(column) ? objectMapper.readTree(value) : fields.textNode(value);
+                    fields.set(column, field);
+                }
+                row.row = objectMapper.treeToValue(fields, ProductImportRowDto.class);
+            } catch (Exception e) {
+                row.error = ErrorMessageUtils.PRODUCT_IMPORT_ROW_PARSE_ERROR_MESSAGE;
+            }
+            return row;
+        };
+    }
+
+    @FunctionalInterface
+    private interface RowReader {
+        ParsedRow read() throws IOException;
+    }
+
+    private static class ParsedRow {
+        private final long number;
+        private ProductImportRowDto row;
+        private ProductEntity product;
+        private String error;
+
+        private ParsedRow(long number) {
+            this.number = number;
+        }
+    }
+
+    private static class ProductImport {
+        private final UUID id;
+        private final List<ProductImportView.RowError> errors = new ArrayList<>();
+        private ProductImportStatusEnum status = ProductImportStatusEnum.RUNNING;
+        private long processedRows;
+        private long importedRows;
+        private long failedRows;
+        private String message;
+
+        private ProductImport(UUID id) {
+            this.id = id;
+        }
+
+        private synchronized void progress(List<ParsedRow> chunk) {
+            for (ParsedRow row : chunk) {
+                processedRows++;
+                if (row.error == null) {
+                    importedRows++;
+                    continue;
+                }
+                failedRows++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add(new ProductImportView.RowError(row.number, row.error));
+                }
+            }
+        }
+
+        private synchronized void finish(ProductImportStatusEnum status, String message) {
+            this.status = status;
+            this.message = message;
+        }
+
+        private synchronized ProductImportView toView() {
+            return ProductImportView.builder()
+                    .id(id)
+                    .status(status)
+                    .processedRows(processedRows)
+                    .importedRows(importedRows)
+                    .failedRows(failedRows)
+                    .errors(List.copyOf(errors))
+                    .message(message)
+                    .build();
+        }
+    }
+}
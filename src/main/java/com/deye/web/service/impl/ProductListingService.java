@@ -0,0 +1,261 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.cache.ProductCountCache;
+import com.deye.web.cache.ProductFilterCacheKey;
+import com.deye.web.controller.dto.ProductFilterDto;
+import com.deye.web.controller.view.ProductCursorPageView;
+import com.deye.web.controller.view.ProductSearchView;
+import com.deye.web.controller.view.ProductView;
+import com.deye.web.entity.ProductEntity;
+import com.deye.web.enumerated.ProductCountModeEnum;
+import com.deye.web.enumerated.ProductSortEnum;
+import com.deye.web.exception.WrongRequestBodyException;
+import com.deye.web.index.CatalogIndex;
+import com.deye.web.repository.ProductRepository;
+import com.deye.web.service.spricification.ProductFilterSpecification;
+import com.deye.web.util.mapper.ProductCursorMapper;
+import com.deye.web.util.mapper.ProductMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.deye.web.util.error.ErrorCodeUtils.PAGINATION_CURSOR_ERROR_CODE;
+import static com.deye.web.util.error.ErrorCodeUtils.SEARCH_FILTER_ERROR_CODE;
+import static com.deye.web.util.error.ErrorMessageUtils.RELEVANCE_CURSOR_ERROR_MESSAGE;
+import static com.deye.web.util.error.ErrorMessageUtils.SEARCH_FILTER_ERROR_MESSAGE;
+
+/**
+ * Product listing engine. Page is selected as a list of ids first and then hydrated with
+ * a fixed number of fetch queries, so the amount of SQL statements doesn't depend on the page size.
+ * All reads run in read-only transactions: loaded products are not dirty-checked and nothing is flushed.
+ * When the catalog index is enabled and built, offset pages are selected by the index and only hydrated from the database.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ProductListingService {
+    private final ProductRepository productRepository;
+    private final ProductFilterSpecification productFilterSpecification;
+    private final ProductMapper productMapper;
+    private final ProductCursorMapper productCursorMapper;
+    private final ProductCountCache productCountCache;
+    private final CatalogIndexService catalogIndexService;
+    private final AsyncTaskExecutor applicationTaskExecutor;
+
+    /**
+     * Offset pagination with selectable way to get total amount of products:
+     * EXACT runs count(*) concurrently with the page query, NONE returns slice without total,
+     * ESTIMATED takes the planner estimate and CACHED keeps exact counts per normalized filter.
+     * The planner estimate doesn't apply attributes values filters, so filters with them are counted exactly in ESTIMATED mode.
+     * Unsorted page is ordered by similarity of names to the searched one, or by id when nothing is searched.
+     *
+     * @param productFilterDto - products filter
+     * @param pageable         - page to select
+     * @param countMode        - how total amount of products is calculated
+     * @return page of products or slice when count mode is NONE
+     */
+    @Transactional(readOnly = true)
+    public Slice<ProductView> getPage(ProductFilterDto productFilterDto, Pageable pageable, ProductCountModeEnum countMode) {
+        boolean isNameSearched = productFilterDto != null && StringUtils.isNotBlank(productFilterDto.getName());
+        if (pageable.getSort().isUnsorted() && pageable.isPaged() && !isNameSearched) {
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("id"));
+        }
+        Optional<CatalogIndex.IndexPage> indexPage = catalogIndexService.findPage(productFilterDto, pageable);
+        if (indexPage.isPresent()) {
+            return toPage(indexPage.get(), pageable, countMode);
+        }
+
+        Specification<ProductEntity> specification = productFilterSpecification.filterBy(productFilterDto);
+        ProductFilterCacheKey filterKey = ProductFilterCacheKey.of(productFilterDto);
+        if (countMode == ProductCountModeEnum.ESTIMATED && !filterKey.getAttributes().isEmpty()) {
+            countMode = ProductCountModeEnum.EXACT;
+        }
+        Specification<ProductEntity> pageSpecification = specification;
+        if (pageable.getSort().isUnsorted() && isNameSearched) {
+            pageSpecification = specification.and(productFilterSpecification.orderByNameSimilarity(productFilterDto.getName()));
+        }
+        CompletableFuture<Long> exactCount = null;
+        Long cachedCount = null;
+        long cacheGeneration = productCountCache.getGeneration();
+        if (countMode == ProductCountModeEnum.CACHED) {
+            cachedCount = productCountCache.get(filterKey);
+        }
+        if (countMode == ProductCountModeEnum.EXACT || (countMode == ProductCountModeEnum.CACHED && cachedCount == null)) {
+            exactCount = CompletableFuture.supplyAsync(() -> productRepository.count(specification), applicationTaskExecutor);
+        }
+
+        List<UUID> productsIds = productRepository.findIds(pageSpecification, pageable);
+        boolean hasNext = pageable.isPaged() && productsIds.size() > pageable.getPageSize();
+        if (hasNext) {
+            productsIds = productsIds.subList(0, pageable.getPageSize());
+        }
+        List<ProductView> products = hydrate(productsIds);
+        if (countMode == ProductCountModeEnum.NONE) {
+            log.info("Selected {} products, has next page: {}", products.size(), hasNext);
+            return new SliceImpl<>(products, pageable, hasNext);
+        }
+
+        long selectedCount = pageable.isPaged() ? pageable.getOffset() + products.size() : products.size();
+        long total;
+        if (cachedCount != null) {
+            total = cachedCount;
+        } else if (exactCount != null) {
+            total = await(exactCount);
+            if (countMode == ProductCountModeEnum.CACHED) {
+                productCountCache.put(filterKey, total, cacheGeneration);
+            }
+        } else {
+            total = Math.max(estimateCount(filterKey), hasNext ? selectedCount + 1 : selectedCount);
+        }
+        log.info("Selected {} products of {} ({})", products.size(), total, countMode);
+        return new PageImpl<>(products, pageable, total);
+    }
+
+    /**
+     * Page selected by the catalog index: the index knows exact total, only the page itself is read from the database
+     */
+    private Slice<ProductView> toPage(CatalogIndex.IndexPage indexPage, Pageable pageable, ProductCountModeEnum countMode) {
+        List<ProductView> products = hydrate(indexPage.getProductsIds());
+        log.info("Selected {} products of {} by catalog index", products.size(), indexPage.getTotal());
+        if (countMode == ProductCountModeEnum.NONE) {
+            return new SliceImpl<>(products, pageable, pageable.getOffset() + products.size() < indexPage.getTotal());
+        }
+        return new PageImpl<>(products, pageable, indexPage.getTotal());
+    }
+
+    private long estimateCount(ProductFilterCacheKey filterKey) {
+        String namePattern = filterKey.getName() == null ? null : productFilterSpecification.toNamePattern(filterKey.getName());
+        return productRepository.estimateCount(namePattern, filterKey.getCategoriesIds().toArray(UUID[]::new), filterKey.getMinPrice(), filterKey.getMaxPrice());
+    }
+
+    private long await(CompletableFuture<Long> count) {
+        try {
+            return count.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Keyset pagination: instead of skipping previous rows, selects products placed after the cursor position,
+     * so every page costs an index range scan no matter how deep it is
+     *
+     * @param productFilterDto - products filter
+     * @param sort             - products sort
+     * @param direction        - sort direction
+     * @param after            - cursor of the previous page, null for the first page
+     * @param size             - page size
+     */
+    @Transactional(readOnly = true)
+    public ProductCursorPageView getPageAfter(ProductFilterDto productFilterDto, ProductSortEnum sort, Sort.Direction direction, String after, int size) {
+        if (sort == ProductSortEnum.RELEVANCE) {
+            throw new WrongRequestBodyException(PAGINATION_CURSOR_ERROR_CODE, RELEVANCE_CURSOR_ERROR_MESSAGE);
+        }
+        Specification<ProductEntity> specification = productFilterSpecification.filterBy(productFilterDto);
+        if (after != null) {
+            ProductCursorMapper.ProductCursor cursor = productCursorMapper.fromCursor(after, sort, direction);
+            specification = specification.and(productFilterSpecification.after(sort, direction, cursor.getId(), cursor.getSortKey()));
+        }
+        List<Object[]> rows = productRepository.findIdsWithSortKeys(specification, sort.toSort(direction), sort.getProperty(), size + 1);
+        boolean hasNext = rows.size() > size;
+        List<Object[]> pageRows = hasNext ? rows.subList(0, size) : rows;
+        List<UUID> productsIds = pageRows.stream()
+                .map(row -> (UUID) row[0])
+                .toList();
+        String next = null;
+        if (hasNext) {
+            Object[] lastRow = pageRows.get(pageRows.size() - 1);
+            next = productCursorMapper.toCursor(sort, direction, (UUID) lastRow[0], lastRow[1]);
+        }
+        log.info("Selected {} products ids after cursor, has next page: {}", productsIds.size(), hasNext);
+        return ProductCursorPageView.builder()
+                .content(hydrate(productsIds))
+                .next(next)
+                .hasNext(hasNext)
+                .build();
+    }
+
+    /**
+     * Relevance ranked full text search over names, descriptions and string attribute values, a mode of the listing.
+     * Hits, their total amount and highlight snippets come from a single query, the page is hydrated afterwards.
+     * Only categories and price range of the filter narrow the search, name and attributes values filters are rejected
+     *
+     * @param searchQuery      - web search syntax query
+     * @param productFilterDto - products filter, nullable
+     * @param pageable         - page to select, sort is ignored
+     */
+    @Transactional(readOnly = true)
+    public Page<ProductSearchView> search(String searchQuery, ProductFilterDto productFilterDto, Pageable pageable) {
+        ProductFilterCacheKey filterKey = ProductFilterCacheKey.of(productFilterDto);
+        if (filterKey.getName() != null || !filterKey.getAttributes().isEmpty()) {
+            throw new WrongRequestBodyException(SEARCH_FILTER_ERROR_CODE, SEARCH_FILTER_ERROR_MESSAGE);
+        }
+        if (StringUtils.isBlank(searchQuery)) {
+            return Page.empty(pageable);
+        }
+        List<Object[]> hits = productRepository.search(searchQuery, filterKey.getCategoriesIds().toArray(UUID[]::new), filterKey.getMinPrice(), filterKey.getMaxPrice(),
+                pageable.getPageSize(), pageable.getOffset());
+        List<UUID> productsIds = hits.stream()
+                .map(hit -> (UUID) hit[0])
+                .toList();
+        Map<UUID, ProductView> products = hydrate(productsIds).stream()
+                .collect(Collectors.toMap(ProductView::getId, Function.identity()));
+        List<ProductSearchView> content = hits.stream()
+                .filter(hit -> products.containsKey((UUID) hit[0]))
+                .map(hit -> ProductSearchView.builder()
+                        .product(products.get((UUID) hit[0]))
+                        .rank(((Number) hit[1]).doubleValue())
+                        .headline((String) hit[2])
+                        .build())
+                .toList();
+        long total = hits.isEmpty() ? pageable.getOffset() : ((Number) hits.get(0)[3]).longValue();
+        log.info("Found {} products of {} by search query: {}", content.size(), total, searchQuery);
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * Loads products with everything needed for the view: first query fetches images and category,
+     * second one initializes attributes values of the same, already managed, products
+     *
+     * @param productsIds - ids of products in the order they should be returned
+     * @return products views in the order of provided ids
+     */
+    @Transactional(readOnly = true)
+    public List<ProductView> hydrate(List<UUID> productsIds) {
+        if (productsIds.isEmpty()) {
+            return List.of();
+        }
+        Map<UUID, ProductEntity> products = productRepository.findAllByIdsWithFetchedImagesAndCategory(productsIds).stream()
+                .collect(Collectors.toMap(ProductEntity::getId, Function.identity()));
+        productRepository.findAllByIdsWithFetchedAttributes(productsIds);
+        return productsIds.stream()
+                .map(products::get)
+                .filter(Objects::nonNull)
+                .map(productMapper::toProductView)
+                .toList();
+    }
+}
@@ -1,29 +1,62 @@
 package com.deye.web.service.impl;
 
 import com.deye.web.async.listener.events.DeletedProductEvent;
+import com.deye.web.async.listener.events.DeletedProductsEvent;
 import com.deye.web.async.listener.events.SavedProductEvent;
+import com.deye.web.cache.CachedJson;
+import com.deye.web.cache.ProductFilterCacheKey;
+import com.deye.web.cache.ProductJsonCache;
 import com.deye.web.controller.dto.CreateProductDto;
 import com.deye.web.controller.dto.ProductFilterDto;
 import com.deye.web.controller.dto.UpdateProductDto;
+import com.deye.web.controller.view.AttributeFacetView;
+import com.deye.web.controller.view.CategoryHistogramsView;
+import com.deye.web.controller.view.DeletedProductsView;
+import com.deye.web.controller.view.ImageUploadView;
+import com.deye.web.controller.view.PresignedUploadView;
+import com.deye.web.controller.view.ProductImportView;
+import com.deye.web.controller.view.ProductCursorPageView;
+import com.deye.web.controller.view.ProductSearchView;
 import com.deye.web.controller.view.ProductView;
 import com.deye.web.entity.*;
+import com.deye.web.enumerated.ProductCountModeEnum;
+import com.deye.web.enumerated.ProductFileFormatEnum;
+import com.deye.web.enumerated.ProductSortEnum;
 import com.deye.web.exception.EntityNotFoundException;
+import com.deye.web.exception.JsonException;
+import com.deye.web.exception.PreconditionFailedException;
 import com.deye.web.exception.TransactionConsistencyException;
+import com.deye.web.exception.WrongRequestBodyException;
 import com.deye.web.repository.ProductRepository;
 import com.deye.web.service.spricification.ProductFilterSpecification;
+import com.deye.web.util.ContentKeyUtils;
+import com.deye.web.util.ETagUtils;
 import com.deye.web.util.error.ErrorCodeUtils;
 import com.deye.web.util.error.ErrorMessageUtils;
+import com.deye.web.util.mapper.ImageMapper;
 import com.deye.web.util.mapper.ProductMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.CacheControl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -35,8 +68,19 @@ public class ProductService {
     private final CategoryService categoryService;
     private final ConfigService configService;
     private final ProductRepository productRepository;
-    private final ProductMapper productMapper;
     private final ProductFilterSpecification productFilterSpecification;
+    private final ProductMapper productMapper;
+    private final ImageMapper imageMapper;
+    private final ProductListingService productListingService;
+    private final ProductFacetService productFacetService;
+    private final ProductHistogramService productHistogramService;
+    private final ProductExportService productExportService;
+    private final ProductImportService productImportService;
+    private final ImageUploadService imageUploadService;
+    private final PresignedUploadService presignedUploadService;
+    private final ProductJsonCache productJsonCache;
+    private final ObjectMapper objectMapper;
+    private final PlatformTransactionManager transactionManager;
 
     @Transactional(rollbackFor = TransactionConsistencyException.class)
     public void save(CreateProductDto createProductDto) {
@@ -60,7 +104,7 @@ public class ProductService {
 
         MultipartFile[] images = createProductDto.getImages();
         Set<String> imagesNames = Arrays.stream(images)
-                .map(MultipartFile::getOriginalFilename)
+                .map(ContentKeyUtils::toFileName)
                 .collect(Collectors.toSet());
 
         product.setImages(imagesNames);
@@ -85,20 +129,156 @@ public class ProductService {
         }
     }
 
-    @Transactional
-    public Page<ProductView> getAll(ProductFilterDto productFilterDto, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public Slice<ProductView> getAll(ProductFilterDto productFilterDto, Pageable pageable, ProductCountModeEnum countMode) {
         log.info("Fetching all products");
-        Page<ProductEntity> products = productRepository.findAll(productFilterSpecification.filterBy(productFilterDto), pageable);
-        log.info("Found {} products", products.getTotalElements());
-        return products.map(productMapper::toProductView);
+        Slice<ProductView> products = productListingService.getPage(productFilterDto, pageable, countMode);
+        log.info("Found {} products", products.getNumberOfElements());
+        return products;
     }
 
-    @Transactional
-    public ProductView getById(UUID id) {
-        log.info("Fetching product by ID={}", id);
+    @Transactional(readOnly = true)
+    public ProductCursorPageView getAllAfter(ProductFilterDto productFilterDto, ProductSortEnum sort, Sort.Direction direction, String after, int size) {
+        log.info("Fetching products by {} {} after cursor: {}", sort, direction, after);
+        ProductCursorPageView products = productListingService.getPageAfter(productFilterDto, sort, direction, after, size);
+        log.info("Found {} products", products.getContent().size());
+        return products;
+    }
+
+    @Transactional(readOnly = true)
+    public List<AttributeFacetView> getFacets(ProductFilterDto productFilterDto) {
+        log.info("Fetching products facets");
+        List<AttributeFacetView> facets = productFacetService.getFacets(productFilterDto);
+        log.info("Found facets of {} attributes", facets.size());
+        return facets;
+    }
+
+    @Transactional(readOnly = true)
+    public CategoryHistogramsView getHistograms(UUID categoryId, ProductFilterDto productFilterDto, int bucketsCount) {
+        log.info("Fetching products histograms of category with id: {}", categoryId);
+        return productHistogramService.getHistograms(categoryId, productFilterDto, bucketsCount);
+    }
+
+    @Transactional(readOnly = true)
+    public Page<ProductSearchView> search(String searchQuery, ProductFilterDto productFilterDto, Pageable pageable) {
+        log.info("Searching products by query: {}", searchQuery);
+        Page<ProductSearchView> products = productListingService.search(searchQuery, productFilterDto, pageable);
+        log.info("Found {} products", products.getNumberOfElements());
+        return products;
+    }
+
+    @Transactional(readOnly = true)
+    public void export(ProductFilterDto productFilterDto, ProductFileFormatEnum format, OutputStream outputStream) throws IOException {
+        log.info("Exporting products as {}", format);
+        long exported = productExportService.export(productFilterDto, format, outputStream);
+        log.info("Exported {} products", exported);
+    }
+
+    public ProductImportView startImport(InputStream rows, ProductFileFormatEnum format) throws IOException {
+        log.info("Starting products import as {}", format);
+        return productImportService.start(rows, format);
+    }
+
+    public ProductImportView getImport(UUID id) {
+        log.info("Fetching products import by ID={}", id);
+        return productImportService.get(id);
+    }
+
+    public ImageUploadView startImageUpload(UUID id, String fileName, String contentType, long size) {
+        log.info("Starting upload of image: {} for product with ID={}", fileName, id);
+        return imageUploadService.start(id, fileName, contentType, size);
+    }
+
+    public ImageUploadView getImageUpload(UUID id, UUID uploadId) {
+        log.info("Fetching image upload by ID={} of product with ID={}", uploadId, id);
+        return imageUploadService.get(id, uploadId);
+    }
+
+    public ImageUploadView appendImageUpload(UUID id, UUID uploadId, long offset, InputStream content) {
+        log.info("Continuing image upload by ID={} of product with ID={} from {} bytes", uploadId, id, offset);
+        return imageUploadService.append(id, uploadId, offset, content);
+    }
+
+    public void abortImageUpload(UUID id, UUID uploadId) {
+        log.info("Aborting image upload by ID={} of product with ID={}", uploadId, id);
+        imageUploadService.abort(id, uploadId);
+    }
+
+    public PresignedUploadView issueImageUpload(UUID id, String fileName, String contentType, long size, String hash) {
+        log.info("Issuing upload URL of image: {} for product with ID={}", fileName, id);
+        if (!productRepository.existsById(id)) {
+            throw new EntityNotFoundException(ErrorCodeUtils.PRODUCT_NOT_FOUND_ERROR_CODE, ErrorMessageUtils.PRODUCT_NOT_FOUND_ERROR_MESSAGE);
+        }
+        return presignedUploadService.issue(fileName, contentType, size, hash);
+    }
+
+    /**
+     * Attaches the image uploaded by a presigned URL, see PresignedUploadService
+     *
+     * @param fileName - key the upload URL was issued for
+     */
+    @Transactional(rollbackFor = TransactionConsistencyException.class)
+    public void confirmImageUpload(UUID id, String fileName) {
+        log.info("Confirming upload of image: {} for product with ID={}", fileName, id);
         ProductEntity product = getProductEntityById(id);
-        log.info("Product found: {} ({})", product.getName(), product.getId());
-        return productMapper.toProductView(product);
+        presignedUploadService.confirm(fileName);
+        productRepository.findWithVersionIncrementById(id);
+        product.setImages(Set.of(fileName));
+        productRepository.saveAndFlush(product);
+        eventPublisher.publishEvent(new SavedProductEvent(product, null));
+    }
+
+    /**
+     * Current ETag of the product view: taken from the cached view or from a versions lookup in a read-only transaction,
+     * the product itself is not loaded
+     */
+    public String getETagById(UUID id) {
+        String cachedETag = productJsonCache.getETag(id);
+        if (cachedETag != null) {
+            return cachedETag;
+        }
+        List<Object[]> versions = readOnlyTransaction().execute(status -> productRepository.findVersionsById(id));
+        if (versions == null || versions.isEmpty()) {
+            log.error("Product with ID={} not found!", id);
+            throw new EntityNotFoundException(ErrorCodeUtils.PRODUCT_NOT_FOUND_ERROR_CODE, ErrorMessageUtils.PRODUCT_NOT_FOUND_ERROR_MESSAGE);
+        }
+        return ETagUtils.withViewEpoch(ETagUtils.productETag((Long) versions.get(0)[0], (Long) versions.get(0)[1]), imageMapper.getViewEpoch());
+    }
+
+    /**
+     * Cache-Control of product views, they are fresh until their image links window ends
+     */
+    public CacheControl getViewCacheControl() {
+        return imageMapper.getViewCacheControl();
+    }
+
+    /**
+     * Serialized product view, served from the cache without opening a transaction when present,
+     * otherwise loaded and serialized in a read-only transaction
+     */
+    public CachedJson getJsonById(UUID id) {
+        log.info("Fetching product by ID={}", id);
+        CachedJson cachedProduct = productJsonCache.get(id);
+        if (cachedProduct != null) {
+            log.info("Product with ID={} found in cache", id);
+            return cachedProduct;
+        }
+        long cacheVersion = productJsonCache.getVersion();
+        Long viewEpoch = imageMapper.getViewEpoch();
+        Duration viewMaxAge = imageMapper.getViewMaxAge();
+        return readOnlyTransaction().execute(status -> {
+            ProductEntity product = getProductEntityById(id);
+            log.info("Product found: {} ({})", product.getName(), product.getId());
+            try {
+                CachedJson json = new CachedJson(objectMapper.writeValueAsBytes(productMapper.toProductView(product)),
+                        ETagUtils.withViewEpoch(ETagUtils.productETag(product.getVersion(), product.getCategory().getVersion()), viewEpoch));
+                productJsonCache.put(id, product.getCategory().getId(), json, cacheVersion, viewMaxAge);
+                return json;
+            } catch (JsonProcessingException e) {
+                log.error("Product with ID={} serialization error", id, e);
+                throw new JsonException(ErrorCodeUtils.JSON_PARSE_ERROR_CODE, ErrorMessageUtils.JSON_PARSE_ERROR_MESSAGE);
+            }
+        });
     }
 
     @Transactional(rollbackFor = TransactionConsistencyException.class)
@@ -107,13 +287,57 @@ public class ProductService {
         ProductEntity product = getProductEntityById(id);
         log.info("Product found: {}", product.getId());
         productRepository.delete(product);
-        eventPublisher.publishEvent(new DeletedProductEvent(id, product.getImagesNames()));
+        eventPublisher.publishEvent(new DeletedProductEvent(id, product.getCategory().getId(), product.getImagesNames()));
+    }
+
+    /**
+     * Deletes products by ids, by filter, or by ids narrowed by filter with set-based statements: products are not loaded,
+     * their images names are selected by one query and rows of images and attributes values are deleted by cascade
+     *
+     * @param productsIds      - products to delete, nullable
+     * @param productFilterDto - filter of products to delete, nullable
+     */
+    @Transactional(rollbackFor = TransactionConsistencyException.class)
+    public DeletedProductsView deleteAll(List<UUID> productsIds, ProductFilterDto productFilterDto) {
+        boolean hasIds = productsIds != null && !productsIds.isEmpty();
+        boolean hasFilter = !ProductFilterCacheKey.of(productFilterDto).equals(ProductFilterCacheKey.of(null));
+        if (!hasIds && !hasFilter) {
+            throw new WrongRequestBodyException(ErrorCodeUtils.BULK_DELETE_ERROR_CODE, ErrorMessageUtils.BULK_DELETE_ERROR_MESSAGE);
+        }
+        log.info("Deleting products by {} ids and filter: {}", hasIds ? productsIds.size() : 0, hasFilter);
+        Specification<ProductEntity> specification = productFilterSpecification.filterBy(productFilterDto);
+        if (hasIds) {
+            specification = specification.and(productFilterSpecification.idIn(productsIds));
+        }
+        Map<UUID, UUID> categoriesIdsByProductsIds = productRepository.findIdsWithCategoriesIds(specification).stream()
+                .collect(Collectors.toMap(row -> (UUID) row[0], row -> (UUID) row[1]));
+        if (categoriesIdsByProductsIds.isEmpty()) {
+            log.info("No products to delete found");
+            return DeletedProductsView.builder().build();
+        }
+        List<String> imagesNames = productRepository.findAllImagesNamesByProductsIds(categoriesIdsByProductsIds.keySet());
+        int deletedProducts = productRepository.deleteAllByIds(categoriesIdsByProductsIds.keySet());
+        log.info("Deleted {} products with {} images", deletedProducts, imagesNames.size());
+        eventPublisher.publishEvent(new DeletedProductsEvent(categoriesIdsByProductsIds.keySet(),
+                new HashSet<>(categoriesIdsByProductsIds.values()), imagesNames));
+        return DeletedProductsView.builder()
+                .deletedProducts(deletedProducts)
+                .deletedImages(imagesNames.size())
+                .build();
     }
 
+    /**
+     * @param ifMatch - If-Match header, product is updated only if one of its tags is the current product ETag, nullable
+     */
     @Transactional(rollbackFor = TransactionConsistencyException.class)
-    public void update(UUID id, UpdateProductDto updateProductDto) {
+    public void update(UUID id, UpdateProductDto updateProductDto, String ifMatch) {
         log.info("Updating product by ID={}", id);
         ProductEntity product = getProductEntityById(id);
+        if (!ETagUtils.matches(ifMatch, ETagUtils.productETag(product.getVersion(), product.getCategory().getVersion()))) {
+            log.warn("Product with ID={} doesn't match If-Match: {}", id, ifMatch);
+            throw new PreconditionFailedException(ErrorCodeUtils.PRECONDITION_FAILED_ERROR_CODE, ErrorMessageUtils.PRECONDITION_FAILED_ERROR_MESSAGE);
+        }
+        productRepository.findWithVersionIncrementById(id);
         MultipartFile[] imagesToAdd = updateProductDto.getImagesToAdd();
         List<String> imagesNamesToRemove = updateProductDto.getImagesToRemove();
         Map<UUID, Object> attributesValuesToSave = updateProductDto.getAttributesValuesToSave();
@@ -132,7 +356,7 @@ public class ProductService {
         }
         if (imagesToAdd != null) {
             Set<String> imagesNamesToAdd = Arrays.stream(imagesToAdd)
-                    .map(MultipartFile::getOriginalFilename)
+                    .map(ContentKeyUtils::toFileName)
                     .collect(Collectors.toSet());
             product.setImages(imagesNamesToAdd);
         }
@@ -143,7 +367,7 @@ public class ProductService {
                         if (StringUtils.contains(fileName, bucketName + "/")) {
                             fileName = StringUtils.substringAfter(fileName, bucketName + "/");
                         }
-                        return fileName;
+                        return StringUtils.substringBefore(fileName, "?");
                     })
                     .toList();
             product.removeImages(imagesNamesToRemove);
@@ -162,6 +386,15 @@ public class ProductService {
         eventPublisher.publishEvent(new SavedProductEvent(product, imagesToAdd, imagesNamesToRemove));
     }
 
+    /**
+     * Read paths which serve cached views without a transaction open one only when they go to the database
+     */
+    private TransactionTemplate readOnlyTransaction() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        return transactionTemplate;
+    }
+
     private ProductEntity getProductEntityById(UUID id) {
         log.info("Searching for product in database with ID={}", id);
         return productRepository.findByIdWithFetchedImagesAndCategoryAndAttributes(id)
@@ -1,21 +1,42 @@
 package com.deye.web.service.spricification;
 
+import com.deye.web.controller.dto.AttributeFilterDto;
 import com.deye.web.controller.dto.RangeDto;
 import com.deye.web.controller.dto.ProductFilterDto;
+import com.deye.web.entity.AttributeEntity;
+import com.deye.web.entity.AttributeProductValuesEntity;
 import com.deye.web.entity.ProductEntity;
-import jakarta.persistence.criteria.Predicate;
+import com.deye.web.enumerated.AttributeTypeEnum;
+import com.deye.web.enumerated.ProductSortEnum;
+import com.deye.web.exception.WrongRequestBodyException;
+import com.deye.web.repository.AttributeRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.criteria.*;
+import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.deye.web.configuration.adapter.sql.JsonbFunctionContributor.*;
+import static com.deye.web.util.error.ErrorCodeUtils.ATTRIBUTE_FILTER_ERROR_CODE;
+import static com.deye.web.util.error.ErrorMessageUtils.ATTRIBUTE_NOT_FILTERABLE_ERROR_MESSAGE;
+import static com.deye.web.util.error.ErrorMessageUtils.WRONG_ATTRIBUTE_FILTER_ERROR_MESSAGE;
 
 @Service
+@RequiredArgsConstructor
 public class ProductFilterSpecification {
+    private static final char LIKE_ESCAPE_CHARACTER = '\\';
+    private final AttributeRepository attributeRepository;
+    private final ObjectMapper objectMapper;
 
     public Specification<ProductEntity> filterBy(ProductFilterDto productFilterDto) {
+        Map<UUID, AttributeEntity> filterableAttributes = getFilterableAttributes(productFilterDto);
         return ((root, query, criteriaBuilder) -> {
             if (productFilterDto == null) {
                 return criteriaBuilder.and();
@@ -24,9 +45,10 @@ public class ProductFilterSpecification {
             String productName = productFilterDto.getName();
             List<UUID> productCategoriesIds = productFilterDto.getCategoriesIds();
             RangeDto productPriceRangeFilter = productFilterDto.getPriceRange();
+            List<AttributeFilterDto> attributesFilters = productFilterDto.getAttributes();
 
             if (StringUtils.isNotBlank(productName)) {
-                Predicate productNamePredicate = criteriaBuilder.like(criteriaBuilder.lower(root.get("name")), "%" + productName.toLowerCase() + "%");
+                Predicate productNamePredicate = criteriaBuilder.like(criteriaBuilder.lower(root.get("name")), toNamePattern(productName), LIKE_ESCAPE_CHARACTER);
                 predicates.add(productNamePredicate);
             }
             if (productCategoriesIds != null && !productCategoriesIds.isEmpty()) {
@@ -37,8 +59,171 @@ public class ProductFilterSpecification {
                 Predicate productPricePredicate = criteriaBuilder.between(root.get("price"), productPriceRangeFilter.getMin().doubleValue(), productPriceRangeFilter.getMax().doubleValue());
                 predicates.add(productPricePredicate);
             }
+            if (attributesFilters != null) {
+                for (AttributeFilterDto attributeFilter : attributesFilters) {
+                    AttributeEntity attribute = filterableAttributes.get(attributeFilter.getId());
+                    predicates.add(attributeValuePredicate(root, query, criteriaBuilder, attribute, attributeFilter));
+                }
+            }
 
             return criteriaBuilder.and(predicates.toArray(new Predicate[0]));
         });
     }
+
+    public Specification<ProductEntity> idIn(Collection<UUID> productsIds) {
+        return ((root, query, criteriaBuilder) -> root.get("id").in(productsIds));
+    }
+
+    /**
+     * Keyset condition selecting products placed after the given one in the requested order.
+     * Redundant "key >= value" bound lets database start the index range scan right at the cursor position
+     * instead of filtering all previous rows.
+     *
+     * @param sort      - products sort
+     * @param direction - sort direction
+     * @param id        - id of the last product on the previous page
+     * @param sortKey   - value of the sort property of the last product on the previous page
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public Specification<ProductEntity> after(ProductSortEnum sort, Sort.Direction direction, UUID id, Object sortKey) {
+        return ((root, query, criteriaBuilder) -> {
+            Expression key = ProductSortEnum.toSortKey(root, criteriaBuilder, sort.getProperty());
+            Expression<UUID> productId = root.get("id");
+            Comparable value = (Comparable) sortKey;
+            if (direction.isAscending()) {
+                return criteriaBuilder.and(
+                        criteriaBuilder.greaterThanOrEqualTo(key, value),
+                        criteriaBuilder.or(criteriaBuilder.greaterThan(key, value), criteriaBuilder.greaterThan(productId, id))
+                );
+            }
+            return criteriaBuilder.and(
+                    criteriaBuilder.lessThanOrEqualTo(key, value),
+                    criteriaBuilder.or(criteriaBuilder.lessThan(key, value), criteriaBuilder.lessThan(productId, id))
+            );
+        });
+    }
+
+    /**
+     * Orders products by trigram similarity of their names to the searched one, most similar first
+     *
+     * @param productName - searched product name
+     */
+    public Specification<ProductEntity> orderByNameSimilarity(String productName) {
+        return ((root, query, criteriaBuilder) -> {
+            Expression<Double> similarity = criteriaBuilder.function("similarity", Double.class,
+                    criteriaBuilder.lower(root.get("name")), criteriaBuilder.literal(productName.toLowerCase()));
+            query.orderBy(criteriaBuilder.desc(similarity), criteriaBuilder.asc(root.get("id")));
+            return null;
+        });
+    }
+
+    /**
+     * Substring pattern for lower(name) LIKE, matching the trigram index on lower(name).
+     * LIKE wildcards typed by user are escaped, so they are searched literally.
+     *
+     * @param productName - searched product name
+     */
+    public String toNamePattern(String productName) {
+        String escaped = StringUtils.replaceEach(productName.toLowerCase(),
+                new String[]{"\\", "%", "_"},
+                new String[]{"\\\\", "\\%", "\\_"});
+        return "%" + escaped + "%";
+    }
+
+    /**
+     * Loads attributes used by the filter, checking that all of them are filterable and filter values match their types
+     *
+     * @param productFilterDto - products filter
+     */
+    public Map<UUID, AttributeEntity> getFilterableAttributes(ProductFilterDto productFilterDto) {
+        if (productFilterDto == null || productFilterDto.getAttributes() == null || productFilterDto.getAttributes().isEmpty()) {
+            return Map.of();
+        }
+        Set<UUID> attributesIds = productFilterDto.getAttributes().stream()
+                .map(AttributeFilterDto::getId)
+                .collect(Collectors.toSet());
+        Map<UUID, AttributeEntity> attributes = attributeRepository.findAllFilterableByIds(attributesIds).stream()
+                .collect(Collectors.toMap(AttributeEntity::getId, Function.identity()));
+        if (!attributes.keySet().containsAll(attributesIds)) {
+            throw new WrongRequestBodyException(ATTRIBUTE_FILTER_ERROR_CODE, ATTRIBUTE_NOT_FILTERABLE_ERROR_MESSAGE);
+        }
+        for (AttributeFilterDto attributeFilter : productFilterDto.getAttributes()) {
+            validateAttributeFilter(attributes.get(attributeFilter.getId()).getDefinition().getAttributeType(), attributeFilter);
+        }
+        return attributes;
+    }
+
+    private void validateAttributeFilter(AttributeTypeEnum attributeType, AttributeFilterDto attributeFilter) {
+        boolean isValid = switch (attributeType) {
+            case STRING_SELECT -> attributeFilter.getValues() != null && !attributeFilter.getValues().isEmpty();
+            case NUMBER_SELECT -> attributeFilter.getValues() != null && !attributeFilter.getValues().isEmpty()
+                    && attributeFilter.getValues().stream().allMatch(value -> toNumber(value) != null);
+            case CHECKBOX -> attributeFilter.getChecked() != null;
+            case NUMBER, RANGE -> attributeFilter.getRange() != null;
+            case STRING -> false;
+        };
+        if (!isValid) {
+            throw new WrongRequestBodyException(ATTRIBUTE_FILTER_ERROR_CODE, WRONG_ATTRIBUTE_FILTER_ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Exists subquery over attribute values of the product. Select and checkbox filters are jsonb containment
+     * served by the GIN index, ranges compare numbers extracted the same way as in the expression indexes.
+     */
+    private Predicate attributeValuePredicate(Root<ProductEntity> root, CriteriaQuery<?> query, CriteriaBuilder criteriaBuilder,
+                                              AttributeEntity attribute, AttributeFilterDto attributeFilter) {
+        Subquery<Integer> subquery = query.subquery(Integer.class);
+        Root<AttributeProductValuesEntity> attributeValue = subquery.from(AttributeProductValuesEntity.class);
+        Expression<Object> value = attributeValue.get("value");
+        Predicate valuePredicate = switch (attribute.getDefinition().getAttributeType()) {
+            case STRING_SELECT -> criteriaBuilder.or(attributeFilter.getValues().stream()
+                    .map(filterValue -> containsJson(criteriaBuilder, value, objectMapper.valueToTree(filterValue).toString()))
+                    .toArray(Predicate[]::new));
+            case NUMBER_SELECT -> criteriaBuilder.or(attributeFilter.getValues().stream()
+                    .map(filterValue -> containsJson(criteriaBuilder, value, toNumber(filterValue).toPlainString()))
+                    .toArray(Predicate[]::new));
+            case CHECKBOX -> containsJson(criteriaBuilder, value, attributeFilter.getChecked().toString());
+            case NUMBER -> numberBetween(criteriaBuilder, value, attributeFilter.getRange());
+            case RANGE -> criteriaBuilder.or(numberBetween(criteriaBuilder, value, attributeFilter.getRange()), rangeOverlaps(criteriaBuilder, value, attributeFilter.getRange()));
+            case STRING -> throw new WrongRequestBodyException(ATTRIBUTE_FILTER_ERROR_CODE, WRONG_ATTRIBUTE_FILTER_ERROR_MESSAGE);
+        };
+        subquery.select(criteriaBuilder.literal(1))
+                .where(
+                        criteriaBuilder.equal(attributeValue.get("product").get("id"), root.get("id")),
+                        criteriaBuilder.equal(attributeValue.get("attribute").get("id"), attribute.getId()),
+                        valuePredicate
+                );
+        return criteriaBuilder.exists(subquery);
+    }
+
+    private Predicate containsJson(CriteriaBuilder criteriaBuilder, Expression<Object> value, String json) {
+        return criteriaBuilder.isTrue(criteriaBuilder.function(JSONB_CONTAINS, Boolean.class, value, criteriaBuilder.literal(json)));
+    }
+
+    private Predicate numberBetween(CriteriaBuilder criteriaBuilder, Expression<Object> value, RangeDto range) {
+        Expression<BigDecimal> number = criteriaBuilder.function(JSONB_NUMBER, BigDecimal.class, value);
+        return criteriaBuilder.between(number, toBigDecimal(range.getMin()), toBigDecimal(range.getMax()));
+    }
+
+    private Predicate rangeOverlaps(CriteriaBuilder criteriaBuilder, Expression<Object> value, RangeDto range) {
+        Expression<BigDecimal> rangeMin = criteriaBuilder.function(JSONB_RANGE_MIN, BigDecimal.class, value);
+        Expression<BigDecimal> rangeMax = criteriaBuilder.function(JSONB_RANGE_MAX, BigDecimal.class, value);
+        return criteriaBuilder.and(
+                criteriaBuilder.lessThanOrEqualTo(rangeMin, toBigDecimal(range.getMax())),
+                criteriaBuilder.greaterThanOrEqualTo(rangeMax, toBigDecimal(range.getMin()))
+        );
+    }
+
+    private BigDecimal toNumber(String value) {
+        try {
+            return new BigDecimal(value.trim());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private BigDecimal toBigDecimal(Number number) {
+        return new BigDecimal(number.toString());
+    }
 }
@@ -0,0 +1,81 @@
+package com.deye.web.util;
+
+import com.deye.web.exception.FileStorageException;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Locale;
+
+import static com.deye.web.util.error.ErrorCodeUtils.MINIO_UPLOAD_FILE_ERROR_CODE;
+import static com.deye.web.util.error.ErrorMessageUtils.FILE_READ_ERROR_MESSAGE;
+
+/**
+ * Storage keys derived from the content: lower case hex SHA-256 of the bytes followed by the extension
+ * of the original name, e.g. 9f86d0...0a08.jpg. Content of a key never changes, so objects are served with
+ * {@link #IMMUTABLE_CACHE_CONTROL} and the same content uploaded many times is stored once
+ */
+@UtilityClass
+public class ContentKeyUtils {
+    public static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final int MAX_EXTENSION_LENGTH = 10;
+    private static final int HASH_LENGTH = 64;
+
+    /**
+     * @param file - uploaded file, its content is streamed through the digest without being read into memory
+     */
+    public static String toFileName(MultipartFile file) {
+        try (InputStream content = file.getInputStream()) {
+            return toFileName(sha256(content), file.getOriginalFilename());
+        } catch (IOException e) {
+            throw new FileStorageException(MINIO_UPLOAD_FILE_ERROR_CODE, FILE_READ_ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * @param hash         - hex SHA-256 of the content
+     * @param originalName - name the content was uploaded with, only its extension is kept, nullable
+     */
+    public static String toFileName(String hash, String originalName) {
+        String extension = StringUtils.defaultString(StringUtils.substringAfterLast(originalName, ".")).toLowerCase(Locale.ROOT);
+        if (extension.isEmpty() || extension.length() > MAX_EXTENSION_LENGTH || !StringUtils.isAlphanumeric(extension)) {
+            return hash;
+        }
+        return hash + "." + extension;
+    }
+
+    /**
+     * Reads the stream to the end, the stream isn't closed
+     *
+     * @return lower case hex SHA-256 of the stream content
+     */
+    public static String sha256(InputStream content) throws IOException {
+        MessageDigest digest = newSha256();
+        new DigestInputStream(content, digest).transferTo(OutputStream.nullOutputStream());
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * @param fileName - content addressed key
+     * @return base64 SHA-256 of the key content as S3 API expects it in x-amz-checksum-sha256 header
+     */
+    public static String toChecksum(String fileName) {
+        return Base64.getEncoder().encodeToString(HexFormat.of().parseHex(fileName, 0, HASH_LENGTH));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 isn't supported", e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.deye.web.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads RFC 4180 records one by one: quoted fields may contain separators, line breaks and doubled quotes
+ */
+public class CsvReader {
+    private final BufferedReader reader;
+
+    public CsvReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return fields of the next record, null when there are no more records
+     */
+    public List<String> readRecord() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean isQuoted = false;
+        boolean isRead = false;
+        int character;
+        while ((character = reader.read()) != -1) {
+            isRead = true;
+            if (isQuoted) {
+                if (character != '"') {
+                    field.append((char) character);
+                    continue;
+                }
+                reader.mark(1);
+                if (reader.read() == '"') {
+                    field.append('"');
+                } else {
+                    reader.reset();
+                    isQuoted = false;
+                }
+            } else if (character == '"') {
+                isQuoted = true;
+            } else if (character == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (character == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else if (character != '\r') {
+                field.append((char) character);
+            }
+        }
+        if (!isRead) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,76 @@
+package com.deye.web.util;
+
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Entity tags built from entity versions. Product view includes category name, so product tag includes category version too.
+ * Views with expiring image links are tagged with their view window too, so their tags change when the links are re-signed
+ */
+@UtilityClass
+public class ETagUtils {
+    private static final String VIEW_EPOCH_SEPARATOR = "-";
+
+    public static String productETag(long productVersion, long categoryVersion) {
+        return "\"" + productVersion + "." + categoryVersion + "\"";
+    }
+
+    public static String categoryETag(long categoryVersion) {
+        return "\"" + categoryVersion + "\"";
+    }
+
+    /**
+     * Tag of a list of categories, changes when any category is changed, added or removed
+     *
+     * @param categoriesVersions - versions of listed categories by their ids
+     */
+    public static String categoriesETag(Map<UUID, Long> categoriesVersions) {
+        String versions = categoriesVersions.entrySet().stream()
+                .map(category -> category.getKey() + ":" + category.getValue())
+                .sorted()
+                .collect(Collectors.joining(","));
+        return "\"" + DigestUtils.md5DigestAsHex(versions.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * @param eTag      - tag of the entity version the view is built from
+     * @param viewEpoch - window of the view image links, nullable when they don't expire
+     */
+    public static String withViewEpoch(String eTag, Long viewEpoch) {
+        if (viewEpoch == null) {
+            return eTag;
+        }
+        return StringUtils.removeEnd(eTag, "\"") + VIEW_EPOCH_SEPARATOR + viewEpoch + "\"";
+    }
+
+    /**
+     * If-Match uses strong comparison (RFC 9110, 13.1.1), so weak tags never match.
+     * View windows of the tags are ignored, they don't change the entity version
+     *
+     * @param ifMatch - If-Match header value: "*" or comma separated entity tags
+     * @param eTag    - current entity tag without a view window
+     */
+    public static boolean matches(String ifMatch, String eTag) {
+        if (StringUtils.isBlank(ifMatch) || ifMatch.trim().equals("*")) {
+            return true;
+        }
+        return Arrays.stream(ifMatch.split(","))
+                .map(String::trim)
+                .map(ETagUtils::withoutViewEpoch)
+                .anyMatch(eTag::equals);
+    }
+
+    private static String withoutViewEpoch(String eTag) {
+        if (!eTag.startsWith("\"") || !eTag.contains(VIEW_EPOCH_SEPARATOR)) {
+            return eTag;
+        }
+        return StringUtils.substringBeforeLast(eTag, VIEW_EPOCH_SEPARATOR) + "\"";
+    }
+}
@@ -18,4 +18,14 @@ public class ErrorCodeUtils {
     public static final Integer ATTRIBUTE_DELETION_ACTION_NOT_ALLOWED_ERROR_CODE = 12;
     public static final Integer CATEGORY_ATTRIBUTE_NOT_FOUND_ERROR_CODE = 13;
     public static final Integer JWT_TOKEN_ERROR_CODE = 14;
+    public static final Integer PAGINATION_CURSOR_ERROR_CODE = 15;
+    public static final Integer ATTRIBUTE_FILTER_ERROR_CODE = 16;
+    public static final Integer HISTOGRAM_BUCKETS_ERROR_CODE = 17;
+    public static final Integer PRECONDITION_FAILED_ERROR_CODE = 18;
+    public static final Integer PRODUCT_IMPORT_NOT_FOUND_ERROR_CODE = 19;
+    public static final Integer BULK_DELETE_ERROR_CODE = 20;
+    public static final Integer IMAGE_UPLOAD_NOT_FOUND_ERROR_CODE = 21;
+    public static final Integer IMAGE_UPLOAD_ERROR_CODE = 22;
+    public static final Integer IMAGE_URL_ERROR_CODE = 23;
+    public static final Integer SEARCH_FILTER_ERROR_CODE = 24;
 }
@@ -16,4 +16,29 @@ public class ErrorMessageUtils {
     public static final String ATTRIBUTE_DELETE_ACTION_NOT_ALLOWED_ERROR_MESSAGE = "You can't remove the attribute";
     public static final String REQUIRED_ATTRIBUTE_VALUE_NOT_PROVIDED_ERROR_MESSAGE = "Required attribute value is not provided";
     public static final String CATEGORY_ATTRIBUTE_NOT_FOUND_ERROR_MESSAGE = "Category attribute not found";
+    public static final String PAGINATION_CURSOR_ERROR_MESSAGE = "Pagination cursor is malformed or doesn't match requested sort";
+    public static final String RELEVANCE_CURSOR_ERROR_MESSAGE = "Relevance sort is not supported by cursor pagination";
+    public static final String SEARCH_FILTER_ERROR_MESSAGE = "Search supports only categories and price range filters";
+    public static final String ATTRIBUTE_NOT_FILTERABLE_ERROR_MESSAGE = "Attribute is not filterable";
+    public static final String WRONG_ATTRIBUTE_FILTER_ERROR_MESSAGE = "Attribute filter doesn't match attribute type";
+    public static final String HISTOGRAM_BUCKETS_ERROR_MESSAGE = "Amount of histogram buckets must be between 1 and 100";
+    public static final String PRECONDITION_FAILED_ERROR_MESSAGE = "Entity was modified by someone else, reload it and try again";
+    public static final String PRODUCT_IMPORT_NOT_FOUND_ERROR_MESSAGE = "Products import not found";
+    public static final String PRODUCT_IMPORT_ROW_PARSE_ERROR_MESSAGE = "Row can't be parsed";
+    public static final String PRODUCT_NAME_ALREADY_EXISTS_ERROR_MESSAGE = "Product with the same name already exists";
+    public static final String PRODUCT_IMPORT_BATCH_ERROR_MESSAGE = "Batch of products can't be saved";
+    public static final String PRODUCT_IMPORT_IMAGE_NOT_FOUND_ERROR_MESSAGE = "Image isn't uploaded to the storage";
+    public static final String BULK_DELETE_ERROR_MESSAGE = "Products ids or filter must be provided to delete products";
+    public static final String FILE_DELETING_ERROR_MESSAGE = "The same image is being deleted from the storage, retry in a few seconds";
+    public static final String FILE_STAGING_ERROR_MESSAGE = "Error during staging file for upload";
+    public static final String FILE_READ_ERROR_MESSAGE = "Error during reading uploaded file";
+    public static final String IMAGE_UPLOAD_NOT_FOUND_ERROR_MESSAGE = "Image upload not found";
+    public static final String IMAGE_UPLOAD_TYPE_ERROR_MESSAGE = "Only JPEG and PNG images can be uploaded";
+    public static final String IMAGE_UPLOAD_SIZE_ERROR_MESSAGE = "Image size must be positive and not greater than the max upload size";
+    public static final String IMAGE_UPLOAD_OFFSET_ERROR_MESSAGE = "Upload offset doesn't match amount of uploaded bytes";
+    public static final String IMAGE_UPLOAD_IN_PROGRESS_ERROR_MESSAGE = "Upload is continued by another request, retry when it's finished";
+    public static final String IMAGE_UPLOAD_HASH_ERROR_MESSAGE = "Image hash must be lower case hex SHA-256 of the image content";
+    public static final String IMAGE_UPLOAD_CHECKSUM_ERROR_MESSAGE = "Uploaded image content doesn't match its hash";
+    public static final String PRESIGNED_IMAGE_NOT_FOUND_ERROR_MESSAGE = "Image isn't uploaded to the storage";
+    public static final String IMAGE_URL_ERROR_MESSAGE = "Error during signing image URL";
 }
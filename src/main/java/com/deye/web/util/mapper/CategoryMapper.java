@@ -2,7 +2,6 @@ package com.deye.web.util.mapper;
 
 import com.deye.web.controller.view.CategoryView;
 import com.deye.web.entity.CategoryEntity;
-import com.deye.web.service.impl.ConfigService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
@@ -10,14 +9,15 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class CategoryMapper {
     private final AttributeMapper attributeMapper;
-    private final ConfigService configService;
+    private final ImageMapper imageMapper;
 
     public CategoryView toCategoryView(CategoryEntity category) {
         return CategoryView.builder()
                 .id(category.getId())
                 .name(category.getName())
                 .description(category.getDescription())
-                .image(configService.getMinioBucketName() + "/" + category.getImage().getName())
+                .image(imageMapper.toImageUrl(category.getImage().getName()))
+                .imageDerivatives(imageMapper.toImageView(category.getImage()))
                 .attributes(category.getCategoryAttributes().stream()
                         .map(categoryAttributeEntity -> attributeMapper.toCategoryAttributeView(categoryAttributeEntity.getAttribute()))
                         .toList())
@@ -0,0 +1,127 @@
+package com.deye.web.util.mapper;
+
+import com.deye.web.cache.ImageUrlCache;
+import com.deye.web.controller.view.ImageView;
+import com.deye.web.entity.FileEntity;
+import com.deye.web.enumerated.ImageDerivativeEnum;
+import com.deye.web.exception.FileStorageException;
+import com.deye.web.service.impl.ConfigService;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import io.minio.http.Method;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+import static com.deye.web.util.error.ErrorCodeUtils.IMAGE_URL_ERROR_CODE;
+import static com.deye.web.util.error.ErrorMessageUtils.IMAGE_URL_ERROR_MESSAGE;
+
+/**
+ * Image links of views. The bucket is private, so links are presigned GET URLs. Time is split into windows of
+ * minio.image-url.window, a URL is signed once per file per window and expires {@value URL_VALIDITY_WINDOWS} windows
+ * after it was signed, so a URL taken at any moment stays valid for at least {@value MIN_REMAINING_WINDOWS} windows
+ * and views serialized with it can be cached for that long. Windows of files are shifted by their name hashes,
+ * so URLs aren't signed all at once when a window ends. Views are versioned by unshifted windows instead: a view
+ * built in a window links URLs valid beyond its end, so it's served and revalidated until the window ends
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageMapper {
+    private static final int URL_VALIDITY_WINDOWS = 3;
+    private static final int MIN_REMAINING_WINDOWS = URL_VALIDITY_WINDOWS - 1;
+    /**
+     * Max expiry of a presigned URL accepted by S3 API
+     */
+    private static final Duration MAX_URL_VALIDITY = Duration.ofDays(7);
+    private final ConfigService configService;
+    private final MinioClient minio;
+    private final ImageUrlCache imageUrlCache;
+
+    public String toImageUrl(String fileName) {
+        if (!configService.isMinioImageUrlPresigned()) {
+            return configService.getMinioBucketName() + "/" + fileName;
+        }
+        long windowMillis = getUrlWindow().toMillis();
+        long window = Math.floorDiv(System.currentTimeMillis() + Math.floorMod(fileName.hashCode(), windowMillis), windowMillis);
+        String url = imageUrlCache.get(fileName, window);
+        if (url == null) {
+            url = presign(fileName, windowMillis * URL_VALIDITY_WINDOWS);
+            imageUrlCache.put(fileName, window, url);
+        }
+        return url;
+    }
+
+    /**
+     * Derivatives which aren't generated yet are linked to the original, so views never link missing objects
+     */
+    public ImageView toImageView(FileEntity image) {
+        String original = toImageUrl(image.getName());
+        if (!Boolean.TRUE.equals(image.getDerivativesGenerated())) {
+            return ImageView.builder()
+                    .original(original)
+                    .thumbnail(original)
+                    .card(original)
+                    .full(original)
+                    .build();
+        }
+        return ImageView.builder()
+                .original(original)
+                .thumbnail(toImageUrl(ImageDerivativeEnum.THUMBNAIL.toFileName(image.getName())))
+                .card(toImageUrl(ImageDerivativeEnum.CARD.toFileName(image.getName())))
+                .full(toImageUrl(ImageDerivativeEnum.FULL.toFileName(image.getName())))
+                .build();
+    }
+
+    /**
+     * @return window of views built now, it's a part of their ETags, null when links don't expire
+     */
+    public Long getViewEpoch() {
+        if (!configService.isMinioImageUrlPresigned()) {
+            return null;
+        }
+        return Math.floorDiv(System.currentTimeMillis(), getUrlWindow().toMillis());
+    }
+
+    /**
+     * @return how long views built now stay fresh: until the end of their window, null when links don't expire
+     */
+    public Duration getViewMaxAge() {
+        if (!configService.isMinioImageUrlPresigned()) {
+            return null;
+        }
+        long windowMillis = getUrlWindow().toMillis();
+        return Duration.ofMillis(windowMillis - Math.floorMod(System.currentTimeMillis(), windowMillis));
+    }
+
+    /**
+     * @return Cache-Control of views with image links, empty when links don't expire
+     */
+    public CacheControl getViewCacheControl() {
+        Duration maxAge = getViewMaxAge();
+        return maxAge == null ? CacheControl.empty() : CacheControl.maxAge(maxAge);
+    }
+
+    private Duration getUrlWindow() {
+        Duration window = configService.getMinioImageUrlWindow();
+        Duration maxWindow = MAX_URL_VALIDITY.dividedBy(URL_VALIDITY_WINDOWS);
+        return window.compareTo(maxWindow) > 0 ? maxWindow : window;
+    }
+
+    private String presign(String fileName, long expiryMillis) {
+        try {
+            return minio.getPresignedObjectUrl(GetPresignedObjectUrlArgs.builder()
+                    .method(Method.GET)
+                    .bucket(configService.getMinioBucketName())
+                    .object(fileName)
+                    .expiry((int) (expiryMillis / 1000))
+                    .build());
+        } catch (Exception e) {
+            log.error("Error occurred while signing URL of image: {}", fileName, e);
+            throw new FileStorageException(IMAGE_URL_ERROR_CODE, IMAGE_URL_ERROR_MESSAGE);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.deye.web.util.mapper;
+
+import com.deye.web.enumerated.ProductSortEnum;
+import com.deye.web.exception.WrongRequestBodyException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+import static com.deye.web.util.error.ErrorCodeUtils.PAGINATION_CURSOR_ERROR_CODE;
+import static com.deye.web.util.error.ErrorMessageUtils.PAGINATION_CURSOR_ERROR_MESSAGE;
+
+/**
+ * Maps position of the last returned product to the opaque token and back.
+ * Token holds sort, direction, product id and its sort key: "sort|direction|id|key" in url-safe base64.
+ */
+@Slf4j
+@Component
+public class ProductCursorMapper {
+    private static final String SEPARATOR = "|";
+
+    public String toCursor(ProductSortEnum sort, Sort.Direction direction, UUID id, Object sortKey) {
+        String cursor = String.join(SEPARATOR, sort.name(), direction.name(), id.toString(), String.valueOf(sortKey));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public ProductCursor fromCursor(String cursor, ProductSortEnum sort, Sort.Direction direction) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\" + SEPARATOR, 4);
+            if (parts.length == 4 && sort.name().equals(parts[0]) && direction.name().equals(parts[1])) {
+                return new ProductCursor(UUID.fromString(parts[2]), sort.parseSortKey(parts[3]));
+            }
+        } catch (Exception e) {
+            log.warn("Unable to decode pagination cursor: {}", cursor, e);
+        }
+        throw new WrongRequestBodyException(PAGINATION_CURSOR_ERROR_CODE, PAGINATION_CURSOR_ERROR_MESSAGE);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ProductCursor {
+        private UUID id;
+        private Object sortKey;
+    }
+}
@@ -2,25 +2,28 @@ package com.deye.web.util.mapper;
 
 import com.deye.web.controller.view.AttributeView;
 import com.deye.web.controller.view.ProductView;
+import com.deye.web.entity.FileEntity;
 import com.deye.web.entity.ProductEntity;
-import com.deye.web.service.impl.ConfigService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
 public class ProductMapper {
-    private final ConfigService configService;
     private final AttributeMapper attributeMapper;
+    private final ImageMapper imageMapper;
 
     public ProductView toProductView(ProductEntity product) {
         List<AttributeView> attributes = product.getAttributesValuesForProduct().stream()
                 .map(attributeMapper::toAttributeView)
                 .toList();
-        String bucketUrl = configService.getMinioBucketName() + "/";
+        List<FileEntity> images = product.getImages().stream()
+                .sorted(Comparator.comparing(FileEntity::getName))
+                .toList();
         return ProductView.builder()
                 .id(product.getId())
                 .name(product.getName())
@@ -29,7 +32,8 @@ public class ProductMapper {
                 .stockQuantity(product.getStockQuantity())
                 .categoryId(product.getCategory().getId())
                 .categoryName(product.getCategory().getName())
-                .images(product.getImagesNames().stream().map(image -> bucketUrl + image).collect(Collectors.toSet()))
+                .images(images.stream().map(image -> imageMapper.toImageUrl(image.getName())).collect(Collectors.toSet()))
+                .imagesDerivatives(images.stream().map(imageMapper::toImageView).toList())
                 .attributes(attributes)
                 .build();
     }
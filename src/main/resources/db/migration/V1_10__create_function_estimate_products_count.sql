@@ -0,0 +1,18 @@
+-- Planner estimate of products matching the listing filter, read from EXPLAIN instead of running count(*).
+-- Values are inlined as literals, so the planner can use column statistics for them.
+CREATE OR REPLACE FUNCTION estimate_products_count(name_pattern text, categories_ids text, min_price float, max_price float)
+    RETURNS bigint
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    plan json;
+BEGIN
+    EXECUTE format('EXPLAIN (FORMAT JSON) SELECT 1 FROM product p WHERE true%s%s%s',
+                   CASE WHEN name_pattern IS NOT NULL THEN format(' AND lower(p.name) LIKE %L', name_pattern) ELSE '' END,
+                   CASE WHEN categories_ids IS NOT NULL THEN format(' AND p.category_id = ANY (string_to_array(%L, '','')::uuid[])', categories_ids) ELSE '' END,
+                   CASE WHEN min_price IS NOT NULL THEN format(' AND p.price BETWEEN %L AND %L', min_price, max_price) ELSE '' END)
+        INTO plan;
+    RETURN (plan -> 0 -> 'Plan' ->> 'Plan Rows')::bigint;
+END;
+$$;
@@ -0,0 +1,13 @@
+-- Equality, IN and checkbox filters are jsonb containment: value @> '"x"'
+CREATE INDEX idx_attribute_product_value_value ON attribute_product_value USING GIN (value jsonb_path_ops);
+
+-- Correlation of the attribute filter subquery with product
+CREATE INDEX idx_attribute_product_value_product_attribute ON attribute_product_value (product_id, attribute_id);
+
+-- Numeric range filters, expressions must match JsonbFunctionContributor
+CREATE INDEX idx_attribute_product_value_number ON attribute_product_value
+    (attribute_id, (CASE WHEN jsonb_typeof(value) = 'number' THEN CAST(CAST(value AS text) AS numeric) END));
+CREATE INDEX idx_attribute_product_value_range_min ON attribute_product_value
+    (attribute_id, (CASE WHEN jsonb_typeof(value) = 'object' THEN CAST(value ->> 'min' AS numeric) END));
+CREATE INDEX idx_attribute_product_value_range_max ON attribute_product_value
+    (attribute_id, (CASE WHEN jsonb_typeof(value) = 'object' THEN CAST(value ->> 'max' AS numeric) END));
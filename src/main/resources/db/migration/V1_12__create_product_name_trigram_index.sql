@@ -0,0 +1,4 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Serves lower(name) LIKE '%x%' and similarity(lower(name), 'x') from ProductFilterSpecification
+CREATE INDEX idx_product_name_trgm ON product USING GIN (lower(name) gin_trgm_ops);
@@ -0,0 +1,70 @@
+-- Full text search document of a product: name (A), description (B) and string attribute values (C).
+-- 'simple' configuration keeps words as they are, catalog texts are not in a single language.
+ALTER TABLE product
+    ADD COLUMN search_vector tsvector;
+
+CREATE OR REPLACE FUNCTION product_attributes_search_text(p_product_id uuid)
+    RETURNS text
+    LANGUAGE sql
+    STABLE
+AS
+$$
+SELECT coalesce(string_agg(s.value #>> '{}', ' '), '')
+FROM attribute_product_value apv,
+     LATERAL jsonb_path_query(apv.value, 'lax $.** ? (@.type() == "string")') AS s(value)
+WHERE apv.product_id = p_product_id;
+$$;
+
+CREATE OR REPLACE FUNCTION product_search_vector(p_name text, p_description text, p_attributes text)
+    RETURNS tsvector
+    LANGUAGE sql
+    IMMUTABLE
+AS
+$$
+SELECT setweight(to_tsvector('simple', coalesce(p_name, '')), 'A') ||
+       setweight(to_tsvector('simple', coalesce(p_description, '')), 'B') ||
+       setweight(to_tsvector('simple', coalesce(p_attributes, '')), 'C');
+$$;
+
+CREATE OR REPLACE FUNCTION product_search_vector_trigger()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    NEW.search_vector := product_search_vector(NEW.name, NEW.description, product_attributes_search_text(NEW.id));
+    RETURN NEW;
+END;
+$$;
+
+CREATE TRIGGER trg_product_search_vector
+    BEFORE INSERT OR UPDATE OF name, description
+    ON product
+    FOR EACH ROW
+EXECUTE FUNCTION product_search_vector_trigger();
+
+CREATE OR REPLACE FUNCTION attribute_product_value_search_vector_trigger()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    changed_product_id uuid := CASE WHEN TG_OP = 'DELETE' THEN OLD.product_id ELSE NEW.product_id END;
+BEGIN
+    UPDATE product p
+    SET search_vector = product_search_vector(p.name, p.description, product_attributes_search_text(p.id))
+    WHERE p.id = changed_product_id;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER trg_attribute_product_value_search_vector
+    AFTER INSERT OR UPDATE OF value OR DELETE
+    ON attribute_product_value
+    FOR EACH ROW
+EXECUTE FUNCTION attribute_product_value_search_vector_trigger();
+
+UPDATE product p
+SET search_vector = product_search_vector(p.name, p.description, product_attributes_search_text(p.id));
+
+CREATE INDEX idx_product_search_vector ON product USING GIN (search_vector);
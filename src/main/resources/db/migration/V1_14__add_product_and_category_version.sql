@@ -0,0 +1,6 @@
+-- Optimistic locking versions, also used as ETags of catalog reads
+ALTER TABLE product
+    ADD COLUMN version bigint not null default 0;
+
+ALTER TABLE category
+    ADD COLUMN version bigint not null default 0;
@@ -0,0 +1,26 @@
+-- File storage operations recorded in the same transaction as catalog changes and carried out by the relay after commit.
+-- Operations of the same file are applied in id order, bytes of uploads are staged until the upload succeeds
+CREATE TABLE file_outbox
+(
+    id              bigserial    not null,
+    operation       varchar(16)  not null,
+    file_name       varchar(255) not null,
+    content_type    varchar(255),
+    status          varchar(16)  not null default 'PENDING',
+    attempts        int          not null default 0,
+    next_attempt_at timestamp    not null default now(),
+    last_error      text,
+    created_at      timestamp    not null default now(),
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_file_outbox_pending_next_attempt_at ON file_outbox (next_attempt_at, id) WHERE status = 'PENDING';
+CREATE INDEX idx_file_outbox_pending_file_name ON file_outbox (file_name, id) WHERE status = 'PENDING';
+
+CREATE TABLE file_outbox_content
+(
+    outbox_id bigint not null,
+    content   bytea  not null,
+    PRIMARY KEY (outbox_id),
+    FOREIGN KEY (outbox_id) REFERENCES file_outbox (id) ON DELETE CASCADE
+);
@@ -0,0 +1,17 @@
+-- Broker messages recorded in the same transaction as catalog changes and published by the relay after commit
+CREATE TABLE message_outbox
+(
+    id              bigserial    not null,
+    exchange        varchar(255) not null,
+    routing_key     varchar(255) not null,
+    event_type      varchar(64)  not null,
+    payload         text         not null,
+    status          varchar(16)  not null default 'PENDING',
+    attempts        int          not null default 0,
+    next_attempt_at timestamp    not null default now(),
+    last_error      text,
+    created_at      timestamp    not null default now(),
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_message_outbox_pending_next_attempt_at ON message_outbox (next_attempt_at, id) WHERE status = 'PENDING';
@@ -0,0 +1,16 @@
+-- Resumable product image uploads streamed to MinIO multipart uploads, a row is deleted when the image is attached.
+-- Product id is not a foreign key: uploads of deleted products are aborted when they are finished or become stale
+CREATE TABLE file_upload
+(
+    id           uuid         not null,
+    upload_id    varchar(255) not null,
+    product_id   uuid         not null,
+    file_name    varchar(255) not null unique,
+    content_type varchar(255) not null,
+    size         bigint       not null,
+    part_size    int          not null,
+    created_at   timestamp    not null default now(),
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_file_upload_created_at ON file_upload (created_at);
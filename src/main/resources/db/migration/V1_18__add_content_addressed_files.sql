@@ -0,0 +1,66 @@
+-- Images are stored under keys derived from SHA-256 of their content: <hash>.<extension>.
+-- The same content used by many products or categories is stored once, so image names are no longer unique
+ALTER TABLE file
+    DROP CONSTRAINT file_name_key;
+
+ALTER TABLE file
+    ADD COLUMN hash varchar(64) GENERATED ALWAYS AS (
+        CASE WHEN name ~ '^[0-9a-f]{64}(\.|$)' THEN substring(name from 1 for 64) END) STORED;
+
+CREATE INDEX idx_file_name ON file (name);
+
+-- Stored object of every referenced file name. Reference count is the amount of FILE rows with the name, it's kept
+-- by the trigger below, so rows deleted by foreign keys cascade are counted too. Object is deleted from the storage
+-- only when no row references it any more
+CREATE TABLE file_object
+(
+    name       varchar(255) not null,
+    hash       varchar(64) GENERATED ALWAYS AS (
+        CASE WHEN name ~ '^[0-9a-f]{64}(\.|$)' THEN substring(name from 1 for 64) END) STORED,
+    ref_count  int          not null default 0,
+    uploaded   boolean      not null default false,
+    created_at timestamp    not null default now(),
+    PRIMARY KEY (name)
+);
+
+INSERT INTO file_object (name, ref_count, uploaded)
+SELECT name, count(*), true
+FROM file
+GROUP BY name;
+
+CREATE OR REPLACE FUNCTION file_object_ref_count()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    IF TG_OP IN ('DELETE', 'UPDATE') THEN
+        UPDATE file_object SET ref_count = ref_count - 1 WHERE name = OLD.name;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO file_object (name, ref_count)
+        VALUES (NEW.name, 1)
+        ON CONFLICT (name) DO UPDATE SET ref_count = file_object.ref_count + 1;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER file_object_ref_count
+    AFTER INSERT OR DELETE OR UPDATE OF name
+    ON file
+    FOR EACH ROW
+EXECUTE FUNCTION file_object_ref_count();
+
+-- Resumable uploads are written to a temporary object and copied to the content key when completed
+ALTER TABLE file_upload
+    DROP CONSTRAINT file_upload_file_name_key;
+
+ALTER TABLE file_upload
+    ADD COLUMN object_name varchar(255);
+
+UPDATE file_upload
+SET object_name = file_name;
+
+ALTER TABLE file_upload
+    ALTER COLUMN object_name SET NOT NULL;
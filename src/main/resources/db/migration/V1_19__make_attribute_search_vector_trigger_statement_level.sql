@@ -0,0 +1,41 @@
+-- Search vectors of products are refreshed once per statement on attribute_product_value instead of once per row,
+-- so saving or importing many attributes values of a product rewrites the product row once.
+-- Transition tables can't be declared for triggers of several events, so every event has its own trigger.
+DROP TRIGGER trg_attribute_product_value_search_vector ON attribute_product_value;
+
+DROP FUNCTION attribute_product_value_search_vector_trigger();
+
+CREATE OR REPLACE FUNCTION attribute_product_value_search_vector_trigger()
+    RETURNS trigger
+    LANGUAGE plpgsql
+AS
+$$
+BEGIN
+    UPDATE product p
+    SET search_vector = product_search_vector(p.name, p.description, product_attributes_search_text(p.id))
+    WHERE p.id IN (SELECT DISTINCT changed_values.product_id FROM changed_values);
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER trg_attribute_product_value_search_vector_insert
+    AFTER INSERT
+    ON attribute_product_value
+    REFERENCING NEW TABLE AS changed_values
+    FOR EACH STATEMENT
+EXECUTE FUNCTION attribute_product_value_search_vector_trigger();
+
+-- Values are never moved to another product, so new rows name all changed products
+CREATE TRIGGER trg_attribute_product_value_search_vector_update
+    AFTER UPDATE
+    ON attribute_product_value
+    REFERENCING NEW TABLE AS changed_values
+    FOR EACH STATEMENT
+EXECUTE FUNCTION attribute_product_value_search_vector_trigger();
+
+CREATE TRIGGER trg_attribute_product_value_search_vector_delete
+    AFTER DELETE
+    ON attribute_product_value
+    REFERENCING OLD TABLE AS changed_values
+    FOR EACH STATEMENT
+EXECUTE FUNCTION attribute_product_value_search_vector_trigger();
@@ -0,0 +1,7 @@
+-- Products are sorted by names in code point order (ucs_basic collation), the same order the catalog index uses,
+-- so pages don't change when the listing switches between the index and the database
+DROP INDEX idx_product_name_id;
+DROP INDEX idx_product_category_name_id;
+
+CREATE INDEX idx_product_name_id ON product (name COLLATE ucs_basic, id);
+CREATE INDEX idx_product_category_name_id ON product (category_id, name COLLATE ucs_basic, id);
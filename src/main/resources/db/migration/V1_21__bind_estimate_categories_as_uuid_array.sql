@@ -0,0 +1,19 @@
+-- Categories are bound as an uuid array instead of a comma separated string, an empty array means any category.
+DROP FUNCTION IF EXISTS estimate_products_count(text, text, float, float);
+
+CREATE OR REPLACE FUNCTION estimate_products_count(name_pattern text, categories_ids uuid[], min_price float, max_price float)
+    RETURNS bigint
+    LANGUAGE plpgsql
+AS
+$$
+DECLARE
+    plan json;
+BEGIN
+    EXECUTE format('EXPLAIN (FORMAT JSON) SELECT 1 FROM product p WHERE true%s%s%s',
+                   CASE WHEN name_pattern IS NOT NULL THEN format(' AND lower(p.name) LIKE %L', name_pattern) ELSE '' END,
+                   CASE WHEN cardinality(categories_ids) > 0 THEN format(' AND p.category_id = ANY (%L::uuid[])', categories_ids) ELSE '' END,
+                   CASE WHEN min_price IS NOT NULL THEN format(' AND p.price BETWEEN %L AND %L', min_price, max_price) ELSE '' END)
+        INTO plan;
+    RETURN (plan -> 0 -> 'Plan' ->> 'Plan Rows')::bigint;
+END;
+$$;
@@ -0,0 +1,7 @@
+-- Append request holding a resumable upload: only one request appends parts of an upload at a time,
+-- a lease which isn't extended by its request expires, so uploads of stopped requests can be continued
+ALTER TABLE file_upload
+    ADD COLUMN append_lease_id uuid;
+
+ALTER TABLE file_upload
+    ADD COLUMN append_lease_until timestamp;
@@ -0,0 +1,4 @@
+-- Derivatives of a stored image: null while they aren't generated yet, GENERATED when all of them are stored,
+-- UNSUPPORTED when the original can't be decoded. Views link derivatives only when they are GENERATED
+ALTER TABLE file_object
+    ADD COLUMN derivatives_status varchar(32);
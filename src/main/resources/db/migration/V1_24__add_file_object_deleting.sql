@@ -0,0 +1,4 @@
+-- Object which is being deleted from the storage by the file outbox, its row isn't locked during the storage requests.
+-- Content of such object isn't reused and uploads of the same content wait until the delete is finished
+ALTER TABLE file_object
+    ADD COLUMN deleting boolean not null default false;
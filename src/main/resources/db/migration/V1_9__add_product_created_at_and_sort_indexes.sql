@@ -0,0 +1,12 @@
+ALTER TABLE product
+    ADD COLUMN created_at timestamp not null default now();
+
+CREATE INDEX idx_product_name_id ON product (name, id);
+CREATE INDEX idx_product_price_id ON product (price, id);
+CREATE INDEX idx_product_stock_quantity_id ON product (stock_quantity, id);
+CREATE INDEX idx_product_created_at_id ON product (created_at, id);
+
+CREATE INDEX idx_product_category_name_id ON product (category_id, name, id);
+CREATE INDEX idx_product_category_price_id ON product (category_id, price, id);
+CREATE INDEX idx_product_category_stock_quantity_id ON product (category_id, stock_quantity, id);
+CREATE INDEX idx_product_category_created_at_id ON product (category_id, created_at, id);
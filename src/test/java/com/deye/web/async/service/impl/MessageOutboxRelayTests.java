@@ -0,0 +1,150 @@
+package com.deye.web.async.service.impl;
+
+import com.deye.web.async.MessageBroker;
+import com.deye.web.async.message.OutgoingMessage;
+import com.deye.web.async.util.RabbitMqUtil;
+import com.deye.web.async.util.mapper.RabbitMqMessageMapper;
+import com.deye.web.configuration.GsonConfiguration;
+import com.deye.web.entity.MessageOutboxEntity;
+import com.deye.web.enumerated.OutboxStatusEnum;
+import com.deye.web.repository.MessageOutboxRepository;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MessageOutboxRelayTests {
+
+	private final RabbitMqMessageMapper rabbitMqMessageMapper = new RabbitMqMessageMapper(new GsonConfiguration().gson());
+
+	private MessageOutboxRepository messageOutboxRepository;
+	private InMemoryMessageBroker messageBroker;
+	private MessageOutboxRelay messageOutboxRelay;
+
+	@BeforeEach
+	void createRelay() {
+		messageOutboxRepository = mock(MessageOutboxRepository.class);
+		messageBroker = new InMemoryMessageBroker();
+		messageOutboxRelay = new MessageOutboxRelay(messageOutboxRepository, messageBroker, rabbitMqMessageMapper, mock(PlatformTransactionManager.class));
+	}
+
+	@Test
+	void coalescesDeletedProductsIntoOneConfirmedMessage() {
+		UUID first = UUID.randomUUID();
+		UUID second = UUID.randomUUID();
+		UUID third = UUID.randomUUID();
+		List<MessageOutboxEntity> messages = List.of(
+				deletedProducts(1L, Set.of(first)),
+				deletedProducts(2L, Set.of(second, third)),
+				deletedProducts(3L, Set.of(first)));
+		when(messageOutboxRepository.findAllDueForUpdate(any(), anyInt())).thenReturn(messages);
+
+		messageOutboxRelay.relay();
+
+		assertEquals(1, messageBroker.published.size());
+		OutgoingMessage published = messageBroker.published.get(0);
+		assertEquals(RabbitMqUtil.EXCHANGE_NAME, published.getExchange());
+		assertEquals(RabbitMqUtil.PRODUCT_CONSUMER_ROUTING_KEY, published.getRoutingKey());
+		JsonObject body = JsonParser.parseString(published.getBody()).getAsJsonObject();
+		assertEquals(RabbitMqUtil.PRODUCTS_DELETED_EVENT, body.get("event_type").getAsString());
+		Set<String> publishedIds = new HashSet<>();
+		body.getAsJsonObject("data").getAsJsonArray("ids").forEach(id -> publishedIds.add(id.getAsString()));
+		assertEquals(Set.of(first.toString(), second.toString(), third.toString()), publishedIds);
+		verify(messageOutboxRepository).deleteAllByIdInBatch(List.of(1L, 2L, 3L));
+		assertEquals(3, messageOutboxRelay.getStats().getProcessed());
+		assertEquals(2, messageOutboxRelay.getStats().getSuperseded());
+	}
+
+	@Test
+	void reschedulesBatchWhenBrokerDoesNotConfirm() {
+		MessageOutboxEntity message = deletedProducts(1L, Set.of(UUID.randomUUID()));
+		when(messageOutboxRepository.findAllDueForUpdate(any(), anyInt())).thenReturn(List.of(message));
+		messageBroker.isConfirming = false;
+
+		messageOutboxRelay.relay();
+
+		verify(messageOutboxRepository, never()).deleteAllByIdInBatch(any());
+		verify(messageOutboxRepository).saveAll(List.of(message));
+		assertEquals(1, message.getAttempts());
+		assertEquals(OutboxStatusEnum.PENDING, message.getStatus());
+		assertTrue(message.getNextAttemptAt().isAfter(LocalDateTime.now()));
+		assertEquals(1, messageOutboxRelay.getStats().getRetried());
+	}
+
+	@Test
+	void failsMessageOutOfAttempts() {
+		MessageOutboxEntity message = deletedProducts(1L, Set.of(UUID.randomUUID()));
+		message.setAttempts(9);
+		when(messageOutboxRepository.findAllDueForUpdate(any(), anyInt())).thenReturn(List.of(message));
+		messageBroker.isConfirming = false;
+
+		messageOutboxRelay.relay();
+
+		assertEquals(OutboxStatusEnum.FAILED, message.getStatus());
+		assertEquals(0, messageOutboxRelay.getStats().getRetried());
+	}
+
+	@Test
+	void reschedulesUnreadablePayloadAndPublishesTheRest() {
+		UUID productId = UUID.randomUUID();
+		MessageOutboxEntity broken = deletedProducts(1L, Set.of(UUID.randomUUID()));
+		broken.setPayload("{not a payload");
+		MessageOutboxEntity message = deletedProducts(2L, Set.of(productId));
+		when(messageOutboxRepository.findAllDueForUpdate(any(), anyInt())).thenReturn(List.of(broken, message));
+
+		messageOutboxRelay.relay();
+
+		assertEquals(1, messageBroker.published.size());
+		verify(messageOutboxRepository).deleteAllByIdInBatch(List.of(2L));
+		verify(messageOutboxRepository).saveAll(List.of(broken));
+		assertEquals(OutboxStatusEnum.PENDING, broken.getStatus());
+		assertTrue(broken.getNextAttemptAt().isAfter(LocalDateTime.now()));
+		assertEquals(1, messageOutboxRelay.getStats().getProcessed());
+		assertEquals(1, messageOutboxRelay.getStats().getRetried());
+	}
+
+	private MessageOutboxEntity deletedProducts(Long id, Set<UUID> productsIds) {
+		MessageOutboxEntity message = new MessageOutboxEntity();
+		message.setId(id);
+		message.setExchange(RabbitMqUtil.EXCHANGE_NAME);
+		message.setRoutingKey(RabbitMqUtil.PRODUCT_CONSUMER_ROUTING_KEY);
+		message.setEventType(RabbitMqUtil.PRODUCTS_DELETED_EVENT);
+		message.setPayload(rabbitMqMessageMapper.toProductsIdsPayload(productsIds));
+		message.setNextAttemptAt(LocalDateTime.now());
+		return message;
+	}
+
+	/**
+	 * Broker stand-in: keeps confirmed messages in memory, or rejects the whole batch like a failed confirm wait
+	 */
+	private static class InMemoryMessageBroker implements MessageBroker {
+		private final List<OutgoingMessage> published = new ArrayList<>();
+		private boolean isConfirming = true;
+
+		@Override
+		public void publishAll(List<OutgoingMessage> messages) {
+			if (!isConfirming) {
+				throw new AmqpException("Messages are not confirmed");
+			}
+			published.addAll(messages);
+		}
+	}
+}
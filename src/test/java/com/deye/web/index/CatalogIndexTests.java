@@ -0,0 +1,143 @@
+package com.deye.web.index;
+
+import com.deye.web.controller.dto.AttributeFilterDto;
+import com.deye.web.controller.dto.ProductFilterDto;
+import com.deye.web.controller.dto.RangeDto;
+import com.deye.web.enumerated.AttributeTypeEnum;
+import com.deye.web.enumerated.ProductSortEnum;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CatalogIndexTests {
+
+	private static final UUID CATEGORY_ID = UUID.randomUUID();
+	private static final UUID COLOR_ID = UUID.randomUUID();
+	private static final UUID WEIGHT_ID = UUID.randomUUID();
+
+	private CatalogIndex catalogIndex;
+	private List<UUID> productsIds;
+
+	@BeforeEach
+	void createIndex() {
+		catalogIndex = new CatalogIndex();
+		productsIds = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+		for (int i = 0; i < productsIds.size(); i++) {
+			catalogIndex.upsert(new ProductIndexDocument(productsIds.get(i), 0, CATEGORY_ID, "product-" + i, 10f * (i + 1), i,
+					LocalDateTime.now(), Map.of(COLOR_ID, i % 2 == 0 ? "red" : "blue", WEIGHT_ID, i)));
+		}
+	}
+
+	@Test
+	void filtersBySelectAndNumericAttributes() {
+		ProductFilterDto filter = new ProductFilterDto();
+		filter.setAttributes(List.of(attributeFilter(COLOR_ID, List.of("red"), null), attributeFilter(WEIGHT_ID, null, range(1, 3))));
+
+		CatalogIndex.IndexPage page = catalogIndex.findPage(filter,
+				Map.of(COLOR_ID, AttributeTypeEnum.STRING_SELECT, WEIGHT_ID, AttributeTypeEnum.NUMBER),
+				ProductSortEnum.PRICE.toSort(Sort.Direction.DESC), 0, 10);
+
+		assertEquals(List.of(productsIds.get(2)), page.getProductsIds());
+		assertEquals(1, page.getTotal());
+	}
+
+	@Test
+	void reflectsUpdatesAndRemovals() {
+		catalogIndex.remove(productsIds.get(0), CatalogIndex.DELETED_VERSION);
+		catalogIndex.upsert(new ProductIndexDocument(productsIds.get(1), 1, CATEGORY_ID, "product-1", 5f, 1,
+				LocalDateTime.now(), Map.of(COLOR_ID, "red")));
+		ProductFilterDto filter = new ProductFilterDto();
+		filter.setAttributes(List.of(attributeFilter(COLOR_ID, List.of("red"), null)));
+
+		CatalogIndex.IndexPage page = catalogIndex.findPage(filter, Map.of(COLOR_ID, AttributeTypeEnum.STRING_SELECT),
+				ProductSortEnum.PRICE.toSort(Sort.Direction.ASC), 0, 10);
+
+		assertEquals(List.of(productsIds.get(1), productsIds.get(2)), page.getProductsIds());
+	}
+
+	@Test
+	void sortsNamesByCodePoints() {
+		UUID emoji = UUID.randomUUID();
+		UUID privateUse = UUID.randomUUID();
+		catalogIndex.upsert(new ProductIndexDocument(emoji, 0, CATEGORY_ID, "product-\uD83D\uDE00", 1f, 0, LocalDateTime.now(), Map.of()));
+		catalogIndex.upsert(new ProductIndexDocument(privateUse, 0, CATEGORY_ID, "product-\uE000", 1f, 0, LocalDateTime.now(), Map.of()));
+
+		CatalogIndex.IndexPage page = catalogIndex.findPage(null, Map.of(), ProductSortEnum.NAME.toSort(Sort.Direction.DESC), 0, 2);
+
+		assertEquals(List.of(emoji, privateUse), page.getProductsIds());
+	}
+
+	@Test
+	void reusesOrdinalsOfRemovedProducts() {
+		UUID productId = UUID.randomUUID();
+		catalogIndex.remove(productsIds.get(3), CatalogIndex.DELETED_VERSION);
+		catalogIndex.upsert(new ProductIndexDocument(productId, 0, CATEGORY_ID, "product-4", 50f, 4, LocalDateTime.now(), Map.of(COLOR_ID, "blue")));
+		ProductFilterDto filter = new ProductFilterDto();
+		filter.setAttributes(List.of(attributeFilter(COLOR_ID, List.of("blue"), null)));
+
+		CatalogIndex.IndexPage page = catalogIndex.findPage(filter, Map.of(COLOR_ID, AttributeTypeEnum.STRING_SELECT),
+				ProductSortEnum.PRICE.toSort(Sort.Direction.ASC), 0, 10);
+
+		assertEquals(List.of(productsIds.get(1), productId), page.getProductsIds());
+		assertEquals(4, catalogIndex.size());
+	}
+
+	@Test
+	void dropsValuesOfDeletedAttributes() {
+		catalogIndex.removeAttribute(COLOR_ID);
+		catalogIndex.upsert(new ProductIndexDocument(productsIds.get(0), 0, CATEGORY_ID, "product-0", 10f, 0, LocalDateTime.now(), Map.of()));
+		ProductFilterDto filter = new ProductFilterDto();
+		filter.setAttributes(List.of(attributeFilter(COLOR_ID, List.of("red"), null)));
+
+		CatalogIndex.IndexPage page = catalogIndex.findPage(filter, Map.of(COLOR_ID, AttributeTypeEnum.STRING_SELECT),
+				ProductSortEnum.PRICE.toSort(Sort.Direction.ASC), 0, 10);
+
+		assertEquals(0, page.getTotal());
+	}
+
+	@Test
+	void ignoresDocumentsOlderThanIndexed() {
+		catalogIndex.upsert(new ProductIndexDocument(productsIds.get(0), 2, CATEGORY_ID, "product-0", 10f, 0, LocalDateTime.now(), Map.of(COLOR_ID, "blue")));
+		catalogIndex.upsert(new ProductIndexDocument(productsIds.get(0), 1, CATEGORY_ID, "product-0", 10f, 0, LocalDateTime.now(), Map.of(COLOR_ID, "red")));
+		ProductFilterDto filter = new ProductFilterDto();
+		filter.setAttributes(List.of(attributeFilter(COLOR_ID, List.of("red"), null)));
+
+		CatalogIndex.IndexPage page = catalogIndex.findPage(filter, Map.of(COLOR_ID, AttributeTypeEnum.STRING_SELECT),
+				ProductSortEnum.PRICE.toSort(Sort.Direction.ASC), 0, 10);
+
+		assertEquals(List.of(productsIds.get(2)), page.getProductsIds());
+	}
+
+	@Test
+	void keepsRemovedProductsRemovedByLateDocuments() {
+		catalogIndex.remove(productsIds.get(0), CatalogIndex.DELETED_VERSION);
+		catalogIndex.upsert(new ProductIndexDocument(productsIds.get(0), 5, CATEGORY_ID, "product-0", 10f, 0, LocalDateTime.now(), Map.of()));
+
+		CatalogIndex.IndexPage page = catalogIndex.findPage(null, Map.of(), ProductSortEnum.PRICE.toSort(Sort.Direction.ASC), 0, 10);
+
+		assertEquals(productsIds.subList(1, 4), page.getProductsIds());
+		assertEquals(3, catalogIndex.size());
+	}
+
+	private AttributeFilterDto attributeFilter(UUID id, List<String> values, RangeDto range) {
+		AttributeFilterDto attributeFilter = new AttributeFilterDto();
+		attributeFilter.setId(id);
+		attributeFilter.setValues(values);
+		attributeFilter.setRange(range);
+		return attributeFilter;
+	}
+
+	private RangeDto range(Number min, Number max) {
+		RangeDto range = new RangeDto();
+		range.setMin(min);
+		range.setMax(max);
+		return range;
+	}
+}
@@ -0,0 +1,70 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.entity.CategoryEntity;
+import com.deye.web.repository.CategoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class CategoryServiceTests {
+
+	private static final String UPLOADED_IMAGE = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08.png";
+
+	@Autowired
+	private CategoryService categoryService;
+
+	@Autowired
+	private CategoryRepository categoryRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@MockitoBean
+	private PresignedUploadService presignedUploadService;
+
+	private UUID categoryId;
+
+	@BeforeEach
+	void createCategory() {
+		String suffix = UUID.randomUUID().toString().substring(0, 8);
+		transactionTemplate.executeWithoutResult(status -> {
+			CategoryEntity category = new CategoryEntity();
+			category.setName("confirm-" + suffix);
+			category.setDescription("presigned upload test category");
+			category.setImage("confirm-category-" + suffix + ".png");
+			categoryRepository.save(category);
+			categoryId = category.getId();
+		});
+	}
+
+	@AfterEach
+	void deleteCategory() {
+		transactionTemplate.executeWithoutResult(status ->
+				categoryRepository.findByIdWithFetchedAttributesAndImagesAndProducts(categoryId).ifPresent(categoryRepository::delete));
+	}
+
+	@Test
+	void attachesConfirmedImage() {
+		long version = transactionTemplate.execute(status -> categoryRepository.findById(categoryId).orElseThrow().getVersion());
+
+		categoryService.confirmImageUpload(categoryId, UPLOADED_IMAGE);
+
+		verify(presignedUploadService).confirm(UPLOADED_IMAGE);
+		transactionTemplate.executeWithoutResult(status -> {
+			CategoryEntity category = categoryRepository.findByIdWithFetchedAttributesAndImage(categoryId).orElseThrow();
+			assertEquals(UPLOADED_IMAGE, category.getImage().getName());
+			assertTrue(category.getVersion() > version);
+		});
+	}
+}
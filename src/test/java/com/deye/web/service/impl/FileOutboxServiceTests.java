@@ -0,0 +1,187 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.entity.FileObjectEntity;
+import com.deye.web.entity.FileOutboxEntity;
+import com.deye.web.enumerated.FileOperationEnum;
+import com.deye.web.enumerated.ImageDerivativeEnum;
+import com.deye.web.enumerated.ImageDerivativesStatusEnum;
+import com.deye.web.repository.FileObjectRepository;
+import com.deye.web.repository.FileOutboxRepository;
+import com.deye.web.service.FileContent;
+import com.deye.web.service.FileService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FileOutboxServiceTests {
+
+	private static final String FILE_NAME = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08.jpg";
+
+	private final List<FileOutboxEntity> pending = new ArrayList<>();
+	private final Map<Long, byte[]> contents = new HashMap<>();
+	private final List<FileContent> uploaded = new ArrayList<>();
+
+	private FileObjectEntity fileObject;
+	private FileObjectRepository fileObjectRepository;
+	private FileService fileService;
+	private ImageDerivativeService imageDerivativeService;
+	private PlatformTransactionManager transactionManager;
+	private FileOutboxService fileOutboxService;
+
+	@BeforeEach
+	void createService() {
+		FileOutboxRepository fileOutboxRepository = mock(FileOutboxRepository.class);
+		when(fileOutboxRepository.findAllDueForUpdate(any(), anyInt())).thenAnswer(invocation -> firstPendingOfEveryFile());
+		when(fileOutboxRepository.findAllPendingByFileNames(any())).thenAnswer(invocation -> {
+			Collection<String> fileNames = invocation.getArgument(0);
+			return pending.stream().filter(operation -> fileNames.contains(operation.getFileName())).toList();
+		});
+		when(fileOutboxRepository.findContentById(anyLong())).thenAnswer(invocation -> contents.get(invocation.<Long>getArgument(0)));
+		doAnswer(invocation -> {
+			Collection<Long> ids = invocation.getArgument(0);
+			pending.removeIf(operation -> ids.contains(operation.getId()));
+			return null;
+		}).when(fileOutboxRepository).deleteAllByIdInBatch(any());
+		fileObject = new FileObjectEntity();
+		fileObject.setName(FILE_NAME);
+		fileObjectRepository = mock(FileObjectRepository.class);
+		when(fileObjectRepository.findAllWithLockByNames(any())).thenAnswer(invocation -> List.of(fileObject));
+		fileService = mock(FileService.class);
+		when(fileService.uploadAll(any())).thenAnswer(invocation -> {
+			uploaded.addAll(invocation.getArgument(0));
+			return Map.of();
+		});
+		when(fileService.deleteAll(any())).thenReturn(Map.of());
+		imageDerivativeService = mock(ImageDerivativeService.class);
+		transactionManager = mock(PlatformTransactionManager.class);
+		fileOutboxService = new FileOutboxService(fileOutboxRepository, fileObjectRepository, fileService, imageDerivativeService, transactionManager);
+	}
+
+	@Test
+	void keepsUploadWhenLaterDeleteIsSkippedForReferencedFile() {
+		upload(1L, "first");
+		upload(2L, "second");
+		delete(3L);
+		fileObject.setRefCount(1);
+
+		relayUntilEmpty();
+
+		assertEquals(1, uploaded.size());
+		assertEquals(FILE_NAME, uploaded.get(0).getName());
+		assertArrayEquals("second".getBytes(StandardCharsets.UTF_8), uploaded.get(0).getContent());
+		verify(fileService, never()).deleteAll(any());
+		assertEquals(1, fileOutboxService.getStats().getSuperseded());
+	}
+
+	@Test
+	void skipsDeleteFollowedByUpload() {
+		delete(1L);
+		upload(2L, "content");
+
+		relayUntilEmpty();
+
+		assertEquals(1, uploaded.size());
+		verify(fileService, never()).deleteAll(any());
+		assertEquals(1, fileOutboxService.getStats().getSuperseded());
+	}
+
+	@Test
+	void deletesUnreferencedObjectBetweenTransactions() {
+		delete(1L);
+		fileObject.setUploaded(true);
+		when(fileService.deleteAll(any())).thenAnswer(invocation -> {
+			assertTrue(fileObject.isDeleting());
+			assertFalse(fileObject.isUploaded());
+			return Map.of();
+		});
+
+		relayUntilEmpty();
+
+		InOrder inOrder = inOrder(fileObjectRepository, transactionManager, fileService);
+		inOrder.verify(fileObjectRepository).findAllWithLockByNames(any());
+		inOrder.verify(transactionManager).commit(any());
+		inOrder.verify(fileService).deleteAll(List.of(FILE_NAME, ImageDerivativeEnum.THUMBNAIL.toFileName(FILE_NAME),
+				ImageDerivativeEnum.CARD.toFileName(FILE_NAME), ImageDerivativeEnum.FULL.toFileName(FILE_NAME)));
+		inOrder.verify(fileObjectRepository).findAllWithLockByNames(any());
+		inOrder.verify(fileObjectRepository).deleteAllByIdInBatch(List.of(FILE_NAME));
+	}
+
+	@Test
+	void resetsDerivativesOfDeletedObjectKeptByNewReference() {
+		delete(1L);
+		fileObject.setUploaded(true);
+		fileObject.setDerivativesStatus(ImageDerivativesStatusEnum.GENERATED);
+		when(fileService.deleteAll(any())).thenAnswer(invocation -> {
+			fileObject.setRefCount(1);
+			return Map.of();
+		});
+
+		relayUntilEmpty();
+
+		InOrder inOrder = inOrder(fileObjectRepository, fileService, imageDerivativeService);
+		inOrder.verify(fileObjectRepository).resetDerivativesStatusByNames(Set.of(FILE_NAME));
+		inOrder.verify(fileService).deleteAll(any());
+		inOrder.verify(imageDerivativeService).markDeleted(Set.of(FILE_NAME));
+		verify(fileObjectRepository, never()).deleteAllByIdInBatch(any());
+		assertFalse(fileObject.isDeleting());
+		assertFalse(fileObject.isUploaded());
+	}
+
+	private void relayUntilEmpty() {
+		for (int run = 0; run < 10 && !pending.isEmpty(); run++) {
+			fileOutboxService.relay();
+		}
+		assertTrue(pending.isEmpty());
+	}
+
+	private List<FileOutboxEntity> firstPendingOfEveryFile() {
+		Set<String> fileNames = new HashSet<>();
+		return pending.stream()
+				.filter(operation -> fileNames.add(operation.getFileName()))
+				.toList();
+	}
+
+	private void upload(Long id, String content) {
+		pending.add(operation(id, FileOperationEnum.UPLOAD));
+		contents.put(id, content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void delete(Long id) {
+		pending.add(operation(id, FileOperationEnum.DELETE));
+	}
+
+	private FileOutboxEntity operation(Long id, FileOperationEnum type) {
+		FileOutboxEntity operation = new FileOutboxEntity();
+		operation.setId(id);
+		operation.setOperation(type);
+		operation.setFileName(FILE_NAME);
+		operation.setContentType("image/jpeg");
+		operation.setNextAttemptAt(LocalDateTime.now());
+		return operation;
+	}
+}
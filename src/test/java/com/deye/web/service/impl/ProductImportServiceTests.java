@@ -0,0 +1,108 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.controller.view.ProductImportView;
+import com.deye.web.entity.CategoryEntity;
+import com.deye.web.entity.FileObjectEntity;
+import com.deye.web.entity.ProductEntity;
+import com.deye.web.enumerated.ProductFileFormatEnum;
+import com.deye.web.enumerated.ProductImportStatusEnum;
+import com.deye.web.repository.CategoryRepository;
+import com.deye.web.repository.FileObjectRepository;
+import com.deye.web.repository.ProductRepository;
+import com.deye.web.util.error.ErrorMessageUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductImportServiceTests {
+
+	private static final String BUCKET_NAME = "images";
+	private static final String UPLOADED_IMAGE = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08.jpg";
+	private static final String MISSING_IMAGE = "60303ae22b998861bce3b28f33eec1be758a213c86c93c076dbe9f558c11c752.jpg";
+	private static final String EXISTING_NAME = "Existing drill";
+
+	private final CategoryEntity category = new CategoryEntity();
+
+	private ProductRepository productRepository;
+	private FileObjectRepository fileObjectRepository;
+	private ProductImportService productImportService;
+
+	@BeforeEach
+	void createService() {
+		category.setId(UUID.randomUUID());
+		CategoryRepository categoryRepository = mock(CategoryRepository.class);
+		when(categoryRepository.findByIdWithFetchedAttributesAndImage(category.getId())).thenReturn(Optional.of(category));
+		ConfigService configService = mock(ConfigService.class);
+		when(configService.getMinioBucketName()).thenReturn(BUCKET_NAME);
+		productRepository = mock(ProductRepository.class);
+		when(productRepository.findAllNamesByNames(any())).thenReturn(List.of(EXISTING_NAME));
+		fileObjectRepository = mock(FileObjectRepository.class);
+		when(fileObjectRepository.findAllWithLockByNames(any())).thenReturn(List.of(fileObject(UPLOADED_IMAGE, true), fileObject(MISSING_IMAGE, false)));
+		productImportService = new ProductImportService(
+				mock(ApplicationEventPublisher.class),
+				categoryRepository,
+				mock(CategoryService.class),
+				configService,
+				productRepository,
+				fileObjectRepository,
+				new ObjectMapper(),
+				Validation.buildDefaultValidatorFactory().getValidator(),
+				mock(PlatformTransactionManager.class),
+				new TaskExecutorAdapter(Runnable::run));
+	}
+
+	@Test
+	void importsValidRowsAndReportsRejectedOnes() throws Exception {
+		String csv = "name,description,price,stockQuantity,categoryId,images\n"
+				+ row("\"Drill, cordless\"", "\"[\"\"http://localhost:9000/" + BUCKET_NAME + "/" + UPLOADED_IMAGE + "\"\"]\"")
+				+ row("Hammer", "\"[\"\"" + MISSING_IMAGE + "\"\"]\"")
+				+ row(EXISTING_NAME, "\"[\"\"" + UPLOADED_IMAGE + "\"\"]\"");
+
+		ProductImportView started = productImportService.start(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ProductFileFormatEnum.CSV);
+
+		ProductImportView view = productImportService.get(started.getId());
+		assertEquals(ProductImportStatusEnum.COMPLETED, view.getStatus());
+		assertEquals(3, view.getProcessedRows());
+		assertEquals(1, view.getImportedRows());
+		assertEquals(2, view.getFailedRows());
+		assertEquals(2, view.getErrors().get(0).getRow());
+		assertEquals(ErrorMessageUtils.PRODUCT_IMPORT_IMAGE_NOT_FOUND_ERROR_MESSAGE, view.getErrors().get(0).getMessage());
+		assertEquals(3, view.getErrors().get(1).getRow());
+		assertEquals(ErrorMessageUtils.PRODUCT_NAME_ALREADY_EXISTS_ERROR_MESSAGE, view.getErrors().get(1).getMessage());
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<ProductEntity>> products = ArgumentCaptor.forClass(List.class);
+		verify(productRepository).insertAll(products.capture());
+		assertEquals(1, products.getValue().size());
+		assertEquals("Drill, cordless", products.getValue().get(0).getName());
+		assertEquals(Set.of(UPLOADED_IMAGE), products.getValue().get(0).getImagesNames());
+	}
+
+	private String row(String name, String images) {
+		return name + ",A product for the import test,9.99,5," + category.getId() + "," + images + "\n";
+	}
+
+	private FileObjectEntity fileObject(String name, boolean uploaded) {
+		FileObjectEntity fileObject = new FileObjectEntity();
+		fileObject.setName(name);
+		fileObject.setUploaded(uploaded);
+		return fileObject;
+	}
+}
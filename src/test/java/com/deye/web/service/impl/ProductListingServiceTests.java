@@ -0,0 +1,124 @@
+package com.deye.web.service.impl;
+
+import com.deye.web.controller.dto.ProductFilterDto;
+import com.deye.web.controller.view.ProductView;
+import com.deye.web.entity.AttributeEntity;
+import com.deye.web.entity.CategoryAttributeEntity;
+import com.deye.web.entity.CategoryEntity;
+import com.deye.web.entity.ProductEntity;
+import com.deye.web.entity.attribute.definition.StringAttributeDefinition;
+import com.deye.web.enumerated.ProductCountModeEnum;
+import com.deye.web.repository.AttributeRepository;
+import com.deye.web.repository.CategoryRepository;
+import com.deye.web.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class ProductListingServiceTests {
+
+	private static final int PRODUCTS_COUNT = 25;
+
+	@Autowired
+	private ProductListingService productListingService;
+
+	@Autowired
+	private CategoryRepository categoryRepository;
+
+	@Autowired
+	private AttributeRepository attributeRepository;
+
+	@Autowired
+	private ProductRepository productRepository;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private UUID categoryId;
+	private UUID attributeId;
+
+	@BeforeEach
+	void createProducts() {
+		String suffix = UUID.randomUUID().toString().substring(0, 8);
+		transactionTemplate.executeWithoutResult(status -> {
+			AttributeEntity attribute = new AttributeEntity();
+			attribute.setName("listing-attribute-" + suffix);
+			attribute.setDefinition(new StringAttributeDefinition());
+			attributeRepository.save(attribute);
+			attributeId = attribute.getId();
+
+			CategoryEntity category = new CategoryEntity();
+			category.setName("listing-" + suffix);
+			category.setDescription("listing statements test category");
+			category.setImage("listing-category-" + suffix + ".png");
+			CategoryAttributeEntity categoryAttribute = new CategoryAttributeEntity();
+			categoryAttribute.setCategory(category);
+			categoryAttribute.setAttribute(attribute);
+			category.addAttribute(categoryAttribute);
+			categoryRepository.save(category);
+			categoryId = category.getId();
+
+			for (int i = 0; i < PRODUCTS_COUNT; i++) {
+				ProductEntity product = new ProductEntity();
+				product.setName("listing-" + suffix + "-" + i);
+				product.setDescription("listing statements test product");
+				product.setPrice(10f + i);
+				product.setStockQuantity(i);
+				product.setCategory(category);
+				product.setImages(Set.of("listing-" + suffix + "-" + i + "-front.png", "listing-" + suffix + "-" + i + "-back.png"));
+				product.addAttributeValue(attribute, "value-" + i);
+				productRepository.save(product);
+			}
+		});
+	}
+
+	@AfterEach
+	void deleteProducts() {
+		transactionTemplate.executeWithoutResult(status -> {
+			categoryRepository.findByIdWithFetchedAttributesAndImagesAndProducts(categoryId).ifPresent(categoryRepository::delete);
+			attributeRepository.deleteById(attributeId);
+		});
+	}
+
+	@Test
+	void statementsCountDoesNotDependOnPageSize() {
+		ProductFilterDto filter = new ProductFilterDto();
+		filter.setCategoriesIds(List.of(categoryId));
+
+		long smallPageStatements = countStatements(filter, 5);
+		long largePageStatements = countStatements(filter, 20);
+
+		assertEquals(smallPageStatements, largePageStatements);
+	}
+
+	private long countStatements(ProductFilterDto filter, int pageSize) {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		Page<ProductView> page = (Page<ProductView>) productListingService.getPage(filter, PageRequest.of(0, pageSize), ProductCountModeEnum.EXACT);
+		page.getContent().forEach(product -> {
+			assertEquals(2, product.getImages().size());
+			assertEquals(1, product.getAttributes().size());
+		});
+		assertEquals(pageSize, page.getNumberOfElements());
+		assertEquals(PRODUCTS_COUNT, page.getTotalElements());
+		return statistics.getPrepareStatementCount();
+	}
+}
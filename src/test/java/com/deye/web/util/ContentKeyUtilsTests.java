@@ -0,0 +1,39 @@
+package com.deye.web.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ContentKeyUtilsTests {
+
+	private static final String TEST_HASH = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+
+	@Test
+	void keysSameContentBySameHashWhateverTheName() {
+		byte[] content = "test".getBytes(StandardCharsets.UTF_8);
+		String front = ContentKeyUtils.toFileName(new MockMultipartFile("images", "front.JPG", "image/jpeg", content));
+		String variant = ContentKeyUtils.toFileName(new MockMultipartFile("images", "variant-40.jpg", "image/jpeg", content));
+		String other = ContentKeyUtils.toFileName(new MockMultipartFile("images", "front.jpg", "image/jpeg", "other".getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(TEST_HASH + ".jpg", front);
+		assertEquals(front, variant);
+		assertNotEquals(front, other);
+	}
+
+	@Test
+	void dropsMissingAndUnsafeExtensions() {
+		assertEquals(TEST_HASH, ContentKeyUtils.toFileName(TEST_HASH, "front"));
+		assertEquals(TEST_HASH, ContentKeyUtils.toFileName(TEST_HASH, "front.j/pg"));
+		assertEquals(TEST_HASH, ContentKeyUtils.toFileName(TEST_HASH, null));
+	}
+
+	@Test
+	void encodesHashOfKeyAsChecksum() {
+		assertEquals("n4bQgYhMfWWaL+qgxVrQFaO/TxsrC4Is0V1sFbDwCgg=", ContentKeyUtils.toChecksum(TEST_HASH + ".jpg"));
+		assertEquals(ContentKeyUtils.toChecksum(TEST_HASH), ContentKeyUtils.toChecksum(TEST_HASH + ".jpg"));
+	}
+}
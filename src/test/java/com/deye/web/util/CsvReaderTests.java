@@ -0,0 +1,37 @@
+package com.deye.web.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CsvReaderTests {
+
+	@Test
+	void readsQuotedSeparatorsLineBreaksAndQuotes() throws IOException {
+		CsvReader csvReader = reader("name,description\r\n\"Drill, cordless\",\"Says \"\"hi\"\"\nand drills\"\r\n");
+
+		assertEquals(List.of("name", "description"), csvReader.readRecord());
+		assertEquals(List.of("Drill, cordless", "Says \"hi\"\nand drills"), csvReader.readRecord());
+		assertNull(csvReader.readRecord());
+	}
+
+	@Test
+	void readsLastRecordWithoutLineBreakAndEmptyFields() throws IOException {
+		CsvReader csvReader = reader("a,,\"\"\nb,c,d");
+
+		assertEquals(List.of("a", "", ""), csvReader.readRecord());
+		assertEquals(List.of("b", "c", "d"), csvReader.readRecord());
+		assertNull(csvReader.readRecord());
+		assertNull(csvReader.readRecord());
+	}
+
+	private CsvReader reader(String content) {
+		return new CsvReader(new BufferedReader(new StringReader(content)));
+	}
+}
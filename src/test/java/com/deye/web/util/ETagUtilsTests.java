@@ -0,0 +1,38 @@
+package com.deye.web.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ETagUtilsTests {
+
+	private static final String CURRENT_ETAG = ETagUtils.productETag(3, 1);
+
+	@Test
+	void matchesCurrentStrongTagOrWildcard() {
+		assertTrue(ETagUtils.matches(CURRENT_ETAG, CURRENT_ETAG));
+		assertTrue(ETagUtils.matches("\"2.1\", " + CURRENT_ETAG, CURRENT_ETAG));
+		assertTrue(ETagUtils.matches("*", CURRENT_ETAG));
+		assertTrue(ETagUtils.matches(null, CURRENT_ETAG));
+	}
+
+	@Test
+	void neverMatchesWeakOrOutdatedTags() {
+		assertFalse(ETagUtils.matches("W/" + CURRENT_ETAG, CURRENT_ETAG));
+		assertFalse(ETagUtils.matches("\"2.1\", W/" + CURRENT_ETAG, CURRENT_ETAG));
+		assertFalse(ETagUtils.matches("\"2.1\"", CURRENT_ETAG));
+	}
+
+	@Test
+	void ignoresViewEpochOfMatchedTags() {
+		String viewETag = ETagUtils.withViewEpoch(CURRENT_ETAG, 480L);
+
+		assertEquals("\"3.1-480\"", viewETag);
+		assertEquals(CURRENT_ETAG, ETagUtils.withViewEpoch(CURRENT_ETAG, null));
+		assertTrue(ETagUtils.matches(viewETag, CURRENT_ETAG));
+		assertFalse(ETagUtils.matches("W/" + viewETag, CURRENT_ETAG));
+		assertFalse(ETagUtils.matches(ETagUtils.withViewEpoch(ETagUtils.productETag(2, 1), 480L), CURRENT_ETAG));
+	}
+}
@@ -0,0 +1,112 @@
+package com.deye.web.util.mapper;
+
+import com.deye.web.cache.ImageUrlCache;
+import com.deye.web.controller.view.ImageView;
+import com.deye.web.entity.FileEntity;
+import com.deye.web.enumerated.ImageDerivativeEnum;
+import com.deye.web.service.impl.ConfigService;
+import io.minio.GetPresignedObjectUrlArgs;
+import io.minio.MinioClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImageMapperTests {
+
+	private static final String BUCKET_NAME = "images";
+
+	private ConfigService configService;
+	private MinioClient minio;
+	private ImageUrlCache imageUrlCache;
+	private ImageMapper imageMapper;
+
+	@BeforeEach
+	void createMapper() throws Exception {
+		configService = mock(ConfigService.class);
+		when(configService.getMinioBucketName()).thenReturn(BUCKET_NAME);
+		when(configService.isMinioImageUrlPresigned()).thenReturn(true);
+		when(configService.getMinioImageUrlWindow()).thenReturn(Duration.ofHours(1));
+		minio = mock(MinioClient.class);
+		AtomicInteger signatures = new AtomicInteger();
+		when(minio.getPresignedObjectUrl(any())).thenAnswer(invocation -> {
+			GetPresignedObjectUrlArgs args = invocation.getArgument(0);
+			return "http://minio/" + args.bucket() + "/" + args.object() + "?X-Amz-Signature=" + signatures.incrementAndGet();
+		});
+		imageUrlCache = new ImageUrlCache();
+		imageMapper = new ImageMapper(configService, minio, imageUrlCache);
+	}
+
+	@Test
+	void signsUrlOncePerFileInWindow() throws Exception {
+		String first = imageMapper.toImageUrl("front.jpg");
+		String second = imageMapper.toImageUrl("front.jpg");
+		String other = imageMapper.toImageUrl("back.jpg");
+
+		assertEquals(first, second);
+		assertNotEquals(first, other);
+		ArgumentCaptor<GetPresignedObjectUrlArgs> args = ArgumentCaptor.forClass(GetPresignedObjectUrlArgs.class);
+		verify(minio, times(2)).getPresignedObjectUrl(args.capture());
+		assertEquals(Duration.ofHours(3).toSeconds(), args.getValue().expiry());
+		assertEquals(1, imageUrlCache.getStats().getHits());
+	}
+
+	@Test
+	void keepsViewsFreshUntilTheirWindowEnds() {
+		long epoch = imageMapper.getViewEpoch();
+		Duration maxAge = imageMapper.getViewMaxAge();
+
+		assertEquals(System.currentTimeMillis() / Duration.ofHours(1).toMillis(), epoch, 1);
+		assertTrue(maxAge.compareTo(Duration.ZERO) > 0 && maxAge.compareTo(Duration.ofHours(1)) <= 0);
+		assertTrue(imageMapper.getViewCacheControl().getHeaderValue().startsWith("max-age="));
+	}
+
+	@Test
+	void limitsUrlValidityToMaxPresignedExpiry() throws Exception {
+		when(configService.getMinioImageUrlWindow()).thenReturn(Duration.ofDays(30));
+
+		imageMapper.toImageUrl("front.jpg");
+
+		ArgumentCaptor<GetPresignedObjectUrlArgs> args = ArgumentCaptor.forClass(GetPresignedObjectUrlArgs.class);
+		verify(minio).getPresignedObjectUrl(args.capture());
+		assertEquals(Duration.ofDays(7).toSeconds(), args.getValue().expiry());
+	}
+
+	@Test
+	void linksOriginalUntilDerivativesAreGenerated() {
+		when(configService.isMinioImageUrlPresigned()).thenReturn(false);
+		FileEntity image = new FileEntity();
+		image.setName("front.jpg");
+
+		ImageView pending = imageMapper.toImageView(image);
+		image.setDerivativesGenerated(true);
+		ImageView generated = imageMapper.toImageView(image);
+
+		assertEquals(BUCKET_NAME + "/front.jpg", pending.getThumbnail());
+		assertEquals(BUCKET_NAME + "/front.jpg", pending.getFull());
+		assertEquals(BUCKET_NAME + "/" + ImageDerivativeEnum.THUMBNAIL.toFileName("front.jpg"), generated.getThumbnail());
+		assertEquals(BUCKET_NAME + "/front.jpg", generated.getOriginal());
+	}
+
+	@Test
+	void keepsBucketRelativeLinksWhenUrlsArentPresigned() {
+		when(configService.isMinioImageUrlPresigned()).thenReturn(false);
+
+		assertEquals(BUCKET_NAME + "/front.jpg", imageMapper.toImageUrl("front.jpg"));
+		assertNull(imageMapper.getViewMaxAge());
+		assertNull(imageMapper.getViewEpoch());
+		assertNull(imageMapper.getViewCacheControl().getHeaderValue());
+	}
+}